@@ -1,233 +1,393 @@
 package io.filemanager.filez.archives;
 
+import io.filemanager.filez.files.File;
+import io.filemanager.filez.files.FileCriteria;
+import io.filemanager.filez.files.FileMetadataCache;
 import io.filemanager.filez.files.FileRepository;
-import org.springframework.beans.factory.annotation.Value;
+import io.filemanager.filez.files.downloader.S3Downloader;
+import io.filemanager.filez.files.storage.FileContentReader;
+import io.filemanager.filez.files.storage.InlineContent;
+import io.filemanager.filez.files.storage.ObjectLocation;
+import io.filemanager.filez.files.storage.ObjectLocator;
+import io.filemanager.filez.shared.config.ArchiveProperties;
+import io.filemanager.filez.shared.dto.ByteRange;
+import io.filemanager.filez.shared.util.Crc32Combine;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
 
 @Service
 public class ArchiveService {
 
     private final S3AsyncClient s3AsyncClient;
-    private final String bucketName;
-    private final FileRepository metadataRepository;
+    private final ObjectLocator objectLocator;
+    private final FileMetadataCache metadataCache;
+    private final FileRepository fileRepository;
+    private final ArchiveProperties archiveProperties;
+    private final CompressionPool compressionPool;
+    private final S3Downloader s3Downloader;
+    private final DeflaterPool deflaterPool;
+    private final FileContentReader fileContentReader;
 
 
-    public ArchiveService(S3AsyncClient s3AsyncClient, @Value("${s3.bucket}") String bucketName, FileRepository metadataRepository) {
+    public ArchiveService(S3AsyncClient s3AsyncClient,
+                          ObjectLocator objectLocator,
+                          FileMetadataCache metadataCache,
+                          FileRepository fileRepository,
+                          ArchiveProperties archiveProperties,
+                          CompressionPool compressionPool,
+                          S3Downloader s3Downloader,
+                          DeflaterPool deflaterPool,
+                          FileContentReader fileContentReader) {
         this.s3AsyncClient = s3AsyncClient;
-        this.bucketName = bucketName;
-        this.metadataRepository = metadataRepository;
+        this.objectLocator = objectLocator;
+        this.metadataCache = metadataCache;
+        this.fileRepository = fileRepository;
+        this.archiveProperties = archiveProperties;
+        this.compressionPool = compressionPool;
+        this.s3Downloader = s3Downloader;
+        this.deflaterPool = deflaterPool;
+        this.fileContentReader = fileContentReader;
     }
 
     public Flux<ByteBuffer> createZipStreamFromIds(List<Long> ids) {
-        // Find all metadata records, then map them to their S3 keys
-        Flux<String> s3Keys = metadataRepository.findAllById(ids)
-                .map(metadata -> metadata.getId() + "-" + metadata.getFileName());
+        return createZipStreamFromIds(ids, ZipOptions.DEFAULT);
+    }
+
+    /**
+     * Fails with 503 Service Unavailable (before the first byte) when too many archives are being built.
+     *
+     * @param options how the entries are written. Files without a recorded CRC-32 are always deflated,
+     *                a STORED entry needs it in its local header.
+     */
+    public Flux<ByteBuffer> createZipStreamFromIds(List<Long> ids, ZipOptions options) {
+        // Find all metadata records and pass them to our existing zip logic, once there is a free slot
+        return compressionPool.admit(() -> createZipStream(metadataCache.findAllById(ids), options));
+    }
+
+    /**
+     * An archive of all files matching the criteria, ordered by ID. The rows are streamed from the database into
+     * the archive, the first entry is written as soon as the first page of rows has been read.
+     * <p>
+     * Fails with 503 Service Unavailable (before the first byte) when too many archives are being built.
+     */
+    public Flux<ByteBuffer> createZipStreamMatching(FileCriteria criteria, ZipOptions options) {
+        return compressionPool.admit(() -> createZipStream(
+                fileRepository.findAllMatching(criteria, archiveProperties.getQueryPageSize()), options));
+    }
+
+    /**
+     * An archive of the given files with STORED entries only, whose size and bytes are known up front, see
+     * {@link StoredZipArchive}. Nothing is compressed, so it doesn't take a slot of the compression pool.
+     * <p>
+     * Fails with 409 Conflict if a file has no recorded CRC-32.
+     */
+    public Mono<StoredZipArchive> createStoredArchive(List<Long> ids) {
+        return metadataCache.findAllById(ids)
+                .collectList()
+                .map(files -> {
+                    List<ZipEntryInfo> entries = new ArrayList<>(files.size());
+                    Map<String, File> filesByName = new HashMap<>(files.size());
+                    for (File file : files) {
+                        if (file.getCrc32() == null) {
+                            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                                    "File " + file.getId() + " has no recorded CRC-32 and can only be archived as a stream");
+                        }
+                        entries.add(new ZipEntryInfo(entryName(file), file.getCrc32(), file.getSize(), file.getSize(), ZipEntry.STORED, entryTime(file)));
+                        filesByName.put(entryName(file), file);
+                    }
+                    return new StoredZipArchive(entries,
+                            (name, range, objectSize) -> fileContentReader.read(filesByName.get(name), range));
+                });
+    }
 
-        // Collect the keys into a list and pass to our existing zip logic
-        return s3Keys.collectList().flatMapMany(this::createZipStream);
+    /**
+     * An entry ready to be written: an inline file, a small S3 object (or range of a pack) that has been read ahead
+     * and buffered in full, or a bigger one whose GET is only sent once it's its turn.
+     */
+    private record OpenedEntry(String name, File file, Flux<ByteBuffer> content) {
     }
 
-    private Flux<ByteBuffer> createZipStream(List<String> s3Keys) {
-        // This list will be populated as a side-effect when each file stream completes.
-        final List<ZipEntryInfo> zipEntries = new ArrayList<>();
+    private Flux<ByteBuffer> createZipStream(Flux<File> files, ZipOptions options) {
+        // The table is populated as a side-effect when each file stream completes, and removed with the archive.
+        return Flux.using(
+                () -> new ZipEntryTable(archiveProperties.getEntryTableMemory().toBytes(), archiveProperties.getSpillDirectory()),
+                entryTable -> createZipStream(files, options, entryTable),
+                ZipEntryTable::close);
+    }
 
-        // Create a stream of file entries. Each entry is a Flux<ByteBuffer>.
-        Flux<Flux<ByteBuffer>> fileStreams = Flux.fromIterable(s3Keys)
-                .map(key -> createZipEntryStream(key, zipEntries));
+    private Flux<ByteBuffer> createZipStream(Flux<File> files, ZipOptions options, ZipEntryTable entryTable) {
+        // The next entries that are small enough are read and buffered while the current one is compressed,
+        // so the time to the first byte of each object overlaps with the work on its predecessors.
+        // flatMapSequential keeps the entries in order.
+        // Files next to each other in a pack are opened together, with one GET of the range they take.
+        int prefetchEntries = Math.max(1, archiveProperties.getPrefetchEntries());
+        // Up to prefetchEntries are in flatMapSequential, one waits in the queue of concatMap and one is written
+        long bufferLimit = archiveProperties.getPrefetchBudget().toBytes() / (prefetchEntries + 2);
+        PackRuns packRuns = new PackRuns(bufferLimit);
 
-        // Concatenate all the individual file entry streams into one single stream.
-        Flux<ByteBuffer> combinedStream = Flux.concat(fileStreams);
+        Flux<ByteBuffer> combinedStream = files
+                .bufferUntil(packRuns::startsRun, true)
+                .flatMapSequential(run -> run.size() == 1
+                        ? openEntry(run.get(0), bufferLimit).flux()
+                        : openPackRun(run), prefetchEntries, 1)
+                .concatMap(entry -> stores(entry.file(), options.method())
+                        ? createStoredEntryStream(entry, entryTable)
+                        : createZipEntryStream(entry, options, entryTable), 1);
 
         // After all file data has been streamed, create and append the central directory.
-        // The Mono returned here will only be subscribed to after the combinedStream completes.
-        return combinedStream.concatWith(createCentralDirectoryStream(zipEntries));
+        // The Flux returned here will only be subscribed to after the combinedStream completes.
+        return combinedStream.concatWith(createCentralDirectoryStream(entryTable));
     }
 
 
+    private Mono<OpenedEntry> openEntry(File file, long bufferLimit) {
+        String name = entryName(file);
+        if (file.getContent() != null) {
+            // Came with the row, nothing to open
+            return Mono.just(new OpenedEntry(name, file, InlineContent.read(file.getContent(), null)));
+        }
+        boolean packed = file.getPackId() != null;
+        ObjectLocation location = packed ? objectLocator.locatePack(file) : objectLocator.locate(file);
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(location.bucket())
+                .key(location.key())
+                .range(packed ? FileContentReader.rangeInPack(file, null).toRangeHeader() : null)
+                .build();
+
+        Flux<ByteBuffer> content = Mono.fromFuture(() -> s3AsyncClient.getObject(request, AsyncResponseTransformer.toPublisher()))
+                .flatMapMany(Flux::from);
+
+        if (file.getSize() > bufferLimit) {
+            // An answered GET left unread while the entries before it are written would hold its connection idle,
+            // until S3 or the read timeout drops it. So the request is only sent once the entry is written.
+            return Mono.just(new OpenedEntry(name, file, content));
+        }
+        // Keeps the chunks as they came, so the entry compresses exactly as if it was streamed
+        return content.collectList()
+                .map(chunks -> new OpenedEntry(name, file, Flux.fromIterable(chunks)));
+    }
+
     /**
-     * Creates a reactive stream for a single ZIP entry, consisting of:
-     * [Local File Header] -> [Compressed File Data] -> [Data Descriptor]
+     * Opens files that lie close together in one pack (see {@link PackRuns}) with one ranged GET. The range is
+     * buffered and each file gets its slice of it.
      */
-    private Flux<ByteBuffer> createZipEntryStream(String s3Key, List<ZipEntryInfo> zipEntries) {
-        final CRC32 crc = new CRC32();
-        final AtomicLong uncompressedSize = new AtomicLong(0);
-        final AtomicLong compressedSize = new AtomicLong(0);
-        final Deflater deflater = new Deflater(Deflater.DEFLATED, true);
+    private Flux<OpenedEntry> openPackRun(List<File> run) {
+        File first = run.get(0);
+        File last = run.get(run.size() - 1);
+        long start = first.getPackOffset();
+        ByteRange range = new ByteRange(start, last.getPackOffset() + last.getSize() - 1);
 
-        GetObjectRequest request = GetObjectRequest.builder().bucket(bucketName).key(s3Key).build();
-        Flux<ByteBuffer> s3FileStream = Mono.fromFuture(s3AsyncClient.getObject(request, AsyncResponseTransformer.toPublisher()))
-                .flatMapMany(Flux::from);
+        return s3Downloader.download(objectLocator.locatePack(first), range, -1)
+                .collectList()
+                .flatMapIterable(chunks -> {
+                    byte[] bytes = InlineContent.join(chunks);
+                    return run.stream()
+                            .map(file -> {
+                                long offset = file.getPackOffset() - start;
+                                ByteRange slice = new ByteRange(offset, offset + file.getSize() - 1);
+                                return new OpenedEntry(entryName(file), file, InlineContent.read(bytes, slice));
+                            })
+                            .toList();
+                });
+    }
+
+    /**
+     * Cuts the files of an archive into runs: files that follow each other in the same pack, within a span of
+     * {@code maxSpan} bytes, go into one run; every other file is a run of its own. The span includes the bytes
+     * of deleted files between them. Used as a {@code bufferUntil} predicate, one instance per archive.
+     */
+    private static final class PackRuns {
+
+        private final long maxSpan;
+        private boolean started;
+        private Long packId;
+        private long start;
+        private long end;
+
+        PackRuns(long maxSpan) {
+            this.maxSpan = maxSpan;
+        }
+
+        // Whether the file starts a new run, the first file of the archive doesn't cut off an empty one
+        boolean startsRun(File file) {
+            Long filePackId = file.getPackId();
+            if (started && filePackId != null && filePackId.equals(packId)
+                    && file.getPackOffset() >= end
+                    && file.getPackOffset() + file.getSize() - start <= maxSpan) {
+                end = file.getPackOffset() + file.getSize();
+                return false;
+            }
+            boolean first = !started;
+            started = true;
+            packId = filePackId;
+            if (filePackId != null) {
+                start = file.getPackOffset();
+                end = start + file.getSize();
+            }
+            return !first;
+        }
+    }
 
-        Flux<ByteBuffer> compressedDataStream = s3FileStream
-                .concatMap(buffer -> {
+    // The name the file had in S3 before keys got a layout, archives keep it whatever the layout is
+    private static String entryName(File file) {
+        return file.getId() + "-" + file.getFileName();
+    }
+
+    // The time of the upload, so the same file always gives the same entry
+    private static Instant entryTime(File file) {
+        if (file.getUpdatedAt() != null) {
+            return file.getUpdatedAt();
+        }
+        return file.getCreatedAt() != null ? file.getCreatedAt() : Instant.EPOCH;
+    }
+
+    private static boolean stores(File file, CompressionMethod method) {
+        return file.getCrc32() != null && method.stores(file.getFileType());
+    }
+
+    /**
+     * Creates a reactive stream for a single STORED ZIP entry, consisting of:
+     * [Local File Header] -> [File Data]
+     * <p>
+     * Size and CRC-32 come from the metadata, so the local header is complete and there is no data descriptor.
+     * The content is checked against both, a mismatch fails the stream rather than producing a corrupt archive.
+     */
+    private Flux<ByteBuffer> createStoredEntryStream(OpenedEntry entry, ZipEntryTable entryTable) {
+        final File file = entry.file();
+        final ZipEntryInfo entryInfo = new ZipEntryInfo(entry.name(), file.getCrc32(), file.getSize(), file.getSize(), ZipEntry.STORED, entryTime(file));
+        final CRC32 crc = new CRC32();
+        final AtomicLong size = new AtomicLong(0);
+
+        Flux<ByteBuffer> dataStream = entry.content()
+                .doOnNext(buffer -> {
                     crc.update(buffer.duplicate());
-                    uncompressedSize.addAndGet(buffer.remaining());
-                    deflater.setInput(buffer);
-
-                    List<ByteBuffer> resultChunks = new ArrayList<>();
-                    while (!deflater.needsInput()) {
-                        ByteBuffer compressedChunk = ByteBuffer.allocate(8192);
-                        int bytesCompressed = deflater.deflate(compressedChunk, Deflater.SYNC_FLUSH);
-                        if (bytesCompressed > 0) {
-                            compressedChunk.flip();
-                            resultChunks.add(copyByteBuffer(compressedChunk));
-                            compressedSize.addAndGet(bytesCompressed);
-                        } else {
-                            break;
-                        }
-                    }
-                    return Flux.fromIterable(resultChunks);
+                    size.addAndGet(buffer.remaining());
                 })
-                .concatWith(Mono.fromCallable(() -> {
-                    ByteBuffer finalChunk = ByteBuffer.allocate(8192);
-                    deflater.finish();
-                    int remainingBytes = deflater.deflate(finalChunk);
-                    if (remainingBytes > 0) {
-                        finalChunk.flip();
-                        compressedSize.addAndGet(remainingBytes);
-                        return copyByteBuffer(finalChunk);
+                .concatWith(Mono.defer(() -> {
+                    if (size.get() != file.getSize() || crc.getValue() != file.getCrc32()) {
+                        return Mono.error(new IllegalStateException("Content of " + entry.name() + " does not match its size or CRC-32"));
                     }
-                    return null;
-                }).filter(Objects::nonNull))
-                .doOnComplete(deflater::end); // Clean up native resources
+                    entryTable.add(entryInfo);
+                    return Mono.empty();
+                }));
+
+        return Flux.concat(Mono.fromCallable(() -> ZipRecords.localFileHeader(entryInfo)), dataStream);
+    }
+
+    /**
+     * Creates a reactive stream for a single ZIP entry, consisting of:
+     * [Local File Header] -> [Compressed File Data] -> [Data Descriptor]
+     */
+    private Flux<ByteBuffer> createZipEntryStream(OpenedEntry entry, ZipOptions options, ZipEntryTable entryTable) {
+        // The local header is simple; it no longer tries to calculate any offsets.
+        // Sizes and CRC follow in the data descriptor.
+        final ZipEntryInfo header = new ZipEntryInfo(entry.name(), 0, 0, 0, ZipEntry.DEFLATED, entryTime(entry.file()));
+        final boolean parallel = archiveProperties.isParallelCompression()
+                && entry.file().getSize() >= archiveProperties.getParallelThreshold().toBytes();
+
+        return parallel
+                ? deflateInParallel(entry.content(), header, options, entryTable)
+                : deflate(entry.content(), header, options, entryTable);
+    }
+
+    /**
+     * Deflates large entries in blocks on all compression threads, see {@link ParallelDeflater}.
+     */
+    private Flux<ByteBuffer> deflateInParallel(Flux<ByteBuffer> content, ZipEntryInfo header, ZipOptions options, ZipEntryTable entryTable) {
+        final AtomicLong crc = new AtomicLong(0);
+        final AtomicLong uncompressedSize = new AtomicLong(0);
+        final AtomicLong compressedSize = new AtomicLong(0);
+
+        Flux<ByteBuffer> compressedDataStream = ParallelDeflater.deflate(content,
+                        deflaterPool,
+                        options.level(),
+                        options.strategy().value(),
+                        archiveProperties.getBlockSize().toBytes(),
+                        compressionPool.threads(),
+                        compressionPool.scheduler())
+                .map(block -> {
+                    // Blocks arrive in order
+                    crc.set(Crc32Combine.combine(crc.get(), block.crc(), block.inputLength()));
+                    uncompressedSize.addAndGet(block.inputLength());
+                    compressedSize.addAndGet(block.data().remaining());
+                    return block.data();
+                });
 
         Mono<ByteBuffer> dataDescriptorStream = Mono.fromCallable(() -> {
             // This runs after the file content is fully streamed and compressed.
             // We now have the final metadata for this file.
-            ZipEntryInfo entryInfo = new ZipEntryInfo(s3Key, crc.getValue(), compressedSize.get(), uncompressedSize.get());
-            zipEntries.add(entryInfo); // Add the completed entry to our list for later processing.
-            return createDataDescriptor(entryInfo);
+            ZipEntryInfo entryInfo = header.withContent(crc.get(), compressedSize.get(), uncompressedSize.get());
+            entryTable.add(entryInfo); // Add the completed entry to our table for later processing.
+            return ZipRecords.dataDescriptor(entryInfo);
         });
 
-        // The local header is simple; it no longer tries to calculate any offsets.
-        Mono<ByteBuffer> localHeaderStream = Mono.fromCallable(() -> createLocalFileHeader(s3Key));
-
-        return Flux.concat(localHeaderStream, compressedDataStream, dataDescriptorStream);
+        return Flux.concat(Mono.fromCallable(() -> ZipRecords.localFileHeader(header)), compressedDataStream, dataDescriptorStream);
     }
 
     /**
-     * Creates the central directory and end-of-directory records.
-     * This method is called ONLY after all file data has been streamed.
-     * At this point, the `zipEntries` list is fully populated with metadata.
+     * Deflates an entry on one compression thread, in frames of {@code frameSize}, see {@link EntryDeflater}.
      */
-    private Mono<ByteBuffer> createCentralDirectoryStream(List<ZipEntryInfo> zipEntries) {
-        return Mono.fromCallable(() -> {
-            // 1. Calculate the final offsets deterministically.
-            long currentOffset = 0;
-            for (ZipEntryInfo entry : zipEntries) {
-                entry.setLocalHeaderOffset(currentOffset);
-                // The size of one full entry = header + compressed data + descriptor
-                long entrySize = 30L + entry.getFileNameBytes().length + entry.getCompressedSize() + 16;
-                currentOffset += entrySize;
-            }
-            long centralDirectoryStartOffset = currentOffset;
-
-            // 2. Now, build the central directory using the correct offsets.
-            ByteBuffer centralDirectoryBuffer = ByteBuffer.allocate(1024 * 10 * zipEntries.size());
-            centralDirectoryBuffer.order(ByteOrder.LITTLE_ENDIAN);
-
-            for (ZipEntryInfo entry : zipEntries) {
-                centralDirectoryBuffer.putInt(0x02014b50); // Signature
-                centralDirectoryBuffer.putShort((short) 20);
-                centralDirectoryBuffer.putShort((short) 20);
-                centralDirectoryBuffer.putShort((short) (1 << 3));
-                centralDirectoryBuffer.putShort((short) 8);
-                putDosTime(centralDirectoryBuffer, Instant.now());
-                centralDirectoryBuffer.putInt((int) entry.getCrc());
-                centralDirectoryBuffer.putInt((int) entry.getCompressedSize());
-                centralDirectoryBuffer.putInt((int) entry.getUncompressedSize());
-                centralDirectoryBuffer.putShort((short) entry.getFileNameBytes().length);
-                centralDirectoryBuffer.putShort((short) 0);
-                centralDirectoryBuffer.putShort((short) 0);
-                centralDirectoryBuffer.putShort((short) 0);
-                centralDirectoryBuffer.putShort((short) 0);
-                centralDirectoryBuffer.putInt(0);
-                centralDirectoryBuffer.putInt((int) entry.getLocalHeaderOffset()); // Use the calculated offset
-                centralDirectoryBuffer.put(entry.getFileNameBytes());
-            }
+    private Flux<ByteBuffer> deflate(Flux<ByteBuffer> content, ZipEntryInfo header, ZipOptions options, ZipEntryTable entryTable) {
+        return Flux.defer(() -> {
+            final Deflater deflater = deflaterPool.acquire(options.level(), options.strategy().value());
+            final byte[] buffer = deflaterPool.acquireBuffer();
+            final EntryDeflater entryDeflater = new EntryDeflater(deflater, buffer);
+
+            Flux<ByteBuffer> end = Flux.defer(() -> {
+                // This runs after the file content is fully streamed and compressed.
+                List<ByteBuffer> frames = new ArrayList<>(entryDeflater.finish());
+                ZipEntryInfo entryInfo = header.withContent(entryDeflater.crc(), entryDeflater.compressedSize(), entryDeflater.uncompressedSize());
+                entryTable.add(entryInfo);
+                frames.addAll(entryDeflater.write(ZipRecords.dataDescriptor(entryInfo)));
+                frames.addAll(entryDeflater.flush());
+                return Flux.fromIterable(frames);
+            });
 
-            long centralDirectorySize = centralDirectoryBuffer.position();
-
-            // 3. Build the End of Central Directory Record.
-            centralDirectoryBuffer.putInt(0x06054b50); // Signature
-            centralDirectoryBuffer.putShort((short) 0);
-            centralDirectoryBuffer.putShort((short) 0);
-            centralDirectoryBuffer.putShort((short) zipEntries.size());
-            centralDirectoryBuffer.putShort((short) zipEntries.size());
-            centralDirectoryBuffer.putInt((int) centralDirectorySize);
-            centralDirectoryBuffer.putInt((int) centralDirectoryStartOffset);
-            centralDirectoryBuffer.putShort((short) 0);
-
-            // 4. Finalize the buffer for sending.
-            centralDirectoryBuffer.flip();
-            ByteBuffer resultBuffer = ByteBuffer.allocate(centralDirectoryBuffer.remaining());
-            resultBuffer.put(centralDirectoryBuffer);
-            resultBuffer.flip();
-            return resultBuffer;
+            // Deflating happens on the compression pool, never on the event loop that delivered the S3 buffer.
+            // A small prefetch bounds the buffers waiting for a compression thread.
+            return Flux.fromIterable(entryDeflater.write(ZipRecords.localFileHeader(header)))
+                    .concatWith(content
+                            .publishOn(compressionPool.scheduler(), 2)
+                            .concatMapIterable(entryDeflater::deflate))
+                    .concatWith(end)
+                    .doFinally(signal -> {
+                        // Complete and error come after the last deflate call, cancel may not
+                        if (signal == SignalType.CANCEL) {
+                            deflaterPool.discard(deflater);
+                        } else {
+                            deflaterPool.release(deflater);
+                            deflaterPool.releaseBuffer(buffer);
+                        }
+                    });
         });
     }
 
-    private ByteBuffer createLocalFileHeader(String fileName) {
-        byte[] fileNameBytes = fileName.getBytes(StandardCharsets.UTF_8);
-        ByteBuffer buffer = ByteBuffer.allocate(30 + fileNameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
-        buffer.putInt(0x04034b50);
-        buffer.putShort((short) 20);
-        buffer.putShort((short) (1 << 3));
-        buffer.putShort((short) 8);
-        putDosTime(buffer, Instant.now());
-        buffer.putInt(0);
-        buffer.putInt(0);
-        buffer.putInt(0);
-        buffer.putShort((short) fileNameBytes.length);
-        buffer.putShort((short) 0);
-        buffer.put(fileNameBytes);
-        buffer.flip();
-        return buffer;
-    }
-
-    private ByteBuffer createDataDescriptor(ZipEntryInfo info) {
-        ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
-        buffer.putInt(0x08074b50);
-        buffer.putInt((int) info.getCrc());
-        buffer.putInt((int) info.getCompressedSize());
-        buffer.putInt((int) info.getUncompressedSize());
-        buffer.flip();
-        return buffer;
-    }
-
-    private void putDosTime(ByteBuffer buffer, Instant time) {
-        ZonedDateTime zdt = ZonedDateTime.ofInstant(time, ZoneId.systemDefault());
-        int dosTime = (zdt.getYear() - 1980) << 25 |
-                (zdt.getMonthValue()) << 21 |
-                (zdt.getDayOfMonth()) << 16 |
-                (zdt.getHour()) << 11 |
-                (zdt.getMinute()) << 5 |
-                (zdt.getSecond()) >> 1;
-        buffer.putInt(dosTime);
-    }
-
-    private ByteBuffer copyByteBuffer(ByteBuffer original) {
-        ByteBuffer copy = ByteBuffer.allocate(original.remaining());
-        copy.put(original);
-        copy.flip();
-        return copy;
+    /**
+     * Creates the central directory and end-of-directory records, in chunks.
+     * This is subscribed to ONLY after all file data has been streamed.
+     * At this point, the entry table is fully populated with metadata.
+     * It runs on the compression pool, since a large table is read back from its spill file.
+     */
+    private Flux<ByteBuffer> createCentralDirectoryStream(ZipEntryTable entryTable) {
+        return Flux.defer(entryTable::centralDirectory)
+                .subscribeOn(compressionPool.scheduler());
     }
 }
\ No newline at end of file
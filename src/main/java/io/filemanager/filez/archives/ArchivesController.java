@@ -1,14 +1,21 @@
 package io.filemanager.filez.archives;
 
+import io.filemanager.filez.files.FileCriteria;
+import io.filemanager.filez.shared.dto.ByteRange;
+import io.filemanager.filez.shared.web.RangeRequests;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.nio.ByteBuffer;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/archives")
@@ -20,16 +27,97 @@ public class ArchivesController {
         this.archiveService = archiveService;
     }
 
+    /**
+     * Downloads the files as a ZIP. {@code level} (0-9, -1 for the default) and {@code strategy} trade the
+     * compression ratio of deflated entries for throughput, e.g. level 1 or HUFFMAN_ONLY for large text files
+     * that have to go out fast.
+     */
     @PostMapping("/download-zip")
     public Mono<ResponseEntity<Flux<ByteBuffer>>> downloadFilesAsZip(
             @RequestBody List<Long> fileIds,
-            @RequestParam(defaultValue = "archive.zip") String zipName) {
+            @RequestParam(defaultValue = "archive.zip") String zipName,
+            @RequestParam(defaultValue = "AUTO") CompressionMethod method,
+            @RequestParam(defaultValue = "-1") int level,
+            @RequestParam(defaultValue = "DEFAULT") DeflateStrategy strategy) {
 
-        Flux<ByteBuffer> zipStream = archiveService.createZipStreamFromIds(fileIds);
+        Flux<ByteBuffer> zipStream = archiveService.createZipStreamFromIds(fileIds, zipOptions(method, level, strategy));
 
         return Mono.just(ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + zipName + "\"")
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
                 .body(zipStream));
     }
+
+    /**
+     * Downloads all files matching the criteria as a ZIP, ordered by ID. The selection is streamed from the
+     * database, so this works for millions of files and the first bytes are sent right away.
+     * All criteria are optional; the creation window includes {@code createdFrom} and excludes {@code createdTo}.
+     * The compression options are the ones of {@code /download-zip}.
+     */
+    @GetMapping("/query")
+    public Mono<ResponseEntity<Flux<ByteBuffer>>> downloadMatchingFilesAsZip(
+            @RequestParam(required = false) Long fromId,
+            @RequestParam(required = false) Long toId,
+            @RequestParam(required = false) Instant createdFrom,
+            @RequestParam(required = false) Instant createdTo,
+            @RequestParam(required = false) String namePrefix,
+            @RequestParam(defaultValue = "archive.zip") String zipName,
+            @RequestParam(defaultValue = "AUTO") CompressionMethod method,
+            @RequestParam(defaultValue = "-1") int level,
+            @RequestParam(defaultValue = "DEFAULT") DeflateStrategy strategy) {
+
+        FileCriteria criteria = new FileCriteria(fromId, toId, createdFrom, createdTo, namePrefix);
+        Flux<ByteBuffer> zipStream = archiveService.createZipStreamMatching(criteria, zipOptions(method, level, strategy));
+
+        return Mono.just(ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + zipName + "\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(zipStream));
+    }
+
+    /**
+     * Downloads the files as an archive of STORED entries, whose layout is known before the first byte is sent.
+     * The response has an exact Content-Length, and an interrupted download can be resumed with a Range request
+     * (If-Range with the ETag), which reads only the parts of the files that overlap the range.
+     * <p>
+     * A GET, so browsers can resume it. Answers 409 Conflict if a file has no recorded CRC-32.
+     */
+    @GetMapping("/zip")
+    public Mono<ResponseEntity<Flux<ByteBuffer>>> downloadStoredZip(
+            @RequestParam List<Long> ids,
+            @RequestParam(defaultValue = "archive.zip") String zipName,
+            @RequestHeader HttpHeaders requestHeaders) {
+
+        return archiveService.createStoredArchive(ids)
+                .map(archive -> {
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + zipName + "\"");
+                    headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+                    headers.setETag(archive.eTag());
+                    if (archive.lastModified() != null) {
+                        headers.setLastModified(archive.lastModified());
+                    }
+
+                    Optional<List<ByteRange>> ranges = RangeRequests.resolve(requestHeaders, archive.size(), archive.eTag(), archive.lastModified());
+                    if (ranges.isEmpty()) {
+                        return ResponseEntity.ok()
+                                .headers(headers)
+                                .contentLength(archive.size())
+                                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                                .body(archive.read());
+                    }
+                    if (ranges.get().isEmpty()) {
+                        return RangeRequests.rangeNotSatisfiable(archive.size());
+                    }
+                    return RangeRequests.partialContent(ranges.get(), archive.size(), MediaType.APPLICATION_OCTET_STREAM, headers, archive::read);
+                });
+    }
+
+    private static ZipOptions zipOptions(CompressionMethod method, int level, DeflateStrategy strategy) {
+        try {
+            return new ZipOptions(method, level, strategy);
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+    }
 }
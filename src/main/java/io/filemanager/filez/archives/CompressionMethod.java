@@ -0,0 +1,65 @@
+package io.filemanager.filez.archives;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * How the entries of an archive are written.
+ */
+public enum CompressionMethod {
+    /**
+     * Store content types that are compressed already, deflate everything else.
+     */
+    AUTO,
+    STORED,
+    DEFLATED;
+
+    // Deflating these gains next to nothing
+    private static final Set<String> COMPRESSED_TYPES = Set.of(
+            "application/zip",
+            "application/gzip",
+            "application/x-gzip",
+            "application/x-7z-compressed",
+            "application/x-rar-compressed",
+            "application/vnd.rar",
+            "application/x-bzip2",
+            "application/x-xz",
+            "application/zstd",
+            "application/pdf",
+            "application/epub+zip",
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+            "application/vnd.openxmlformats-officedocument.presentationml.presentation",
+            "image/jpeg",
+            "image/png",
+            "image/gif",
+            "image/webp",
+            "image/avif",
+            "image/heic",
+            "audio/mpeg",
+            "audio/aac",
+            "audio/mp4",
+            "audio/ogg",
+            "audio/opus",
+            "audio/webm");
+
+    /**
+     * @return true if an entry of the given content type should be written as STORED.
+     */
+    public boolean stores(String fileType) {
+        return switch (this) {
+            case STORED -> true;
+            case DEFLATED -> false;
+            case AUTO -> isCompressed(fileType);
+        };
+    }
+
+    static boolean isCompressed(String fileType) {
+        if (fileType == null) {
+            return false;
+        }
+        // Strip parameters such as "; charset=..."
+        String type = fileType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        return type.startsWith("video/") || COMPRESSED_TYPES.contains(type);
+    }
+}
@@ -0,0 +1,172 @@
+package io.filemanager.filez.archives;
+
+import io.filemanager.filez.shared.config.ArchiveProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * The threads that compress archives, and the admission control in front of them.
+ * <p>
+ * Deflating is CPU-bound and must not run on the Netty event loops. Archive builds get a slot before their first
+ * byte is produced: up to {@code maxConcurrentBuilds} run at the same time, up to {@code maxQueuedBuilds} wait for a
+ * free slot (at most {@code queueTimeout}), and everything beyond that is rejected with 503 Service Unavailable.
+ * Since each running build has at most one task queued on the pool, the pool's queue stays bounded as well.
+ * <p>
+ * Pool utilization is exported as the Micrometer {@code executor.*} meters of {@code compression}, admission as
+ * {@code archive.builds.active}, {@code archive.builds.queued}, {@code archive.builds.rejected} and
+ * {@code archive.builds.wait}.
+ */
+@Slf4j
+@Component
+public class CompressionPool {
+
+    private final int threads;
+    private final ThreadPoolExecutor executor;
+    private final Scheduler scheduler;
+    private final int maxConcurrentBuilds;
+    private final int maxQueuedBuilds;
+    private final ArchiveProperties archiveProperties;
+
+    // Guarded by `this`
+    private int activeBuilds;
+    private final Deque<MonoSink<Permit>> waiting = new ArrayDeque<>();
+
+    private final Counter rejected;
+    private final Timer waitTimer;
+
+    public CompressionPool(ArchiveProperties archiveProperties, MeterRegistry meterRegistry) {
+        this.archiveProperties = archiveProperties;
+        this.threads = archiveProperties.getCompressionThreads() > 0
+                ? archiveProperties.getCompressionThreads()
+                : Runtime.getRuntime().availableProcessors();
+        this.maxConcurrentBuilds = archiveProperties.getMaxConcurrentBuilds() > 0
+                ? archiveProperties.getMaxConcurrentBuilds()
+                : 2 * threads;
+        this.maxQueuedBuilds = archiveProperties.getMaxQueuedBuilds();
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("compression-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        ExecutorService timedExecutor = ExecutorServiceMetrics.monitor(meterRegistry, executor, "compression");
+        this.scheduler = Schedulers.fromExecutorService(timedExecutor, "compression");
+
+        Gauge.builder("archive.builds.active", this, CompressionPool::activeBuilds).register(meterRegistry);
+        Gauge.builder("archive.builds.queued", this, CompressionPool::queuedBuilds).register(meterRegistry);
+        this.rejected = Counter.builder("archive.builds.rejected").register(meterRegistry);
+        this.waitTimer = Timer.builder("archive.builds.wait").register(meterRegistry);
+
+        log.info("Compressing archives on {} threads, {} concurrent builds, {} queued", threads, maxConcurrentBuilds, maxQueuedBuilds);
+    }
+
+    public int threads() {
+        return threads;
+    }
+
+    /**
+     * The scheduler to deflate on.
+     */
+    public Scheduler scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Builds the archive once a slot is free, and frees the slot when the archive completes, fails or is cancelled.
+     * Fails with 503 Service Unavailable if the queue is full or the slot doesn't come in time.
+     */
+    public <T> Flux<T> admit(Supplier<Flux<T>> build) {
+        return Flux.usingWhen(acquire(), permit -> build.get(), permit -> Mono.fromRunnable(permit::release));
+    }
+
+    private Mono<Permit> acquire() {
+        return Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return Mono.<Permit>create(sink -> {
+                                synchronized (this) {
+                                    if (activeBuilds < maxConcurrentBuilds) {
+                                        activeBuilds++;
+                                    } else if (waiting.size() < maxQueuedBuilds) {
+                                        waiting.addLast(sink);
+                                        sink.onCancel(() -> dequeue(sink));
+                                        return;
+                                    } else {
+                                        rejected.increment();
+                                        sink.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many archives are being built"));
+                                        return;
+                                    }
+                                }
+                                sink.success(new Permit());
+                            })
+                            .doOnNext(permit -> waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+                })
+                .timeout(archiveProperties.getQueueTimeout(), Mono.error(() -> {
+                    rejected.increment();
+                    return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Timed out waiting for a free archive slot");
+                }))
+                // A slot that was handed over just as the request timed out or went away
+                .doOnDiscard(Permit.class, Permit::release);
+    }
+
+    private synchronized void dequeue(MonoSink<Permit> sink) {
+        waiting.remove(sink);
+    }
+
+    private void release() {
+        MonoSink<Permit> next;
+        synchronized (this) {
+            next = waiting.pollFirst();
+            if (next == null) {
+                activeBuilds--;
+                return;
+            }
+        }
+        // The slot goes straight to the next waiting build
+        next.success(new Permit());
+    }
+
+    synchronized int activeBuilds() {
+        return activeBuilds;
+    }
+
+    synchronized int queuedBuilds() {
+        return waiting.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.dispose();
+        executor.shutdown();
+    }
+
+    private final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                CompressionPool.this.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package io.filemanager.filez.archives;
+
+import java.util.zip.Deflater;
+
+/**
+ * The zlib strategy deflated entries are compressed with.
+ */
+public enum DeflateStrategy {
+    DEFAULT(Deflater.DEFAULT_STRATEGY),
+    /**
+     * For data of mostly small values with a somewhat random distribution, such as some binary formats.
+     */
+    FILTERED(Deflater.FILTERED),
+    /**
+     * Huffman coding only, no string matching: much faster and much less effective.
+     */
+    HUFFMAN_ONLY(Deflater.HUFFMAN_ONLY);
+
+    private final int value;
+
+    DeflateStrategy(int value) {
+        this.value = value;
+    }
+
+    /**
+     * The constant to pass to {@link Deflater#setStrategy(int)}.
+     */
+    public int value() {
+        return value;
+    }
+}
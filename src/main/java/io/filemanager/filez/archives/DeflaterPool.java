@@ -0,0 +1,122 @@
+package io.filemanager.filez.archives;
+
+import io.filemanager.filez.shared.config.ArchiveProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.zip.Deflater;
+
+/**
+ * Raw (nowrap) {@link Deflater}s for archive entries and the buffers they deflate into, reused across entries and
+ * requests.
+ * <p>
+ * A Deflater holds a few hundred KB of native zlib memory that is only freed by {@link Deflater#end()}, and setting
+ * it up costs more than compressing a tiny file. Released deflaters are reset and kept for the next entry, up to
+ * {@code deflaterPoolSize} of them; beyond that they are ended. A deflater whose entry was cancelled may still be in
+ * use by a compression thread, so it is ended right away instead of being returned.
+ * <p>
+ * Output buffers of {@code frameSize} bytes are kept the same way, so an entry only allocates the frames it sends.
+ * <p>
+ * Exported as {@code archive.deflaters.idle} and {@code archive.deflaters.created}.
+ */
+@Component
+public class DeflaterPool {
+
+    private static final byte[] NO_OUTPUT = new byte[0];
+
+    private final int maxIdle;
+    private final int frameSize;
+
+    // Guarded by `this`
+    private final Deque<Deflater> idle = new ArrayDeque<>();
+    private final Deque<byte[]> idleBuffers = new ArrayDeque<>();
+
+    private final Counter created;
+
+    public DeflaterPool(ArchiveProperties archiveProperties, MeterRegistry meterRegistry) {
+        this.maxIdle = archiveProperties.getDeflaterPoolSize();
+        this.frameSize = Math.toIntExact(archiveProperties.getFrameSize().toBytes());
+        Gauge.builder("archive.deflaters.idle", this, DeflaterPool::idleCount).register(meterRegistry);
+        this.created = Counter.builder("archive.deflaters.created").register(meterRegistry);
+    }
+
+    /**
+     * A deflater with the given settings, ready for a new stream. Must be given back with {@link #release} or
+     * {@link #discard}.
+     */
+    public Deflater acquire(int level, int strategy) {
+        Deflater deflater;
+        synchronized (this) {
+            deflater = idle.pollFirst();
+        }
+        if (deflater == null) {
+            created.increment();
+            deflater = new Deflater(level, true);
+        }
+        deflater.setLevel(level);
+        deflater.setStrategy(strategy);
+        // Changed settings are applied by the next call to deflate, which then consumes no input and produces no
+        // output. Callers stop at the first call that produces nothing, so it has to happen here.
+        deflater.deflate(NO_OUTPUT);
+        return deflater;
+    }
+
+    /**
+     * Gives back a deflater that is no longer used by anyone.
+     */
+    public void release(Deflater deflater) {
+        deflater.reset();
+        synchronized (this) {
+            if (idle.size() < maxIdle) {
+                // Last in, first out, so the native memory that is in use stays warm
+                idle.addFirst(deflater);
+                return;
+            }
+        }
+        deflater.end();
+    }
+
+    /**
+     * Frees a deflater that might still be in use, e.g. by the compression thread of a cancelled entry. Its
+     * methods are synchronized, so this waits for a running call, and later calls fail.
+     */
+    public void discard(Deflater deflater) {
+        deflater.end();
+    }
+
+    /**
+     * An output buffer of {@code frameSize} bytes. Its content is undefined.
+     */
+    public byte[] acquireBuffer() {
+        byte[] buffer;
+        synchronized (this) {
+            buffer = idleBuffers.pollFirst();
+        }
+        return buffer != null ? buffer : new byte[frameSize];
+    }
+
+    /**
+     * Gives back a buffer that is no longer used by anyone. A buffer that might still be in use is simply dropped.
+     */
+    public synchronized void releaseBuffer(byte[] buffer) {
+        if (idleBuffers.size() < maxIdle) {
+            idleBuffers.addFirst(buffer);
+        }
+    }
+
+    synchronized int idleCount() {
+        return idle.size();
+    }
+
+    @PreDestroy
+    synchronized void shutdown() {
+        idle.forEach(Deflater::end);
+        idle.clear();
+        idleBuffers.clear();
+    }
+}
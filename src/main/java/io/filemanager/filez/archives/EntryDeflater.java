@@ -0,0 +1,128 @@
+package io.filemanager.filez.archives;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes one deflated entry on one thread: its local header, the compressed content and its data descriptor,
+ * coalesced into frames of the size of the output buffer.
+ * <p>
+ * The content is deflated without flushing, so zlib decides where its blocks end and the compressed data is as
+ * small as it gets. Everything is written into the output buffer first; only a full buffer (or the end of the
+ * entry) is copied into a frame of its own, since a frame is handed to the network and can't be reused. The
+ * frames are the only allocation per entry, and most calls return none.
+ * <p>
+ * Not thread-safe: the calls of an entry must happen one after the other.
+ */
+final class EntryDeflater {
+
+    private final Deflater deflater;
+    private final byte[] buffer;
+    private int position;
+
+    private final CRC32 crc = new CRC32();
+    private long uncompressedSize;
+    private long compressedSize;
+
+    /**
+     * @param deflater a raw (nowrap) deflater, ready for a new stream.
+     * @param buffer   the output buffer, its length is the frame size.
+     */
+    EntryDeflater(Deflater deflater, byte[] buffer) {
+        this.deflater = deflater;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Adds bytes as they are, such as a header.
+     *
+     * @return the frames that became full.
+     */
+    List<ByteBuffer> write(ByteBuffer bytes) {
+        List<ByteBuffer> frames = Collections.emptyList();
+        while (bytes.hasRemaining()) {
+            int length = Math.min(bytes.remaining(), buffer.length - position);
+            bytes.get(buffer, position, length);
+            position += length;
+            if (position == buffer.length) {
+                frames = emit(frames);
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Adds the next chunk of content, which is consumed completely.
+     *
+     * @return the frames that became full.
+     */
+    List<ByteBuffer> deflate(ByteBuffer content) {
+        crc.update(content.duplicate());
+        uncompressedSize += content.remaining();
+        deflater.setInput(content);
+
+        List<ByteBuffer> frames = Collections.emptyList();
+        while (!deflater.needsInput()) {
+            frames = drain(frames);
+        }
+        return frames;
+    }
+
+    /**
+     * Ends the compressed data. The CRC and sizes are final afterwards.
+     *
+     * @return the frames that became full.
+     */
+    List<ByteBuffer> finish() {
+        deflater.finish();
+        List<ByteBuffer> frames = Collections.emptyList();
+        while (!deflater.finished()) {
+            frames = drain(frames);
+        }
+        return frames;
+    }
+
+    /**
+     * @return the last, partial frame, if there is one.
+     */
+    List<ByteBuffer> flush() {
+        return position > 0 ? emit(Collections.emptyList()) : Collections.emptyList();
+    }
+
+    long crc() {
+        return crc.getValue();
+    }
+
+    long uncompressedSize() {
+        return uncompressedSize;
+    }
+
+    long compressedSize() {
+        return compressedSize;
+    }
+
+    // Deflates into the rest of the output buffer, zlib keeps what doesn't fit for the next call
+    private List<ByteBuffer> drain(List<ByteBuffer> frames) {
+        int length = deflater.deflate(buffer, position, buffer.length - position, Deflater.NO_FLUSH);
+        position += length;
+        compressedSize += length;
+        return position == buffer.length ? emit(frames) : frames;
+    }
+
+    private List<ByteBuffer> emit(List<ByteBuffer> frames) {
+        ByteBuffer frame = ByteBuffer.wrap(Arrays.copyOf(buffer, position));
+        position = 0;
+        if (frames.isEmpty()) {
+            return Collections.singletonList(frame);
+        }
+        // Only when a single chunk gives more than a frame of output
+        List<ByteBuffer> more = new ArrayList<>(frames);
+        more.add(frame);
+        return more;
+    }
+}
@@ -0,0 +1,124 @@
+package io.filemanager.filez.archives;
+
+import io.filemanager.filez.files.uploader.PartSlicer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses one stream into a single raw DEFLATE stream on several cores, the way pigz does.
+ * <p>
+ * The input is cut into blocks of a fixed size that are deflated independently and concurrently. Each block
+ * uses the last 32 KB of its predecessor as preset dictionary, so matches across block boundaries are not lost.
+ * Every block but the last ends with a sync flush (an empty stored block), which ends it on a byte boundary
+ * without marking the end of the stream, so the compressed blocks can simply be concatenated. The
+ * CRC-32 of each block is computed along with it and combined in order.
+ */
+public final class ParallelDeflater {
+
+    // The DEFLATE window, back references never reach further than this
+    static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * One compressed block, in the order of the input.
+     *
+     * @param data        the compressed bytes.
+     * @param crc         the CRC-32 of the uncompressed bytes of this block.
+     * @param inputLength the number of uncompressed bytes of this block.
+     */
+    public record Block(ByteBuffer data, long crc, long inputLength) {
+    }
+
+    private record BlockInput(PartSlicer.Part part, byte[] dictionary) {
+    }
+
+    private ParallelDeflater() {
+    }
+
+    /**
+     * @param deflaters   where the deflaters of the blocks come from.
+     * @param level       the compression level.
+     * @param strategy    the compression strategy.
+     * @param blockSize   the number of uncompressed bytes per block.
+     * @param parallelism how many blocks are compressed at the same time. Together with the block size,
+     *                    this bounds the memory the stream may hold.
+     * @param scheduler   the scheduler the blocks are compressed on.
+     */
+    public static Flux<Block> deflate(Flux<ByteBuffer> content, DeflaterPool deflaters, int level, int strategy,
+                                      long blockSize, int parallelism, Scheduler scheduler) {
+        return Flux.defer(() -> {
+            // The tail of the previous block, the stream of parts is sequential
+            byte[][] previousTail = {null};
+
+            return PartSlicer.slice(content, blockSize)
+                    .map(part -> {
+                        BlockInput input = new BlockInput(part, previousTail[0]);
+                        previousTail[0] = tail(part.chunks());
+                        return input;
+                    })
+                    .flatMapSequential(input -> Mono.fromCallable(() -> deflateBlock(input, deflaters, level, strategy)).subscribeOn(scheduler),
+                            parallelism, 1);
+        });
+    }
+
+    private static Block deflateBlock(BlockInput input, DeflaterPool deflaters, int level, int strategy) {
+        Deflater deflater = deflaters.acquire(level, strategy);
+        try {
+            if (input.dictionary() != null) {
+                deflater.setDictionary(input.dictionary());
+            }
+            CRC32 crc = new CRC32();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[OUTPUT_BUFFER_SIZE];
+
+            for (ByteBuffer chunk : input.part().chunks()) {
+                crc.update(chunk.duplicate());
+                deflater.setInput(chunk.duplicate());
+                while (!deflater.needsInput()) {
+                    int length = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+                    output.write(buffer, 0, length);
+                }
+            }
+
+            if (input.part().last()) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int length = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+                    output.write(buffer, 0, length);
+                }
+            } else {
+                // A full output buffer means there may be more to flush
+                int length;
+                do {
+                    length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    output.write(buffer, 0, length);
+                } while (length == buffer.length);
+            }
+
+            return new Block(ByteBuffer.wrap(output.toByteArray()), crc.getValue(), input.part().size());
+        } finally {
+            deflaters.release(deflater);
+        }
+    }
+
+    // The last DICTIONARY_SIZE bytes of a block
+    private static byte[] tail(List<ByteBuffer> chunks) {
+        long size = chunks.stream().mapToLong(ByteBuffer::remaining).sum();
+        byte[] tail = new byte[(int) Math.min(size, DICTIONARY_SIZE)];
+        int remaining = tail.length;
+        for (int i = chunks.size() - 1; i >= 0 && remaining > 0; i--) {
+            ByteBuffer chunk = chunks.get(i);
+            int length = Math.min(chunk.remaining(), remaining);
+            remaining -= length;
+            chunk.get(chunk.limit() - length, tail, remaining, length);
+        }
+        return tail;
+    }
+}
@@ -0,0 +1,131 @@
+package io.filemanager.filez.archives;
+
+import io.filemanager.filez.shared.dto.ByteRange;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A ZIP archive that only has STORED entries with known sizes and CRC-32s, so its exact layout is known before
+ * any content is read: the size of the archive, and for every byte whether it belongs to a header (computed here)
+ * or to the content of an object (read from S3).
+ * <p>
+ * The same files always give the same bytes, which is what makes Content-Length, Range requests and resuming
+ * possible. A range only reads the object ranges that overlap it. The entity tag is a digest of the central
+ * directory, which covers names, sizes, CRCs, times and offsets of all entries.
+ */
+public final class StoredZipArchive {
+
+    /**
+     * Reads a range of the content of an entry, given its file name, e.g. from
+     * {@link io.filemanager.filez.files.downloader.S3Downloader#download}.
+     */
+    @FunctionalInterface
+    public interface ContentReader {
+        Flux<ByteBuffer> read(String name, ByteRange range, long objectSize);
+    }
+
+    // A contiguous part of the archive, either bytes computed up front or the content of an entry
+    private record Segment(long offset, long length, ByteBuffer bytes, ZipEntryInfo entry) {
+    }
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final long[] offsets;
+    private final long size;
+    private final String eTag;
+    private final Instant lastModified;
+    private final ContentReader contentReader;
+
+    /**
+     * @param entries the STORED entries, in archive order. The file name of an entry is what its content is read by.
+     */
+    StoredZipArchive(List<ZipEntryInfo> entries, ContentReader contentReader) {
+        this.contentReader = contentReader;
+
+        long centralDirectoryOffset = ZipRecords.assignOffsets(entries);
+
+        for (ZipEntryInfo entry : entries) {
+            ByteBuffer header = ZipRecords.localFileHeader(entry);
+            long contentOffset = entry.getLocalHeaderOffset() + header.remaining();
+            segments.add(new Segment(entry.getLocalHeaderOffset(), header.remaining(), header, null));
+            if (entry.getCompressedSize() > 0) {
+                segments.add(new Segment(contentOffset, entry.getCompressedSize(), null, entry));
+            }
+        }
+        ByteBuffer centralDirectory = ZipRecords.centralDirectory(entries, centralDirectoryOffset);
+        segments.add(new Segment(centralDirectoryOffset, centralDirectory.remaining(), centralDirectory, null));
+
+        this.offsets = segments.stream().mapToLong(Segment::offset).toArray();
+        this.size = centralDirectoryOffset + centralDirectory.remaining();
+        this.eTag = digest(centralDirectory);
+        this.lastModified = entries.stream()
+                .map(ZipEntryInfo::getLastModified)
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .orElse(null);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public String eTag() {
+        return eTag;
+    }
+
+    public Instant lastModified() {
+        return lastModified;
+    }
+
+    public Flux<ByteBuffer> read() {
+        return read(new ByteRange(0, size - 1));
+    }
+
+    /**
+     * Reads a range of the archive. Nothing is read until the Flux is subscribed to.
+     */
+    public Flux<ByteBuffer> read(ByteRange range) {
+        return Flux.defer(() -> {
+            List<Flux<ByteBuffer>> parts = new ArrayList<>();
+            for (int i = segmentAt(range.start()); i < segments.size() && segments.get(i).offset() <= range.end(); i++) {
+                Segment segment = segments.get(i);
+                // Relative to the start of the segment
+                long from = Math.max(range.start(), segment.offset()) - segment.offset();
+                long to = Math.min(range.end(), segment.offset() + segment.length() - 1) - segment.offset();
+
+                if (segment.bytes() != null) {
+                    parts.add(Flux.just(segment.bytes().slice((int) from, (int) (to - from + 1))));
+                } else {
+                    ZipEntryInfo entry = segment.entry();
+                    parts.add(Flux.defer(() -> contentReader.read(entry.getFileName(), new ByteRange(from, to), entry.getCompressedSize())));
+                }
+            }
+            return Flux.concat(parts);
+        });
+    }
+
+    // The index of the segment that holds the given offset
+    private int segmentAt(long offset) {
+        int index = Arrays.binarySearch(offsets, offset);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private static String digest(ByteBuffer bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(bytes.duplicate());
+            return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -3,15 +3,57 @@ package io.filemanager.filez.archives;
 import lombok.*;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.zip.ZipEntry;
 
 @Data
-@RequiredArgsConstructor
 public class ZipEntryInfo {
     private final String fileName;
     private final long crc;
     private final long compressedSize;
     private final long uncompressedSize;
+    private final int method; // ZipEntry.STORED or ZipEntry.DEFLATED
+    private final Instant lastModified; // Null for entries read back from a ZipEntryTable, which only keeps the DOS time
     private long localHeaderOffset; // Will be set as we stream
 
-    public byte[] getFileNameBytes() { return fileName.getBytes(StandardCharsets.UTF_8); }
-}
\ No newline at end of file
+    // Every record of the entry repeats these, so they are encoded once
+    private final byte[] fileNameBytes;
+    private final int dosTime;
+
+    public ZipEntryInfo(String fileName, long crc, long compressedSize, long uncompressedSize, int method, Instant lastModified) {
+        this(fileName, fileName.getBytes(StandardCharsets.UTF_8), crc, compressedSize, uncompressedSize, method, lastModified,
+                ZipRecords.dosTime(lastModified));
+    }
+
+    private ZipEntryInfo(String fileName, byte[] fileNameBytes, long crc, long compressedSize, long uncompressedSize,
+                         int method, Instant lastModified, int dosTime) {
+        this.fileName = fileName;
+        this.fileNameBytes = fileNameBytes;
+        this.crc = crc;
+        this.compressedSize = compressedSize;
+        this.uncompressedSize = uncompressedSize;
+        this.method = method;
+        this.lastModified = lastModified;
+        this.dosTime = dosTime;
+    }
+
+    /**
+     * An entry as it was recorded in a {@link ZipEntryTable}.
+     */
+    static ZipEntryInfo fromRecord(byte[] fileNameBytes, long crc, long compressedSize, long uncompressedSize, int method, int dosTime) {
+        return new ZipEntryInfo(new String(fileNameBytes, StandardCharsets.UTF_8), fileNameBytes,
+                crc, compressedSize, uncompressedSize, method, null, dosTime);
+    }
+
+    /**
+     * This entry with the CRC and sizes that became known once its content was written.
+     */
+    public ZipEntryInfo withContent(long crc, long compressedSize, long uncompressedSize) {
+        return new ZipEntryInfo(fileName, fileNameBytes, crc, compressedSize, uncompressedSize, method, lastModified, dosTime);
+    }
+
+    // Deflated entries are streamed before their sizes and CRC are known, those follow in a data descriptor
+    public boolean hasDataDescriptor() { return method == ZipEntry.DEFLATED; }
+
+    public int getFlags() { return hasDataDescriptor() ? 1 << 3 : 0; }
+}
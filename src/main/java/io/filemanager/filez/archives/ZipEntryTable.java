@@ -0,0 +1,239 @@
+package io.filemanager.filez.archives;
+
+import reactor.core.publisher.Flux;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The entries of a streamed archive, from the moment they are written until the central directory is.
+ * <p>
+ * There is no object per entry: each one is a record of {@value #RECORD_HEADER_SIZE} bytes plus its name in one
+ * buffer. Once the records take more than {@code memoryLimit} bytes, they are moved to a temporary file, which is
+ * deleted when the table is closed. The central directory is read back in order and emitted in chunks of
+ * {@value #CHUNK_SIZE} bytes, so the memory of an archive build doesn't grow with the number of entries.
+ * <p>
+ * Entries are added one after the other and read once all of them have been added, not concurrently.
+ */
+final class ZipEntryTable implements Closeable {
+
+    // crc, compressed size, uncompressed size, local header offset, DOS time, method, name length
+    static final int RECORD_HEADER_SIZE = 4 + 8 + 8 + 8 + 4 + 2 + 2;
+    static final int CHUNK_SIZE = 64 * 1024;
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final long memoryLimit;
+    private final Path spillDirectory;
+
+    private ByteBuffer records = ByteBuffer.allocate(INITIAL_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+    private FileChannel spillFile;
+    private long spilledBytes;
+
+    private long count;
+    private long nextOffset;
+    private long centralDirectorySize;
+
+    /**
+     * @param spillDirectory where the records go once they take more than {@code memoryLimit}, null for the
+     *                       temporary directory.
+     */
+    ZipEntryTable(long memoryLimit, Path spillDirectory) {
+        this.memoryLimit = memoryLimit;
+        this.spillDirectory = spillDirectory != null ? spillDirectory : Path.of(System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * Adds the next entry of the archive, which starts right after the previous one. Sets its local header offset.
+     */
+    void add(ZipEntryInfo entry) {
+        entry.setLocalHeaderOffset(nextOffset);
+        byte[] fileNameBytes = entry.getFileNameBytes();
+        ensureCapacity(RECORD_HEADER_SIZE + fileNameBytes.length);
+
+        records.putInt((int) entry.getCrc());
+        records.putLong(entry.getCompressedSize());
+        records.putLong(entry.getUncompressedSize());
+        records.putLong(entry.getLocalHeaderOffset());
+        records.putInt(entry.getDosTime());
+        records.putShort((short) entry.getMethod());
+        records.putShort((short) fileNameBytes.length);
+        records.put(fileNameBytes);
+
+        count++;
+        nextOffset += ZipRecords.entrySize(entry);
+        centralDirectorySize += ZipRecords.centralDirectoryHeaderSize(entry);
+    }
+
+    long count() {
+        return count;
+    }
+
+    /**
+     * The offset the central directory starts at, right after the last entry.
+     */
+    long centralDirectoryOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * true once the records didn't fit into memory anymore.
+     */
+    boolean spilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * The central directory followed by the end-of-central-directory record(s), in chunks. Reads the spilled
+     * records with blocking I/O, so it should not be subscribed to on an event loop.
+     */
+    Flux<ByteBuffer> centralDirectory() {
+        return Flux.generate(RecordReader::new, (reader, sink) -> {
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            ZipEntryInfo entry;
+            while ((entry = reader.peek()) != null) {
+                int headerSize = ZipRecords.centralDirectoryHeaderSize(entry);
+                if (headerSize > chunk.remaining()) {
+                    if (chunk.position() > 0) {
+                        break;
+                    }
+                    // A header with an unusually long name gets a chunk of its own
+                    chunk = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+                }
+                ZipRecords.putCentralDirectoryHeader(chunk, entry);
+                reader.next();
+            }
+
+            if (entry == null && ZipRecords.endOfCentralDirectorySize(count, centralDirectorySize, nextOffset) <= chunk.remaining()) {
+                ZipRecords.putEndOfCentralDirectory(chunk, count, centralDirectorySize, nextOffset);
+                sink.next(chunk.flip());
+                sink.complete();
+            } else {
+                sink.next(chunk.flip());
+            }
+            return reader;
+        });
+    }
+
+    @Override
+    public void close() {
+        if (spillFile != null) {
+            try {
+                // Deletes the file as well
+                spillFile.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void ensureCapacity(int recordSize) {
+        if (records.remaining() >= recordSize) {
+            return;
+        }
+        if (records.position() > 0 && records.position() + recordSize > memoryLimit) {
+            spill();
+            if (records.remaining() >= recordSize) {
+                return;
+            }
+        }
+        int capacity = (int) Math.max(Math.min(2L * records.capacity(), memoryLimit), records.position() + recordSize);
+        ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        grown.put(records.flip());
+        records = grown;
+    }
+
+    // Moves all records in memory to the end of the spill file. Records are never split between file and memory.
+    private void spill() {
+        try {
+            if (spillFile == null) {
+                Path file = Files.createTempFile(spillDirectory, "zip-entries-", ".tmp");
+                spillFile = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            records.flip();
+            while (records.hasRemaining()) {
+                spilledBytes += spillFile.write(records, spilledBytes);
+            }
+            records.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the records in the order they were added: first the spilled ones, then the ones in memory.
+     */
+    private final class RecordReader {
+        private ByteBuffer window = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN).flip();
+        private final ByteBuffer memory = records.duplicate().flip().order(ByteOrder.LITTLE_ENDIAN);
+        private long filePosition;
+        private ZipEntryInfo next;
+
+        ZipEntryInfo peek() {
+            if (next == null) {
+                next = read();
+            }
+            return next;
+        }
+
+        void next() {
+            next = null;
+        }
+
+        private ZipEntryInfo read() {
+            ByteBuffer source;
+            if (window.hasRemaining() || filePosition < spilledBytes) {
+                ensureWindow(RECORD_HEADER_SIZE);
+                ensureWindow(RECORD_HEADER_SIZE + Short.toUnsignedInt(window.getShort(window.position() + RECORD_HEADER_SIZE - 2)));
+                source = window;
+            } else if (memory.hasRemaining()) {
+                source = memory;
+            } else {
+                return null;
+            }
+
+            long crc = Integer.toUnsignedLong(source.getInt());
+            long compressedSize = source.getLong();
+            long uncompressedSize = source.getLong();
+            long localHeaderOffset = source.getLong();
+            int dosTime = source.getInt();
+            int method = source.getShort();
+            byte[] fileNameBytes = new byte[Short.toUnsignedInt(source.getShort())];
+            source.get(fileNameBytes);
+
+            ZipEntryInfo entry = ZipEntryInfo.fromRecord(fileNameBytes, crc, compressedSize, uncompressedSize, method, dosTime);
+            entry.setLocalHeaderOffset(localHeaderOffset);
+            return entry;
+        }
+
+        // Makes sure the window holds at least `length` bytes of the spill file
+        private void ensureWindow(int length) {
+            if (window.remaining() >= length) {
+                return;
+            }
+            if (window.capacity() < length) {
+                window = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN).put(window).flip();
+            }
+            window.compact();
+            try {
+                while (window.position() < length) {
+                    int read = spillFile.read(window, filePosition);
+                    if (read < 0) {
+                        throw new IOException("Unexpected end of the spilled ZIP entries");
+                    }
+                    filePosition += read;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                window.flip();
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package io.filemanager.filez.archives;
+
+import java.util.zip.Deflater;
+
+/**
+ * How the entries of a streamed archive are written.
+ *
+ * @param method   which entries are stored and which are deflated.
+ * @param level    the compression level of deflated entries, from 0 (none) over 1 (best speed) to 9 (best
+ *                 compression), or -1 for zlib's default.
+ * @param strategy the compression strategy of deflated entries.
+ */
+public record ZipOptions(CompressionMethod method, int level, DeflateStrategy strategy) {
+
+    public static final ZipOptions DEFAULT = of(CompressionMethod.AUTO);
+
+    public ZipOptions {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be between -1 and 9, was " + level);
+        }
+    }
+
+    /**
+     * The given method with the default level and strategy.
+     */
+    public static ZipOptions of(CompressionMethod method) {
+        return new ZipOptions(method, Deflater.DEFAULT_COMPRESSION, DeflateStrategy.DEFAULT);
+    }
+}
@@ -0,0 +1,270 @@
+package io.filemanager.filez.archives;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Encodes the records of a ZIP file (APPNOTE 4.3). Everything here is a pure function of the entries,
+ * so the same entries always give the same bytes.
+ * <p>
+ * ZIP64 records are used only where a value doesn't fit the classic fields: sizes and offsets of 4 GB and more,
+ * and more than 65,534 entries. An entry with a data descriptor doesn't know its sizes when its local header is
+ * written; like {@link java.util.zip.ZipOutputStream}, its descriptor switches to 8-byte sizes once they don't fit
+ * in 4 bytes.
+ */
+final class ZipRecords {
+
+    static final int LOCAL_FILE_HEADER_SIZE = 30;
+    static final int DATA_DESCRIPTOR_SIZE = 16;
+    static final int ZIP64_DATA_DESCRIPTOR_SIZE = 24;
+    static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+    static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+    static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE = 20;
+
+    // A classic field holding this value means: see the ZIP64 record
+    static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    private static final short ZIP64_EXTRA_ID = 0x0001;
+    private static final short VERSION = 20;
+    private static final short ZIP64_VERSION = 45;
+
+    private ZipRecords() {
+    }
+
+    /**
+     * The number of bytes an entry takes up in the archive: header + (compressed) data + descriptor (if any).
+     */
+    static long entrySize(ZipEntryInfo entry) {
+        return localFileHeaderSize(entry) + entry.getCompressedSize() + dataDescriptorSize(entry);
+    }
+
+    /**
+     * Sets the local header offset of every entry, assuming they are written back to back from offset 0.
+     *
+     * @return the offset of the central directory.
+     */
+    static long assignOffsets(List<ZipEntryInfo> entries) {
+        long currentOffset = 0;
+        for (ZipEntryInfo entry : entries) {
+            entry.setLocalHeaderOffset(currentOffset);
+            currentOffset += entrySize(entry);
+        }
+        return currentOffset;
+    }
+
+    static int localFileHeaderSize(ZipEntryInfo entry) {
+        return LOCAL_FILE_HEADER_SIZE + entry.getFileNameBytes().length + (localZip64(entry) ? 20 : 0);
+    }
+
+    static int dataDescriptorSize(ZipEntryInfo entry) {
+        if (!entry.hasDataDescriptor()) {
+            return 0;
+        }
+        return hasZip64Sizes(entry) ? ZIP64_DATA_DESCRIPTOR_SIZE : DATA_DESCRIPTOR_SIZE;
+    }
+
+    static ByteBuffer localFileHeader(ZipEntryInfo entry) {
+        byte[] fileNameBytes = entry.getFileNameBytes();
+        boolean zip64 = localZip64(entry);
+        ByteBuffer buffer = ByteBuffer.allocate(localFileHeaderSize(entry)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x04034b50);
+        buffer.putShort(zip64 ? ZIP64_VERSION : VERSION);
+        buffer.putShort((short) entry.getFlags());
+        buffer.putShort((short) entry.getMethod());
+        buffer.putInt(entry.getDosTime());
+        if (entry.hasDataDescriptor()) {
+            // CRC and sizes are not known yet and follow in the data descriptor
+            buffer.putInt(0);
+            buffer.putInt(0);
+            buffer.putInt(0);
+        } else {
+            buffer.putInt((int) entry.getCrc());
+            buffer.putInt(zip64 ? (int) ZIP64_MAGIC : (int) entry.getCompressedSize());
+            buffer.putInt(zip64 ? (int) ZIP64_MAGIC : (int) entry.getUncompressedSize());
+        }
+        buffer.putShort((short) fileNameBytes.length);
+        buffer.putShort((short) (zip64 ? 20 : 0));
+        buffer.put(fileNameBytes);
+        if (zip64) {
+            // In a local header, the ZIP64 extra field holds both sizes
+            buffer.putShort(ZIP64_EXTRA_ID);
+            buffer.putShort((short) 16);
+            buffer.putLong(entry.getUncompressedSize());
+            buffer.putLong(entry.getCompressedSize());
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    static ByteBuffer dataDescriptor(ZipEntryInfo entry) {
+        boolean zip64 = hasZip64Sizes(entry);
+        ByteBuffer buffer = ByteBuffer.allocate(dataDescriptorSize(entry)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x08074b50);
+        buffer.putInt((int) entry.getCrc());
+        if (zip64) {
+            buffer.putLong(entry.getCompressedSize());
+            buffer.putLong(entry.getUncompressedSize());
+        } else {
+            buffer.putInt((int) entry.getCompressedSize());
+            buffer.putInt((int) entry.getUncompressedSize());
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    static int centralDirectoryHeaderSize(ZipEntryInfo entry) {
+        int extraSize = centralZip64ExtraSize(entry);
+        return CENTRAL_DIRECTORY_HEADER_SIZE + entry.getFileNameBytes().length + (extraSize > 0 ? 4 + extraSize : 0);
+    }
+
+    /**
+     * The central directory followed by the end-of-central-directory record(s). The local header offsets
+     * must have been assigned.
+     */
+    static ByteBuffer centralDirectory(List<ZipEntryInfo> entries, long centralDirectoryOffset) {
+        long centralDirectorySize = 0;
+        for (ZipEntryInfo entry : entries) {
+            centralDirectorySize += centralDirectoryHeaderSize(entry);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(centralDirectorySize
+                        + endOfCentralDirectorySize(entries.size(), centralDirectorySize, centralDirectoryOffset)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        for (ZipEntryInfo entry : entries) {
+            putCentralDirectoryHeader(buffer, entry);
+        }
+        putEndOfCentralDirectory(buffer, entries.size(), centralDirectorySize, centralDirectoryOffset);
+        buffer.flip();
+        return buffer;
+    }
+
+    static void putCentralDirectoryHeader(ByteBuffer buffer, ZipEntryInfo entry) {
+        byte[] fileNameBytes = entry.getFileNameBytes();
+        int extraSize = centralZip64ExtraSize(entry);
+        boolean compressedZip64 = entry.getCompressedSize() >= ZIP64_MAGIC;
+        boolean uncompressedZip64 = entry.getUncompressedSize() >= ZIP64_MAGIC;
+        boolean offsetZip64 = entry.getLocalHeaderOffset() >= ZIP64_MAGIC;
+
+        buffer.putInt(0x02014b50); // Signature
+        buffer.putShort(extraSize > 0 ? ZIP64_VERSION : VERSION);
+        buffer.putShort(extraSize > 0 ? ZIP64_VERSION : VERSION);
+        buffer.putShort((short) entry.getFlags());
+        buffer.putShort((short) entry.getMethod());
+        buffer.putInt(entry.getDosTime());
+        buffer.putInt((int) entry.getCrc());
+        buffer.putInt(compressedZip64 ? (int) ZIP64_MAGIC : (int) entry.getCompressedSize());
+        buffer.putInt(uncompressedZip64 ? (int) ZIP64_MAGIC : (int) entry.getUncompressedSize());
+        buffer.putShort((short) fileNameBytes.length);
+        buffer.putShort((short) (extraSize > 0 ? 4 + extraSize : 0));
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putInt(0);
+        buffer.putInt(offsetZip64 ? (int) ZIP64_MAGIC : (int) entry.getLocalHeaderOffset());
+        buffer.put(fileNameBytes);
+        if (extraSize > 0) {
+            // Only the values that didn't fit, in this order
+            buffer.putShort(ZIP64_EXTRA_ID);
+            buffer.putShort((short) extraSize);
+            if (uncompressedZip64) {
+                buffer.putLong(entry.getUncompressedSize());
+            }
+            if (compressedZip64) {
+                buffer.putLong(entry.getCompressedSize());
+            }
+            if (offsetZip64) {
+                buffer.putLong(entry.getLocalHeaderOffset());
+            }
+        }
+    }
+
+    static int endOfCentralDirectorySize(long entryCount, long centralDirectorySize, long centralDirectoryOffset) {
+        return END_OF_CENTRAL_DIRECTORY_SIZE + (needsZip64End(entryCount, centralDirectorySize, centralDirectoryOffset)
+                ? ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE + ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE
+                : 0);
+    }
+
+    /**
+     * The end-of-central-directory record, preceded by the ZIP64 end record and its locator if needed.
+     */
+    static void putEndOfCentralDirectory(ByteBuffer buffer, long entryCount, long centralDirectorySize, long centralDirectoryOffset) {
+        boolean zip64 = needsZip64End(entryCount, centralDirectorySize, centralDirectoryOffset);
+        if (zip64) {
+            long zip64EndOffset = centralDirectoryOffset + centralDirectorySize;
+
+            buffer.putInt(0x06064b50); // ZIP64 end of central directory record
+            buffer.putLong(ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE - 12); // Size of the rest of the record
+            buffer.putShort(ZIP64_VERSION);
+            buffer.putShort(ZIP64_VERSION);
+            buffer.putInt(0);
+            buffer.putInt(0);
+            buffer.putLong(entryCount);
+            buffer.putLong(entryCount);
+            buffer.putLong(centralDirectorySize);
+            buffer.putLong(centralDirectoryOffset);
+
+            buffer.putInt(0x07064b50); // ZIP64 end of central directory locator
+            buffer.putInt(0);
+            buffer.putLong(zip64EndOffset);
+            buffer.putInt(1);
+        }
+
+        buffer.putInt(0x06054b50); // Signature
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) (entryCount >= ZIP64_MAGIC_COUNT ? ZIP64_MAGIC_COUNT : entryCount));
+        buffer.putShort((short) (entryCount >= ZIP64_MAGIC_COUNT ? ZIP64_MAGIC_COUNT : entryCount));
+        buffer.putInt(centralDirectorySize >= ZIP64_MAGIC ? (int) ZIP64_MAGIC : (int) centralDirectorySize);
+        buffer.putInt(centralDirectoryOffset >= ZIP64_MAGIC ? (int) ZIP64_MAGIC : (int) centralDirectoryOffset);
+        buffer.putShort((short) 0);
+    }
+
+    private static boolean hasZip64Sizes(ZipEntryInfo entry) {
+        return entry.getCompressedSize() >= ZIP64_MAGIC || entry.getUncompressedSize() >= ZIP64_MAGIC;
+    }
+
+    // Only entries whose sizes are known up front carry them (and thus a ZIP64 extra field) in the local header
+    private static boolean localZip64(ZipEntryInfo entry) {
+        return !entry.hasDataDescriptor() && hasZip64Sizes(entry);
+    }
+
+    private static int centralZip64ExtraSize(ZipEntryInfo entry) {
+        int size = 0;
+        if (entry.getUncompressedSize() >= ZIP64_MAGIC) {
+            size += 8;
+        }
+        if (entry.getCompressedSize() >= ZIP64_MAGIC) {
+            size += 8;
+        }
+        if (entry.getLocalHeaderOffset() >= ZIP64_MAGIC) {
+            size += 8;
+        }
+        return size;
+    }
+
+    private static boolean needsZip64End(long entryCount, long centralDirectorySize, long centralDirectoryOffset) {
+        return entryCount >= ZIP64_MAGIC_COUNT || centralDirectorySize >= ZIP64_MAGIC || centralDirectoryOffset >= ZIP64_MAGIC;
+    }
+
+    /**
+     * ZIP entries carry a local time. Times before 1980 can't be represented and are written as 1980-01-01.
+     */
+    static int dosTime(Instant time) {
+        ZonedDateTime zdt = ZonedDateTime.ofInstant(time, ZoneId.systemDefault());
+        if (zdt.getYear() < 1980) {
+            zdt = ZonedDateTime.of(1980, 1, 1, 0, 0, 0, 0, zdt.getZone());
+        }
+        return (zdt.getYear() - 1980) << 25 |
+                (zdt.getMonthValue()) << 21 |
+                (zdt.getDayOfMonth()) << 16 |
+                (zdt.getHour()) << 11 |
+                (zdt.getMinute()) << 5 |
+                (zdt.getSecond()) >> 1;
+    }
+}
@@ -1,5 +1,7 @@
 package io.filemanager.filez.files;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.filemanager.filez.files.storage.KeyLayout;
 import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
@@ -33,6 +35,45 @@ public class File {
 
     private long size;
 
+    /**
+     * The CRC-32 of the content, computed while it was uploaded. Null for files uploaded before it was recorded.
+     */
+    @Column("crc32")
+    private Long crc32;
+
+    /**
+     * How the S3 key of the content is built. Null for files stored before it was recorded, which use {@link KeyLayout#PLAIN}.
+     */
+    @Column("key_layout")
+    private KeyLayout keyLayout;
+
+    /**
+     * The bucket the content is stored in. Null for files stored before it was recorded, which are in the default bucket.
+     */
+    @Column("bucket")
+    private String bucket;
+
+    /**
+     * The content of a file small enough to be kept in its row, see {@code s3.inline-threshold}. Null for files in S3.
+     */
+    @JsonIgnore
+    @ToString.Exclude
+    @Column("content")
+    private byte[] content;
+
+    /**
+     * The pack object the content has been moved into, see {@link io.filemanager.filez.files.pack.Packer}. Null for
+     * files in an object of their own or inline.
+     */
+    @Column("pack_id")
+    private Long packId;
+
+    /**
+     * Where the content starts in its pack, it takes {@code size} bytes from there. Null for files not in a pack.
+     */
+    @Column("pack_offset")
+    private Long packOffset;
+
     @CreatedDate
     @Column("created_at")
     private Instant createdAt;
@@ -1,16 +1,24 @@
 package io.filemanager.filez.files;
 
 import io.filemanager.filez.shared.dto.Bucket;
+import io.filemanager.filez.shared.dto.ByteRange;
+import io.filemanager.filez.shared.dto.DownloadResult;
+import io.filemanager.filez.shared.web.RangeRequests;
+import io.filemanager.filez.shared.web.ResponseWriter;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.nio.ByteBuffer;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * REST Controller for handling file uploads and downloads using Spring WebFlux and S3AsyncClient.
@@ -49,18 +57,85 @@ public class FileController {
 
     /**
      * Downloads a file by its database ID, setting the correct filename in the response header.
+     * Supports single and multiple byte ranges (Range, If-Range), answering with 206 Partial Content
+     * or 416 Range Not Satisfiable, and conditional requests (If-None-Match, If-Modified-Since, ...) answered with
+     * 304 Not Modified or 412 Precondition Failed. Files in the local disk cache are sent with zero-copy transfer.
      *
      * @param id The primary key of the file in the database.
-     * @return A Mono containing the ResponseEntity with the file stream, or a 404 Not Found if the ID does not exist.
+     * @return A Mono that completes once the file has been written, or after a 404 Not Found if the ID does not exist.
      */
     @GetMapping("/download/{id}")
-    public Mono<ResponseEntity<Flux<ByteBuffer>>> downloadFileById(@PathVariable Long id) {
+    public Mono<Void> downloadFileById(@PathVariable Long id, @RequestHeader HttpHeaders requestHeaders, ServerWebExchange exchange) {
+        ServerHttpResponse response = exchange.getResponse();
         return fileService.downloadFile(id)
-                .map(downloadResult -> ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + downloadResult.fileName() + "\"")
-                        .contentType(MediaType.parseMediaType(downloadResult.fileType()))
-                        .body(downloadResult.fileContent()))
-                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
+                .flatMap(downloadResult -> writeDownload(downloadResult, requestHeaders, exchange)
+                        .doFinally(signal -> downloadResult.release())
+                        .thenReturn(true))
+                // Cancelled before the response was started
+                .doOnDiscard(DownloadResult.class, DownloadResult::release)
+                .switchIfEmpty(Mono.defer(() -> ResponseWriter.write(ResponseEntity.notFound().build(), response).thenReturn(false)))
+                .then();
+    }
+
+    /**
+     * Deletes a file by its database ID.
+     *
+     * @return 204 No Content once the file is gone, or 404 Not Found if the ID does not exist.
+     */
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteFileById(@PathVariable Long id) {
+        return fileService.deleteFile(id)
+                .map(deleted -> ResponseEntity.noContent().<Void>build())
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    private Mono<Void> writeDownload(DownloadResult downloadResult, HttpHeaders requestHeaders, ServerWebExchange exchange) {
+        ServerHttpResponse response = exchange.getResponse();
+        MediaType contentType = MediaType.parseMediaType(downloadResult.fileType());
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + downloadResult.fileName() + "\"");
+
+        if (!downloadResult.supportsRanges()) {
+            return ResponseWriter.write(ResponseEntity.ok()
+                    .headers(headers)
+                    .contentType(contentType)
+                    .body(downloadResult.fileContent()), response);
+        }
+
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (downloadResult.eTag() != null) {
+            headers.setETag(downloadResult.eTag());
+        }
+        if (downloadResult.lastModified() != null) {
+            headers.setLastModified(downloadResult.lastModified());
+        }
+        // The same preconditions ResponseEntity handlers get, sets the status to 304 or 412 if one applies
+        Instant lastModified = downloadResult.lastModified() != null ? downloadResult.lastModified() : Instant.MIN;
+        if (exchange.checkNotModified(downloadResult.eTag(), lastModified)) {
+            return response.setComplete();
+        }
+
+        Optional<List<ByteRange>> ranges = RangeRequests.resolve(requestHeaders, downloadResult.size(), downloadResult.eTag(), downloadResult.lastModified());
+        if (ranges.isEmpty()) {
+            ResponseEntity<Flux<ByteBuffer>> entity = ResponseEntity.ok()
+                    .headers(headers)
+                    .contentLength(downloadResult.size())
+                    .contentType(contentType)
+                    .body(downloadResult.fileContent());
+            return downloadResult.localFile() != null
+                    ? ResponseWriter.writeFile(entity, downloadResult.localFile(), 0, downloadResult.size(), response)
+                    : ResponseWriter.write(entity, response);
+        }
+        if (ranges.get().isEmpty()) {
+            return ResponseWriter.write(RangeRequests.rangeNotSatisfiable(downloadResult.size()), response);
+        }
+
+        ResponseEntity<Flux<ByteBuffer>> entity = RangeRequests.partialContent(ranges.get(), downloadResult.size(), contentType, headers, downloadResult.rangeReader());
+        if (downloadResult.localFile() != null && ranges.get().size() == 1) {
+            ByteRange range = ranges.get().get(0);
+            return ResponseWriter.writeFile(entity, downloadResult.localFile(), range.start(), range.length(), response);
+        }
+        return ResponseWriter.write(entity, response);
     }
 
 }
\ No newline at end of file
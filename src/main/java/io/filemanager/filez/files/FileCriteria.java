@@ -0,0 +1,15 @@
+package io.filemanager.filez.files;
+
+import java.time.Instant;
+
+/**
+ * Selects files by their metadata. Every criterion is optional, the ones given must all match.
+ *
+ * @param fromId      the smallest ID, inclusive.
+ * @param toId        the biggest ID, inclusive.
+ * @param createdFrom the start of the creation window, inclusive.
+ * @param createdTo   the end of the creation window, exclusive.
+ * @param namePrefix  the start of the file name, matched literally.
+ */
+public record FileCriteria(Long fromId, Long toId, Instant createdFrom, Instant createdTo, String namePrefix) {
+}
@@ -0,0 +1,132 @@
+package io.filemanager.filez.files;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.filemanager.filez.shared.config.MetadataCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.reactivestreams.Publisher;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.r2dbc.mapping.event.AfterSaveCallback;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A bounded in-process cache of {@link File} metadata in front of {@link FileRepository}, for the read paths
+ * (downloads and archives). A row doesn't change after its upload has finished, so hot IDs are served without
+ * a database round-trip. Only packing moves the content, and the place it was moved out of stays readable for longer
+ * than the TTL, see {@link io.filemanager.filez.files.pack.Packer}.
+ * <p>
+ * Entries are invalidated whenever a {@link File} is saved through the repository and expire after the configured
+ * TTL. Missing IDs are not cached. Neither are rows of uploads still in progress (no CRC-32 and no size yet): only
+ * the instance that finishes the upload invalidates them, so other instances would serve an empty file until the
+ * TTL. Concurrent lookups of the same ID share one query, and the misses of {@link #findAllById} are loaded with a
+ * single query. Statistics are published as the Micrometer {@code cache.*} meters of the cache
+ * {@code file-metadata}.
+ * <p>
+ * Rows of inline files carry their content, so they weigh more: the cache holds at most {@code maxSize} rows, or
+ * {@code maxSize} KB of inline content.
+ * <p>
+ * The returned objects are shared between callers and must not be modified.
+ */
+@Component
+public class FileMetadataCache implements AfterSaveCallback<File> {
+
+    private final AsyncLoadingCache<Long, File> cache;
+
+    public FileMetadataCache(FileRepository fileRepository, MetadataCacheProperties properties, MeterRegistry meterRegistry) {
+        long ttl = properties.getTtl().toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxSize())
+                .weigher(FileMetadataCache::weight)
+                .expireAfter(new Expiry<Long, File>() {
+                    @Override
+                    public long expireAfterCreate(Long id, File file, long currentTime) {
+                        return isUploaded(file) ? ttl : 0;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long id, File file, long currentTime, long currentDuration) {
+                        return expireAfterCreate(id, file, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long id, File file, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync(new AsyncCacheLoader<Long, File>() {
+                    @Override
+                    public CompletableFuture<File> asyncLoad(Long id, Executor executor) {
+                        return fileRepository.findById(id).toFuture();
+                    }
+
+                    @Override
+                    public CompletableFuture<Map<Long, File>> asyncLoadAll(Set<? extends Long> ids, Executor executor) {
+                        return fileRepository.findAllById(List.<Long>copyOf(ids)).collectMap(File::getId).toFuture();
+                    }
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "file-metadata");
+    }
+
+    // An upload sets the CRC-32 and the size when it has finished, an empty file gets a CRC-32 too
+    private static boolean isUploaded(File file) {
+        return file.getCrc32() != null || file.getSize() > 0;
+    }
+
+    // A row counts once, plus once per started KB of inline content
+    private static int weight(Long id, File file) {
+        byte[] content = file.getContent();
+        return content == null ? 1 : 1 + (content.length + 1023) / 1024;
+    }
+
+    /**
+     * @return the metadata of the file, or an empty Mono if the ID does not exist.
+     */
+    public Mono<File> findById(Long id) {
+        // A cancelled subscriber must not cancel the load other subscribers are waiting for
+        return Mono.fromFuture(() -> cache.get(id), true);
+    }
+
+    /**
+     * @return the metadata of the existing files, in the order of the given IDs.
+     */
+    public Flux<File> findAllById(Collection<Long> ids) {
+        List<Long> distinctIds = ids.stream().distinct().toList();
+        return Mono.fromFuture(() -> cache.getAll(distinctIds), true)
+                .flatMapIterable(files -> distinctIds.stream()
+                        .map(files::get)
+                        .filter(Objects::nonNull)
+                        .toList());
+    }
+
+    public void invalidate(Long id) {
+        cache.synchronous().invalidate(id);
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    @Override
+    public Publisher<File> onAfterSave(File entity, OutboundRow outboundRow, SqlIdentifier table) {
+        if (entity.getId() != null) {
+            invalidate(entity.getId());
+        }
+        return Mono.just(entity);
+    }
+}
@@ -1,7 +1,39 @@
 package io.filemanager.filez.files;
 
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Repository
-public interface FileRepository extends ReactiveCrudRepository<File, Long> {}
\ No newline at end of file
+public interface FileRepository extends ReactiveCrudRepository<File, Long>, FileRepositoryCustom {
+
+    /**
+     * Uploaded files in objects of their own, up to {@code maxSize} bytes, ordered by ID. A file gets its CRC-32
+     * when its upload has finished, so files still being uploaded are left out.
+     */
+    @Query("""
+            SELECT * FROM file_metadata
+            WHERE pack_id IS NULL AND content IS NULL AND crc32 IS NOT NULL AND size > 0 AND size <= :maxSize
+            ORDER BY id
+            LIMIT :limit
+            """)
+    Flux<File> findPackable(long maxSize, int limit);
+
+    Flux<File> findAllByPackIdOrderByPackOffset(Long packId);
+
+    /**
+     * Points a file at its new place in a pack, unless it has been moved or deleted since it was read from
+     * {@code fromPackId} (null for its own object). Doesn't touch {@code updated_at}, the content stays the same.
+     *
+     * @return the number of rows updated, 0 or 1.
+     */
+    @Modifying
+    @Query("""
+            UPDATE file_metadata SET pack_id = :packId, pack_offset = :packOffset
+            WHERE id = :id AND pack_id IS NOT DISTINCT FROM :fromPackId
+            """)
+    Mono<Integer> moveToPack(Long id, Long fromPackId, Long packId, Long packOffset);
+}
@@ -0,0 +1,16 @@
+package io.filemanager.filez.files;
+
+import reactor.core.publisher.Flux;
+
+public interface FileRepositoryCustom {
+
+    /**
+     * Streams the files matching the criteria, ordered by ID.
+     * <p>
+     * The rows are read in pages of {@code pageSize} (keyset pagination on the ID), so no query runs for long and
+     * at most about two pages are held in memory, however many rows match: the next page is only read once the
+     * subscriber has taken the rows of the current one. The first rows are emitted as soon as the first page has
+     * been read.
+     */
+    Flux<File> findAllMatching(FileCriteria criteria, int pageSize);
+}
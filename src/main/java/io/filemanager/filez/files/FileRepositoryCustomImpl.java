@@ -0,0 +1,66 @@
+package io.filemanager.filez.files;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.dialect.Escaper;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * The custom queries of {@link FileRepository}, picked up by Spring Data through the Impl suffix.
+ */
+class FileRepositoryCustomImpl implements FileRepositoryCustom {
+
+    private final R2dbcEntityTemplate template;
+
+    FileRepositoryCustomImpl(R2dbcEntityTemplate template) {
+        this.template = template;
+    }
+
+    @Override
+    public Flux<File> findAllMatching(FileCriteria criteria, int pageSize) {
+        // Each page starts after the last ID of the previous one, a short page is the last one.
+        // A prefetch of one page: the next one is only read once the subscriber has taken the current one.
+        return findPage(criteria, null, pageSize)
+                .expand(page -> page.size() < pageSize
+                        ? Mono.empty()
+                        : findPage(criteria, page.get(page.size() - 1).getId(), pageSize))
+                .flatMapIterable(page -> page, 1);
+    }
+
+    private Mono<List<File>> findPage(FileCriteria criteria, Long afterId, int pageSize) {
+        Criteria where = toCriteria(criteria);
+        if (afterId != null) {
+            where = where.and("id").greaterThan(afterId);
+        }
+        return template.select(File.class)
+                .matching(Query.query(where).sort(Sort.by("id")).limit(pageSize))
+                .all()
+                .collectList();
+    }
+
+    private static Criteria toCriteria(FileCriteria criteria) {
+        Criteria where = Criteria.empty();
+        if (criteria.fromId() != null) {
+            where = where.and("id").greaterThanOrEquals(criteria.fromId());
+        }
+        if (criteria.toId() != null) {
+            where = where.and("id").lessThanOrEquals(criteria.toId());
+        }
+        if (criteria.createdFrom() != null) {
+            where = where.and("createdAt").greaterThanOrEquals(criteria.createdFrom());
+        }
+        if (criteria.createdTo() != null) {
+            where = where.and("createdAt").lessThan(criteria.createdTo());
+        }
+        if (criteria.namePrefix() != null && !criteria.namePrefix().isEmpty()) {
+            // % and _ in the prefix are matched literally
+            where = where.and("fileName").like(Escaper.DEFAULT.escape(criteria.namePrefix()) + "%");
+        }
+        return where;
+    }
+}
@@ -1,23 +1,34 @@
 package io.filemanager.filez.files;
 
+import io.filemanager.filez.files.cache.DiskCache;
+import io.filemanager.filez.files.downloader.S3Downloader;
+import io.filemanager.filez.files.storage.FileContentReader;
+import io.filemanager.filez.files.storage.InlineContent;
+import io.filemanager.filez.files.storage.ObjectLocation;
+import io.filemanager.filez.files.storage.ObjectLocator;
 import io.filemanager.filez.files.uploader.S3Uploader;
+import io.filemanager.filez.shared.config.StorageProperties;
 import io.filemanager.filez.shared.dto.Bucket;
 import io.filemanager.filez.shared.dto.DownloadResult;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.function.Tuples;
-import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.ListBucketsResponse;
 
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 
 /**
@@ -28,15 +39,33 @@ public class FileService {
 
     private final S3AsyncClient s3AsyncClient;
     private final S3Uploader s3Uploader;
-    private final String bucketName;
+    private final S3Downloader s3Downloader;
+    private final DiskCache diskCache;
     private final FileRepository fileRepository;
+    private final FileMetadataCache fileMetadataCache;
+    private final ObjectLocator objectLocator;
+    private final FileContentReader fileContentReader;
+    private final StorageProperties storageProperties;
 
 
-    public FileService(S3AsyncClient s3AsyncClient, S3Uploader s3Uploader, @Value("${s3.bucket}") String bucketName, FileRepository fileRepository) {
+    public FileService(S3AsyncClient s3AsyncClient,
+                       S3Uploader s3Uploader,
+                       S3Downloader s3Downloader,
+                       DiskCache diskCache,
+                       FileRepository fileRepository,
+                       FileMetadataCache fileMetadataCache,
+                       ObjectLocator objectLocator,
+                       FileContentReader fileContentReader,
+                       StorageProperties storageProperties) {
         this.s3AsyncClient = s3AsyncClient;
         this.s3Uploader = s3Uploader;
-        this.bucketName = bucketName;
+        this.s3Downloader = s3Downloader;
+        this.diskCache = diskCache;
         this.fileRepository = fileRepository;
+        this.fileMetadataCache = fileMetadataCache;
+        this.objectLocator = objectLocator;
+        this.fileContentReader = fileContentReader;
+        this.storageProperties = storageProperties;
     }
 
     public Mono<List<Bucket>> getBuckets() {
@@ -53,7 +82,8 @@ public class FileService {
     }
 
     /**
-     * Uploads a file to S3 using a non-blocking, streaming approach.
+     * Uploads a file to S3 using a non-blocking, streaming approach. Files up to {@code s3.inline-threshold} are
+     * kept in their database row instead.
      *
      * @param filePart A FilePart from a WebFlux request, representing the file to upload.
      * @return A Mono that completes with the PutObjectResponse when the upload is finished.
@@ -62,6 +92,8 @@ public class FileService {
         String fileName = filePart.filename();
         // Get the content type, defaulting to a generic stream if not present.
         String contentType = Objects.toString(filePart.headers().getContentType(), MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        // The declared size of the part, if the client sent one (-1 otherwise). It lets the uploader pick the part size.
+        long contentLength = filePart.headers().getContentLength();
 
         // Convert the file's content from a Flux<DataBuffer> to a Flux<ByteBuffer>.
         // This is the required type for the AWS SDK v2's async request bodies.
@@ -73,55 +105,152 @@ public class FileService {
         initialMetadata.setFileName(fileName);
         initialMetadata.setFileType(contentType);
         initialMetadata.setSize(0L);
+        objectLocator.assign(initialMetadata);
 
         return fileRepository.save(initialMetadata)
-                .flatMap(savedMetadata -> {
-                    String s3Key = savedMetadata.getId() + "-" + savedMetadata.getFileName();
-
-                    // Perform the upload. After it's done, combine its result (uploadResult)
-                    // with the data we already have (savedMetadata) into a Tuple.
-                    // We could also use a custom class instead of Tuples, but for simplicity,
-                    // we use Tuples here.
-                    return s3Uploader.uploadFile(s3Key, fileContent, contentType)
-                            .map(uploadResult -> Tuples.of(savedMetadata, uploadResult));
+                .flatMap(savedMetadata -> store(savedMetadata, fileContent, contentType, contentLength)
+                        // The placeholder row would be left behind as an empty file
+                        .onErrorResume(ex -> fileRepository.deleteById(savedMetadata.getId()).then(Mono.error(ex))))
+                // A declared length the uploader can't handle, as for resumable uploads
+                .onErrorMap(IllegalArgumentException.class, ex -> new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage()))
+                // Perform the final save (this is an update operation)
+                .flatMap(fileRepository::save);
+    }
+
+    /**
+     * Keeps the content in the row if it ends within the inline threshold, uploads it to S3 otherwise. Up to the
+     * threshold is buffered to find out, unless the declared length already tells.
+     *
+     * @return the metadata with the size and checksum of the content, not saved yet.
+     */
+    private Mono<File> store(File metadata, Flux<ByteBuffer> fileContent, String contentType, long contentLength) {
+        long inlineThreshold = storageProperties.getInlineThreshold().toBytes();
+        if (inlineThreshold <= 0 || contentLength > inlineThreshold) {
+            return upload(metadata, fileContent, contentType, contentLength);
+        }
+
+        return Flux.defer(() -> {
+                    AtomicLong buffered = new AtomicLong();
+                    // The first buffer is either the whole content or ends with the chunk that crossed the threshold
+                    return fileContent
+                            .bufferUntil(chunk -> buffered.addAndGet(chunk.remaining()) > inlineThreshold)
+                            .<File>switchOnFirst((first, buffers) -> {
+                                if (first.hasError()) {
+                                    return Flux.error(first.getThrowable());
+                                }
+                                if (buffered.get() > inlineThreshold) {
+                                    return upload(metadata, buffers.concatMapIterable(Function.identity()), contentType, contentLength).flux();
+                                }
+                                byte[] content = InlineContent.join(first.hasValue() ? first.get() : List.of());
+                                metadata.setContent(content);
+                                metadata.setSize(content.length);
+                                metadata.setCrc32(InlineContent.crc32(content));
+                                return Flux.just(metadata);
+                            });
                 })
-                .flatMap(tuple -> {
+                .single();
+    }
+
+    private Mono<File> upload(File savedMetadata, Flux<ByteBuffer> fileContent, String contentType, long contentLength) {
+        ObjectLocation location = objectLocator.locate(savedMetadata);
+
+        // Perform the upload. After it's done, combine its result (uploadResult)
+        // with the data we already have (savedMetadata) into a Tuple.
+        // We could also use a custom class instead of Tuples, but for simplicity,
+        // we use Tuples here.
+        return s3Uploader.uploadFile(location, fileContent, contentType, contentLength)
+                .map(uploadResult -> Tuples.of(savedMetadata, uploadResult))
+                .map(tuple -> {
                     // Unpack the tuple containing both pieces of information
                     File metadataToUpdate = tuple.getT1();
                     var uploadResult = tuple.getT2();
 
-                    // Update the metadata object with the final size
+                    // Update the metadata object with the final size and checksum
                     metadataToUpdate.setSize(uploadResult.size());
-
-                    // Perform the final save (this is an update operation)
-                    return fileRepository.save(metadataToUpdate);
+                    metadataToUpdate.setCrc32(uploadResult.crc32());
+                    return metadataToUpdate;
                 });
     }
 
 
     /**
-     * Downloads a file by its ID. It fetches metadata from the database and then streams
-     * the corresponding file from S3.
+     * Downloads a file by its ID. It fetches metadata from the cache (or the database) and then streams
+     * the corresponding file from the row itself (for inline files), its pack, the local disk cache or S3. Nothing
+     * is read until the content (or a range of it) is subscribed to. Whole-file downloads from S3 fill the cache.
      *
      * @param id The primary key of the file in the database.
      * @return A Mono containing a DownloadResult with the file's stream and metadata,
      * or an empty Mono if the ID is not found.
      */
     public Mono<DownloadResult> downloadFile(Long id) {
-        return fileRepository.findById(id)
-                .flatMap(metadata -> {
-                    String s3Key = metadata.getId() + "-" + metadata.getFileName();
-                    GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                            .bucket(bucketName)
-                            .key(s3Key)
-                            .build();
-
-                    // Get the file stream from S3.
-                    Flux<ByteBuffer> fileStream = Mono.fromFuture(s3AsyncClient.getObject(getObjectRequest, AsyncResponseTransformer.toPublisher()))
-                            .flatMapMany(Flux::from);
-
-                    return Mono.just(new DownloadResult(metadata.getFileName(), metadata.getFileType(), fileStream));
+        return fileMetadataCache.findById(id)
+                .map(metadata -> {
+                    // The content of a file never changes after the upload, the last update marks its end.
+                    Instant lastModified = metadata.getUpdatedAt();
+                    String eTag = "\"" + metadata.getId() + "-" + (lastModified == null ? 0 : lastModified.toEpochMilli()) + "\"";
+
+                    if (metadata.getContent() != null || metadata.getPackId() != null) {
+                        // Small files, read from the row or with a ranged GET of their pack
+                        return new DownloadResult(
+                                metadata.getFileName(),
+                                metadata.getFileType(),
+                                metadata.getSize(),
+                                eTag,
+                                lastModified,
+                                fileContentReader.read(metadata, null),
+                                range -> fileContentReader.read(metadata, range));
+                    }
+
+                    ObjectLocation location = objectLocator.locate(metadata);
+
+                    Optional<DiskCache.CachedFile> cachedFile = diskCache.lookup(location.key());
+                    if (cachedFile.isPresent()) {
+                        Path file = cachedFile.get().path();
+                        return new DownloadResult(
+                                metadata.getFileName(),
+                                metadata.getFileType(),
+                                metadata.getSize(),
+                                eTag,
+                                lastModified,
+                                diskCache.read(file, null),
+                                range -> diskCache.read(file, range),
+                                file,
+                                cachedFile.get()::release);
+                    }
+
+                    return new DownloadResult(
+                            metadata.getFileName(),
+                            metadata.getFileType(),
+                            metadata.getSize(),
+                            eTag,
+                            lastModified,
+                            diskCache.fill(location.key(), metadata.getSize(), s3Downloader.download(location, null, metadata.getSize())),
+                            range -> s3Downloader.download(location, range, metadata.getSize()));
                 });
         // If findById returns empty, the whole chain will result in an empty Mono.
     }
-}
\ No newline at end of file
+
+    /**
+     * Deletes a file and its object. The content of a packed file stays in its pack until the pack is compacted.
+     *
+     * @return true once the file is gone, or an empty Mono if the ID does not exist.
+     */
+    public Mono<Boolean> deleteFile(Long id) {
+        return fileRepository.findById(id)
+                .flatMap(metadata -> deleteObject(metadata)
+                        .then(fileRepository.deleteById(id))
+                        // Deletes don't go through the save callback
+                        .doOnSuccess(done -> fileMetadataCache.invalidate(id))
+                        .thenReturn(true));
+    }
+
+    // The object of a packed file may still be there, until its pack has outlived the grace period
+    private Mono<Void> deleteObject(File metadata) {
+        if (metadata.getContent() != null) {
+            return Mono.empty();
+        }
+        ObjectLocation location = objectLocator.locate(metadata);
+        return Mono.fromFuture(() -> s3AsyncClient.deleteObject(b -> b.bucket(location.bucket()).key(location.key())))
+                .then();
+    }
+}
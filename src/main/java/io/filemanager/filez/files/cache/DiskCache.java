@@ -0,0 +1,400 @@
+package io.filemanager.filez.files.cache;
+
+import io.filemanager.filez.shared.config.DiskCacheProperties;
+import io.filemanager.filez.shared.dto.ByteRange;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * A size-bounded LRU cache of S3 objects on local disk.
+ * <p>
+ * Files are written while the first client streams them from S3: every buffer is also written to a temp file,
+ * which is moved into place once the stream has completed with the expected number of bytes. The client never
+ * waits for the disk. If the disk falls behind by more than {@link #MAX_PENDING_BYTES}, or the download fails or
+ * is cancelled, the temp file is dropped and the next download tries again.
+ * <p>
+ * A hit pins its file until the download releases it: eviction takes a pinned file out of the index right away,
+ * but only deletes it once the last download reading it is done. Until then it is on disk without being counted.
+ * <p>
+ * Cached files are named after the SHA-256 of their S3 key, so the index can be rebuilt from the directory after
+ * a restart. Hits, misses and evictions are published as {@code cache.gets} and {@code cache.evictions}
+ * (tag {@code cache=disk}).
+ */
+@Slf4j
+@Component
+public class DiskCache {
+
+    static final long MAX_PENDING_BYTES = 16 * 1024 * 1024;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxSize;
+    private final long maxObjectSize;
+
+    // File name -> file size, in access order. Guarded by `this`.
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentSize;
+    // Entries that are being written by a download right now
+    private final Set<String> filling = ConcurrentHashMap.newKeySet();
+    // File name -> downloads that may still open the file, and evicted files waiting for them. Guarded by `this`.
+    private final Map<String, Integer> pins = new HashMap<>();
+    private final Set<String> evictedWhilePinned = new HashSet<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public DiskCache(DiskCacheProperties properties, MeterRegistry meterRegistry) throws IOException {
+        this.enabled = properties.isEnabled();
+        this.directory = properties.getDirectory();
+        this.maxSize = properties.getMaxSize().toBytes();
+        this.maxObjectSize = Math.min(properties.getMaxObjectSize().toBytes(), maxSize);
+
+        this.hits = Counter.builder("cache.gets").tag("cache", "disk").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("cache.gets").tag("cache", "disk").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("cache.evictions").tag("cache", "disk").register(meterRegistry);
+        Gauge.builder("cache.size", this, DiskCache::entryCount).tag("cache", "disk").register(meterRegistry);
+        Gauge.builder("cache.disk.used", this, DiskCache::usedBytes).tag("cache", "disk").baseUnit("bytes").register(meterRegistry);
+
+        if (enabled) {
+            Files.createDirectories(directory);
+            loadEntries();
+        }
+    }
+
+    /**
+     * @return the cached file for the S3 key, if there is one. It stays on disk until it is released.
+     */
+    public Optional<CachedFile> lookup(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String name = fileName(key);
+        synchronized (this) {
+            if (entries.get(name) != null) {
+                hits.increment();
+                pins.merge(name, 1, Integer::sum);
+                return Optional.of(new CachedFile(name, directory.resolve(name)));
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Reads a cached file, or a range of it.
+     *
+     * @param range the bytes to read, or null for the whole file.
+     */
+    public Flux<ByteBuffer> read(Path file, ByteRange range) {
+        Flux<DataBuffer> buffers = DataBufferUtils.readAsynchronousFileChannel(
+                () -> AsynchronousFileChannel.open(file, StandardOpenOption.READ),
+                range == null ? 0 : range.start(),
+                DefaultDataBufferFactory.sharedInstance,
+                READ_BUFFER_SIZE);
+        if (range != null) {
+            buffers = DataBufferUtils.takeUntilByteCount(buffers, range.length());
+        }
+        return buffers.flatMapSequential(dataBuffer -> Flux.fromIterable(dataBuffer::readableByteBuffers));
+    }
+
+    /**
+     * Passes the content of an S3 object through, writing it to the cache on the way.
+     *
+     * @param expectedSize the size of the object. The file is only cached if the stream delivers exactly as many bytes.
+     */
+    public Flux<ByteBuffer> fill(String key, long expectedSize, Flux<ByteBuffer> content) {
+        if (!enabled || expectedSize <= 0 || expectedSize > maxObjectSize) {
+            return content;
+        }
+        String name = fileName(key);
+
+        return Flux.defer(() -> {
+            if (!filling.add(name)) {
+                // Another download is already writing this file
+                return content;
+            }
+            CacheFill cacheFill;
+            try {
+                cacheFill = new CacheFill(name, expectedSize);
+            } catch (IOException ex) {
+                filling.remove(name);
+                log.warn("Could not create a cache file for {}", key, ex);
+                return content;
+            }
+            return content
+                    .doOnNext(cacheFill::write)
+                    .doOnComplete(cacheFill::sourceCompleted)
+                    .doOnError(ex -> cacheFill.abandon())
+                    .doOnCancel(cacheFill::abandon);
+        });
+    }
+
+    synchronized int entryCount() {
+        return entries.size();
+    }
+
+    synchronized long usedBytes() {
+        return currentSize;
+    }
+
+    private synchronized void register(String name, long size) {
+        Long previous = entries.put(name, size);
+        currentSize += size - (previous == null ? 0 : previous);
+        // Cached again before the downloads of the evicted copy were done, the file stays
+        evictedWhilePinned.remove(name);
+
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (currentSize > maxSize && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (entry.getKey().equals(name)) {
+                continue;
+            }
+            eldest.remove();
+            currentSize -= entry.getValue();
+            evictions.increment();
+            if (pins.containsKey(entry.getKey())) {
+                evictedWhilePinned.add(entry.getKey());
+            } else {
+                deleteQuietly(directory.resolve(entry.getKey()));
+            }
+        }
+    }
+
+    private synchronized void unpin(String name) {
+        pins.computeIfPresent(name, (pinned, count) -> count == 1 ? null : count - 1);
+        if (!pins.containsKey(name) && evictedWhilePinned.remove(name)) {
+            deleteQuietly(directory.resolve(name));
+        }
+    }
+
+    /**
+     * A file found in the cache. It isn't deleted before {@link #release()}, even if it is evicted meanwhile.
+     */
+    public final class CachedFile {
+        private final String name;
+        private final Path path;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private CachedFile(String name, Path path) {
+            this.name = name;
+            this.path = path;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        /**
+         * Called once nothing opens the file any more. Only the first call counts.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                unpin(name);
+            }
+        }
+    }
+
+    // Rebuilds the index after a restart, least recently modified first. Leftover temp files are removed.
+    private void loadEntries() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(Files::isRegularFile).toList();
+        }
+        files.stream()
+                .filter(file -> file.getFileName().toString().endsWith(TEMP_SUFFIX))
+                .forEach(DiskCache::deleteQuietly);
+        files.stream()
+                .filter(file -> !file.getFileName().toString().endsWith(TEMP_SUFFIX))
+                .sorted(Comparator.comparing(DiskCache::lastModified))
+                .forEach(file -> register(file.getFileName().toString(), size(file)));
+        log.info("Disk cache at {} holds {} files ({} bytes)", directory, entryCount(), usedBytes());
+    }
+
+    static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.warn("Could not delete cache file {}", file, ex);
+        }
+    }
+
+    /**
+     * Writes one download to a temp file. Writes are issued without waiting for the previous one, every buffer
+     * goes to its own position in the file.
+     */
+    private final class CacheFill {
+        private final String name;
+        private final long expectedSize;
+        private final Path tempFile;
+        private final AsynchronousFileChannel channel;
+
+        // Guarded by `this`
+        private long position;
+        private long pendingBytes;
+        private boolean sourceCompleted;
+        private boolean done;
+
+        CacheFill(String name, long expectedSize) throws IOException {
+            this.name = name;
+            this.expectedSize = expectedSize;
+            this.tempFile = directory.resolve(name + "." + UUID.randomUUID() + TEMP_SUFFIX);
+            this.channel = AsynchronousFileChannel.open(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+
+        synchronized void write(ByteBuffer buffer) {
+            if (done) {
+                return;
+            }
+            int length = buffer.remaining();
+            if (pendingBytes + length > MAX_PENDING_BYTES || position + length > expectedSize) {
+                log.debug("Not caching {}: the disk can't keep up or the size doesn't match", name);
+                abandon();
+                return;
+            }
+            pendingBytes += length;
+            // The buffer itself goes on to the client, the file write gets its own view of the bytes
+            writeAt(buffer.duplicate(), position, length);
+            position += length;
+        }
+
+        private void writeAt(ByteBuffer source, long filePosition, int length) {
+            channel.write(source, filePosition, source, new CompletionHandler<>() {
+                @Override
+                public void completed(Integer written, ByteBuffer remaining) {
+                    if (remaining.hasRemaining()) {
+                        writeAt(remaining, filePosition + written, length);
+                    } else {
+                        writeCompleted(length);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable ex, ByteBuffer remaining) {
+                    writeFailed(ex);
+                }
+            });
+        }
+
+        synchronized void sourceCompleted() {
+            sourceCompleted = true;
+            if (pendingBytes == 0) {
+                finish();
+            }
+        }
+
+        synchronized void abandon() {
+            if (done) {
+                return;
+            }
+            done = true;
+            close();
+            deleteQuietly(tempFile);
+            filling.remove(name);
+        }
+
+        private synchronized void writeCompleted(int length) {
+            pendingBytes -= length;
+            if (sourceCompleted && pendingBytes == 0) {
+                finish();
+            }
+        }
+
+        private synchronized void writeFailed(Throwable ex) {
+            if (!done) {
+                log.warn("Could not write cache file for {}", name, ex);
+                abandon();
+            }
+        }
+
+        private void finish() {
+            if (done) {
+                return;
+            }
+            if (position != expectedSize) {
+                abandon();
+                return;
+            }
+            done = true;
+            close();
+            try {
+                Files.move(tempFile, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                register(name, expectedSize);
+            } catch (IOException ex) {
+                log.warn("Could not move cache file {} into place", tempFile, ex);
+                deleteQuietly(tempFile);
+            } finally {
+                filling.remove(name);
+            }
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                log.debug("Could not close {}", tempFile, ex);
+            }
+        }
+    }
+}
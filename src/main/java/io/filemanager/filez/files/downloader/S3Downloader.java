@@ -0,0 +1,83 @@
+package io.filemanager.filez.files.downloader;
+
+import io.filemanager.filez.files.storage.ObjectLocation;
+import io.filemanager.filez.shared.config.DownloadProperties;
+import io.filemanager.filez.shared.dto.ByteRange;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streams objects (or ranges of them) from S3.
+ * <p>
+ * A single GET stream is limited by one connection. For large downloads, the parallel mode splits the
+ * requested bytes into ranges, fetches up to {@code concurrency} of them at the same time and emits them in
+ * order. Every range is buffered in full, so a download holds at most {@code concurrency x range size} bytes.
+ */
+@Component
+public class S3Downloader {
+
+    private final S3AsyncClient s3AsyncClient;
+    private final DownloadProperties downloadProperties;
+
+    public S3Downloader(S3AsyncClient s3AsyncClient, DownloadProperties downloadProperties) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.downloadProperties = downloadProperties;
+    }
+
+    /**
+     * @param range      the bytes to download, or null for the whole object.
+     * @param objectSize the size of the object, or -1 if it is not known (which rules out the parallel mode).
+     */
+    public Flux<ByteBuffer> download(ObjectLocation location, ByteRange range, long objectSize) {
+        ByteRange requested = range == null && objectSize > 0 ? new ByteRange(0, objectSize - 1) : range;
+
+        if (requested != null && downloadProperties.isParallel()
+                && requested.length() >= downloadProperties.getParallelThreshold().toBytes()) {
+            return downloadInParallel(location, requested);
+        }
+        return getObject(location, range);
+    }
+
+    private Flux<ByteBuffer> getObject(ObjectLocation location, ByteRange range) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(location.bucket())
+                .key(location.key())
+                .range(range == null ? null : range.toRangeHeader())
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.getObject(getObjectRequest, AsyncResponseTransformer.toPublisher()))
+                .flatMapMany(Flux::from);
+    }
+
+    private Flux<ByteBuffer> downloadInParallel(ObjectLocation location, ByteRange range) {
+        long rangeSize = downloadProperties.getRangeSize().toBytes();
+        long rangeCount = (range.length() + rangeSize - 1) / rangeSize;
+
+        // flatMapSequential only subscribes to the next range once the head range has been emitted,
+        // so no more than `concurrency` ranges are in memory at any time.
+        return Flux.range(0, (int) rangeCount)
+                .map(index -> {
+                    long start = range.start() + index * rangeSize;
+                    return new ByteRange(start, Math.min(range.end(), start + rangeSize - 1));
+                })
+                .flatMapSequential(subRange -> getObjectBytes(location, subRange), downloadProperties.getConcurrency(), 1);
+    }
+
+    private Mono<ByteBuffer> getObjectBytes(ObjectLocation location, ByteRange range) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(location.bucket())
+                .key(location.key())
+                .range(range.toRangeHeader())
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.getObject(getObjectRequest, AsyncResponseTransformer.toBytes()))
+                .map(ResponseBytes::asByteBuffer);
+    }
+}
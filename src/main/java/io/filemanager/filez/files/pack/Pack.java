@@ -0,0 +1,56 @@
+package io.filemanager.filez.files.pack;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.Instant;
+
+/**
+ * One S3 object holding the content of many small files back to back. Each file records its pack and the offset
+ * of its content in it, see {@link io.filemanager.filez.files.File#getPackId()}. The key follows from the ID, see
+ * {@link io.filemanager.filez.files.storage.ObjectLocator#locatePack}.
+ */
+@Data
+@NoArgsConstructor
+@Table("file_pack")
+public class Pack {
+
+    @Id
+    private Long id;
+
+    /**
+     * The bucket of the pack, which is the bucket of all its files.
+     */
+    @Column("bucket")
+    private String bucket;
+
+    /**
+     * The size of the pack object, including the content of files deleted since.
+     */
+    private long size;
+
+    /**
+     * Whether the objects the files had before they were packed have been deleted.
+     */
+    @Column("originals_deleted")
+    private boolean originalsDeleted;
+
+    /**
+     * When the files were moved out of the pack by the compaction. Null while the pack is in use.
+     */
+    @Column("retired_at")
+    private Instant retiredAt;
+
+    @CreatedDate
+    @Column("created_at")
+    private Instant createdAt;
+
+    @LastModifiedDate
+    @Column("updated_at")
+    private Instant updatedAt;
+}
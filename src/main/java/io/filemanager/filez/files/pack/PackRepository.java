@@ -0,0 +1,31 @@
+package io.filemanager.filez.files.pack;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+
+@Repository
+public interface PackRepository extends ReactiveCrudRepository<Pack, Long> {
+
+    /**
+     * Packs in use whose files take less than {@code liveRatio} of their size, the emptiest first. Packs created
+     * after {@code createdBefore} are left out: their files may still be moving in, so they only look empty.
+     */
+    @Query("""
+            SELECT p.* FROM file_pack p
+            LEFT JOIN file_metadata f ON f.pack_id = p.id
+            WHERE p.retired_at IS NULL AND p.created_at < :createdBefore
+            GROUP BY p.id
+            HAVING COALESCE(SUM(f.size), 0) < p.size * :liveRatio
+            ORDER BY COALESCE(SUM(f.size), 0)::float / GREATEST(p.size, 1)
+            LIMIT :limit
+            """)
+    Flux<Pack> findSparse(double liveRatio, Instant createdBefore, int limit);
+
+    Flux<Pack> findAllByOriginalsDeletedFalseAndCreatedAtBefore(Instant createdBefore);
+
+    Flux<Pack> findAllByRetiredAtBefore(Instant retiredBefore);
+}
@@ -0,0 +1,297 @@
+package io.filemanager.filez.files.pack;
+
+import io.filemanager.filez.files.File;
+import io.filemanager.filez.files.FileMetadataCache;
+import io.filemanager.filez.files.FileRepository;
+import io.filemanager.filez.files.storage.FileContentReader;
+import io.filemanager.filez.files.storage.ObjectLocation;
+import io.filemanager.filez.files.storage.ObjectLocator;
+import io.filemanager.filez.files.uploader.S3Uploader;
+import io.filemanager.filez.shared.config.PackProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Moves small files out of objects of their own into packs, so S3 holds (and archives read) a few large objects
+ * instead of many small ones. S3 objects can't be appended to, so files are uploaded as before and packed in the
+ * background, every {@code pack.interval}:
+ * <ol>
+ *     <li>Files up to {@code pack.max-file-size} are read, checked against their CRC-32 and written one after the
+ *     other into a new pack of up to {@code pack.target-size}, one per bucket. Each file then records its pack and
+ *     offset.</li>
+ *     <li>Packs older than {@code pack.grace-period} whose files take less than {@code pack.compaction-threshold}
+ *     of them, the rest belonging to deleted files, are compacted: their files are written into a new pack and the
+ *     old one is retired.</li>
+ *     <li>Objects files were moved out of, and retired packs, are deleted after {@code pack.grace-period}, once no
+ *     instance reads them through stale cached metadata any more.</li>
+ * </ol>
+ * A file is only moved if it is still where it was read from, so a file deleted meanwhile stays deleted and its
+ * bytes in the pack are left for the compaction.
+ * <p>
+ * Rounds don't coordinate between instances, so only one instance may run the packer, see {@code pack.enabled}.
+ */
+@Slf4j
+@Component
+public class Packer {
+
+    // Objects of their own read ahead while a pack is written, each is buffered in full
+    private static final int READ_CONCURRENCY = 8;
+    // The most keys S3 deletes with one request
+    private static final int DELETE_BATCH_SIZE = 1000;
+    private static final int COMPACTIONS_PER_ROUND = 10;
+    private static final String PACK_CONTENT_TYPE = "application/octet-stream";
+
+    private final FileRepository fileRepository;
+    private final PackRepository packRepository;
+    private final FileMetadataCache fileMetadataCache;
+    private final FileContentReader fileContentReader;
+    private final ObjectLocator objectLocator;
+    private final S3Uploader s3Uploader;
+    private final S3AsyncClient s3AsyncClient;
+    private final PackProperties packProperties;
+
+    private Disposable rounds;
+
+    public Packer(FileRepository fileRepository,
+                  PackRepository packRepository,
+                  FileMetadataCache fileMetadataCache,
+                  FileContentReader fileContentReader,
+                  ObjectLocator objectLocator,
+                  S3Uploader s3Uploader,
+                  S3AsyncClient s3AsyncClient,
+                  PackProperties packProperties) {
+        this.fileRepository = fileRepository;
+        this.packRepository = packRepository;
+        this.fileMetadataCache = fileMetadataCache;
+        this.fileContentReader = fileContentReader;
+        this.objectLocator = objectLocator;
+        this.s3Uploader = s3Uploader;
+        this.s3AsyncClient = s3AsyncClient;
+        this.packProperties = packProperties;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!packProperties.isEnabled()) {
+            return;
+        }
+        // The next round starts an interval after the last one has ended
+        rounds = Mono.delay(packProperties.getInterval())
+                .then(Mono.defer(this::round))
+                .repeat()
+                .subscribe();
+        log.info("Packing files up to {} every {}", packProperties.getMaxFileSize(), packProperties.getInterval());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (rounds != null) {
+            rounds.dispose();
+        }
+    }
+
+    private Mono<Void> round() {
+        return quietly("packing", packSmallFiles())
+                .then(quietly("compaction", compact()))
+                .then(quietly("deletion", Mono.defer(this::deleteUnused)));
+    }
+
+    // A failed step is tried again in the next round, the others still run
+    private static Mono<Void> quietly(String step, Mono<Integer> work) {
+        return work
+                .doOnNext(count -> {
+                    if (count > 0) {
+                        log.info("Pack {}: {} done", step, count);
+                    }
+                })
+                .onErrorResume(ex -> {
+                    log.warn("Pack {} failed, retrying in the next round", step, ex);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Writes the small files in objects of their own into new packs, at most one per bucket.
+     *
+     * @return the number of files moved into a pack.
+     */
+    Mono<Integer> packSmallFiles() {
+        return fileRepository.findPackable(packProperties.getMaxFileSize().toBytes(), packProperties.getMaxFiles())
+                .collect(Collectors.groupingBy(file -> objectLocator.locate(file).bucket(), LinkedHashMap::new, Collectors.toList()))
+                .flatMapIterable(Map::entrySet)
+                .filter(bucketFiles -> bucketFiles.getValue().size() >= packProperties.getMinFiles())
+                .concatMap(bucketFiles -> writePack(bucketFiles.getKey(), fill(bucketFiles.getValue())))
+                .reduce(0, Integer::sum);
+    }
+
+    // The first files up to the target size, at least one
+    private List<File> fill(List<File> files) {
+        long targetSize = packProperties.getTargetSize().toBytes();
+        List<File> packFiles = new ArrayList<>();
+        long size = 0;
+        for (File file : files) {
+            if (!packFiles.isEmpty() && size + file.getSize() > targetSize) {
+                break;
+            }
+            packFiles.add(file);
+            size += file.getSize();
+        }
+        return packFiles;
+    }
+
+    /**
+     * Rewrites the packs that are mostly deleted. The retired packs are deleted after the grace period.
+     *
+     * @return the number of packs retired.
+     */
+    Mono<Integer> compact() {
+        Instant createdBefore = Instant.now().minus(packProperties.getGracePeriod());
+        return packRepository.findSparse(packProperties.getCompactionThreshold(), createdBefore, COMPACTIONS_PER_ROUND)
+                .concatMap(pack -> fileRepository.findAllByPackIdOrderByPackOffset(pack.getId())
+                        .collectList()
+                        .flatMap(files -> files.isEmpty() ? Mono.just(0) : writePack(pack.getBucket(), files))
+                        .then(Mono.defer(() -> {
+                            pack.setRetiredAt(Instant.now());
+                            return packRepository.save(pack);
+                        })))
+                .count()
+                .map(Long::intValue);
+    }
+
+    /**
+     * Deletes the objects files were moved out of, and the retired packs, once the grace period is over.
+     *
+     * @return the number of packs whose objects were deleted.
+     */
+    Mono<Integer> deleteUnused() {
+        Instant before = Instant.now().minus(packProperties.getGracePeriod());
+
+        Flux<Pack> originals = packRepository.findAllByOriginalsDeletedFalseAndCreatedAtBefore(before)
+                .concatMap(pack -> fileRepository.findAllByPackIdOrderByPackOffset(pack.getId())
+                        // Deleting a missing key succeeds, so objects already deleted with an earlier pack don't matter
+                        .map(file -> objectLocator.locate(file).key())
+                        .buffer(DELETE_BATCH_SIZE)
+                        .concatMap(keys -> deleteObjects(pack.getBucket(), keys))
+                        .then(Mono.defer(() -> {
+                            pack.setOriginalsDeleted(true);
+                            return packRepository.save(pack);
+                        })));
+
+        // The row goes first: if a file still points to the pack, that fails and the object is kept. One such pack
+        // must not hold up the others, it is tried again in the next round.
+        Flux<Pack> retired = packRepository.findAllByRetiredAtBefore(before)
+                .concatMap(pack -> packRepository.delete(pack)
+                        .then(deleteObjects(pack.getBucket(), List.of(objectLocator.locatePack(pack.getBucket(), pack.getId()).key())))
+                        .thenReturn(pack)
+                        .onErrorResume(ex -> {
+                            log.warn("Could not delete retired pack {}, retrying in the next round", pack.getId(), ex);
+                            return Mono.empty();
+                        }));
+
+        return originals.concatWith(retired)
+                .count()
+                .map(Long::intValue);
+    }
+
+    /**
+     * Writes the files one after the other into a new pack in the bucket, then moves them there.
+     *
+     * @return the number of files moved, files deleted or moved meanwhile are not.
+     */
+    private Mono<Integer> writePack(String bucket, List<File> files) {
+        long[] offsets = new long[files.size()];
+        long size = 0;
+        for (int i = 0; i < files.size(); i++) {
+            offsets[i] = size;
+            size += files.get(i).getSize();
+        }
+        Pack pack = new Pack();
+        pack.setBucket(bucket);
+        pack.setSize(size);
+
+        return packRepository.save(pack)
+                .flatMap(saved -> upload(saved, files)
+                        // Nothing points to the pack yet
+                        .onErrorResume(ex -> packRepository.delete(saved).then(Mono.<Void>error(ex)))
+                        .thenMany(Flux.range(0, files.size()))
+                        .concatMap(i -> move(files.get(i), saved.getId(), offsets[i]))
+                        .reduce(0, Integer::sum)
+                        .doOnNext(moved -> log.info("Wrote pack {} of {} bytes to {}, {} of {} files moved into it",
+                                saved.getId(), saved.getSize(), bucket, moved, files.size())));
+    }
+
+    private Mono<Void> upload(Pack pack, List<File> files) {
+        ObjectLocation location = objectLocator.locatePack(pack.getBucket(), pack.getId());
+        Flux<ByteBuffer> content = Flux.fromIterable(files)
+                .flatMapSequential(this::readVerified, READ_CONCURRENCY, 1)
+                .concatMapIterable(Function.identity());
+
+        return s3Uploader.uploadFile(location, content, PACK_CONTENT_TYPE, pack.getSize())
+                .flatMap(uploadResult -> uploadResult.size() == pack.getSize()
+                        ? Mono.<Void>empty()
+                        : Mono.error(new IllegalStateException("Pack " + pack.getId() + " got " + uploadResult.size()
+                                + " bytes instead of " + pack.getSize())));
+    }
+
+    // A pack must never take over a file whose content doesn't match what the file recorded
+    private Mono<List<ByteBuffer>> readVerified(File file) {
+        return fileContentReader.read(file, null)
+                .collectList()
+                .<List<ByteBuffer>>handle((chunks, sink) -> {
+                    CRC32 crc = new CRC32();
+                    long size = 0;
+                    for (ByteBuffer chunk : chunks) {
+                        crc.update(chunk.duplicate());
+                        size += chunk.remaining();
+                    }
+                    if (size != file.getSize() || crc.getValue() != file.getCrc32()) {
+                        sink.error(new IllegalStateException("Content of file " + file.getId() + " does not match its size or CRC-32"));
+                    } else {
+                        sink.next(chunks);
+                    }
+                });
+    }
+
+    private Mono<Integer> move(File file, long packId, long offset) {
+        return fileRepository.moveToPack(file.getId(), file.getPackId(), packId, offset)
+                // Updates don't go through the save callback
+                .doOnNext(updated -> fileMetadataCache.invalidate(file.getId()));
+    }
+
+    private Mono<Void> deleteObjects(String bucket, List<String> keys) {
+        Delete delete = Delete.builder()
+                .objects(keys.stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList())
+                .quiet(true)
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.deleteObjects(b -> b.bucket(bucket).delete(delete)))
+                .flatMap(response -> {
+                    if (!response.hasErrors() || response.errors().isEmpty()) {
+                        return Mono.<Void>empty();
+                    }
+                    S3Error error = response.errors().get(0);
+                    return Mono.error(new IllegalStateException("Could not delete " + response.errors().size()
+                            + " objects from " + bucket + ", first " + error.key() + ": " + error.message()));
+                });
+    }
+}
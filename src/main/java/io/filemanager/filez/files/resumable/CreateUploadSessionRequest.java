@@ -0,0 +1,6 @@
+package io.filemanager.filez.files.resumable;
+
+/**
+ * @param size the total size of the file in bytes, it has to be known up front to finish the upload.
+ */
+public record CreateUploadSessionRequest(String fileName, String contentType, long size) {}
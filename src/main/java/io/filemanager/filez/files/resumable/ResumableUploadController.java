@@ -0,0 +1,89 @@
+package io.filemanager.filez.files.resumable;
+
+import io.filemanager.filez.files.File;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+
+/**
+ * REST Controller for resumable uploads:
+ * <ol>
+ *     <li>{@code POST /api/uploads} creates a session for a file of known size,</li>
+ *     <li>{@code PUT /api/uploads/{id}?offset=n} sends a chunk of the file starting at byte n,</li>
+ *     <li>{@code GET /api/uploads/{id}} tells where to continue after a dropped connection,</li>
+ *     <li>{@code POST /api/uploads/{id}/complete} finishes the upload,</li>
+ *     <li>{@code DELETE /api/uploads/{id}} gives up on it.</li>
+ * </ol>
+ */
+@RestController
+@RequestMapping("/api/uploads")
+public class ResumableUploadController {
+
+    private final ResumableUploadService resumableUploadService;
+
+    public ResumableUploadController(ResumableUploadService resumableUploadService) {
+        this.resumableUploadService = resumableUploadService;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<UploadSessionStatus>> createSession(@RequestBody CreateUploadSessionRequest request) {
+        return resumableUploadService.createSession(request)
+                .map(status -> ResponseEntity.status(HttpStatus.CREATED).body(status));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<UploadSessionStatus>> getStatus(@PathVariable Long id) {
+        return resumableUploadService.getStatus(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Receives a chunk of the file. The response tells how far the upload got, which may be less than
+     * the end of the chunk: bytes that don't fill a whole part have to be sent again with the next chunk.
+     * <p>
+     * The request buffers come from the server's pool. Their bytes are copied out and each buffer is released
+     * right away, since a buffer may straddle parts and its trailing bytes may never be sent at all.
+     */
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<UploadSessionStatus>> uploadChunk(@PathVariable Long id,
+                                                                 @RequestParam long offset,
+                                                                 @RequestBody Flux<DataBuffer> content) {
+        Flux<ByteBuffer> chunk = content
+                .map(dataBuffer -> {
+                    try {
+                        byte[] bytes = new byte[dataBuffer.readableByteCount()];
+                        dataBuffer.read(bytes);
+                        return ByteBuffer.wrap(bytes);
+                    } finally {
+                        DataBufferUtils.release(dataBuffer);
+                    }
+                })
+                // Buffers received but not taken any more because the upload failed or was cancelled
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+
+        return resumableUploadService.uploadChunk(id, offset, chunk)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/{id}/complete")
+    public Mono<ResponseEntity<File>> completeSession(@PathVariable Long id) {
+        return resumableUploadService.completeSession(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> abortSession(@PathVariable Long id) {
+        return resumableUploadService.abortSession(id)
+                .map(aborted -> ResponseEntity.noContent().<Void>build())
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
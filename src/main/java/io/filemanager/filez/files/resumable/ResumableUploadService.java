@@ -0,0 +1,269 @@
+package io.filemanager.filez.files.resumable;
+
+import io.filemanager.filez.files.File;
+import io.filemanager.filez.files.FileMetadataCache;
+import io.filemanager.filez.files.FileRepository;
+import io.filemanager.filez.files.storage.ObjectLocation;
+import io.filemanager.filez.files.storage.ObjectLocator;
+import io.filemanager.filez.files.uploader.CompositeRequestBody;
+import io.filemanager.filez.files.uploader.PartSizePolicy;
+import io.filemanager.filez.files.uploader.PartSlicer;
+import io.filemanager.filez.shared.config.UploadProperties;
+import io.filemanager.filez.shared.util.Crc32Combine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Resumable uploads: a client creates a session, sends the file in chunks (each starting at the offset the
+ * server has confirmed so far), can ask for the current offset after a dropped connection, and finally
+ * completes the session.
+ * <p>
+ * Every chunk is cut into parts of the session's part size. Each part is persisted as soon as S3 has accepted it,
+ * so even a chunk that breaks off halfway keeps its completed parts. Bytes at the end of a chunk that don't fill a
+ * whole part are dropped, the client sends them again with the next chunk, starting at the confirmed offset.
+ * <p>
+ * Sessions that haven't been completed within {@code s3.upload.session-ttl} of their creation are aborted by
+ * {@link UploadSessionSweeper}, along with their S3 multipart upload and their file.
+ */
+@Slf4j
+@Service
+public class ResumableUploadService {
+
+    private final S3AsyncClient s3AsyncClient;
+    private final ObjectLocator objectLocator;
+    private final UploadProperties uploadProperties;
+    private final FileRepository fileRepository;
+    private final FileMetadataCache fileMetadataCache;
+    private final UploadSessionRepository sessionRepository;
+    private final UploadSessionPartRepository partRepository;
+
+    public ResumableUploadService(S3AsyncClient s3AsyncClient,
+                                  ObjectLocator objectLocator,
+                                  UploadProperties uploadProperties,
+                                  FileRepository fileRepository,
+                                  FileMetadataCache fileMetadataCache,
+                                  UploadSessionRepository sessionRepository,
+                                  UploadSessionPartRepository partRepository) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.objectLocator = objectLocator;
+        this.uploadProperties = uploadProperties;
+        this.fileRepository = fileRepository;
+        this.fileMetadataCache = fileMetadataCache;
+        this.sessionRepository = sessionRepository;
+        this.partRepository = partRepository;
+    }
+
+    public Mono<UploadSessionStatus> createSession(CreateUploadSessionRequest request) {
+        if (request.fileName() == null || request.fileName().isBlank() || request.size() < 0) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "A file name and a non-negative size are required"));
+        }
+        String contentType = Objects.requireNonNullElse(request.contentType(), MediaType.APPLICATION_OCTET_STREAM_VALUE);
+
+        File initialMetadata = new File();
+        initialMetadata.setFileName(request.fileName());
+        initialMetadata.setFileType(contentType);
+        initialMetadata.setSize(0L);
+        objectLocator.assign(initialMetadata);
+
+        return Mono.fromCallable(() -> PartSizePolicy.forUpload(request.size(), uploadProperties).initialPartSize())
+                .onErrorMap(IllegalArgumentException.class, ex -> new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage()))
+                .flatMap(partSize -> fileRepository.save(initialMetadata)
+                        .flatMap(savedMetadata -> {
+                            ObjectLocation location = objectLocator.locate(savedMetadata);
+                            CreateMultipartUploadRequest createRequest = CreateMultipartUploadRequest.builder()
+                                    .bucket(location.bucket()).key(location.key()).contentType(contentType).build();
+
+                            return Mono.fromFuture(() -> s3AsyncClient.createMultipartUpload(createRequest))
+                                    .flatMap(createResponse -> {
+                                        UploadSession session = new UploadSession();
+                                        session.setFileId(savedMetadata.getId());
+                                        session.setBucket(location.bucket());
+                                        session.setS3Key(location.key());
+                                        session.setUploadId(createResponse.uploadId());
+                                        session.setPartSize(partSize);
+                                        session.setTotalSize(request.size());
+                                        return sessionRepository.save(session);
+                                    });
+                        }))
+                .map(session -> toStatus(session, List.of()));
+    }
+
+    /**
+     * @return the status of the session, or an empty Mono if it does not exist.
+     */
+    public Mono<UploadSessionStatus> getStatus(Long sessionId) {
+        return sessionRepository.findById(sessionId)
+                .flatMap(session -> completedParts(session)
+                        .map(parts -> toStatus(session, parts)));
+    }
+
+    /**
+     * Uploads a chunk of the file, which has to start at the offset confirmed so far.
+     *
+     * @return the status of the session after the chunk, or an empty Mono if the session does not exist.
+     */
+    public Mono<UploadSessionStatus> uploadChunk(Long sessionId, long offset, Flux<ByteBuffer> content) {
+        return sessionRepository.findById(sessionId)
+                .flatMap(session -> completedParts(session)
+                        .flatMap(parts -> {
+                            long confirmedOffset = confirmedOffset(parts);
+                            if (offset != confirmedOffset) {
+                                return Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                                        "Chunk has to start at offset " + confirmedOffset));
+                            }
+                            int firstPartNumber = parts.size() + 1;
+
+                            return PartSlicer.slice(content, session.getPartSize())
+                                    .concatMap(part -> {
+                                        int partNumber = firstPartNumber + part.number() - 1;
+                                        long partEnd = offset + (part.number() - 1) * session.getPartSize() + part.size();
+
+                                        if (partEnd > session.getTotalSize()) {
+                                            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                                                    "Chunk exceeds the declared size of " + session.getTotalSize() + " bytes"));
+                                        }
+                                        boolean emptyFile = session.getTotalSize() == 0 && partNumber == 1;
+                                        boolean wholePart = part.size() == session.getPartSize()
+                                                || (partEnd == session.getTotalSize() && (part.size() > 0 || emptyFile));
+                                        if (!wholePart) {
+                                            // Trailing bytes of the chunk, they will be sent again with the next chunk.
+                                            return Mono.empty();
+                                        }
+                                        return uploadPart(session, partNumber, part);
+                                    })
+                                    .then(getStatus(sessionId));
+                        }));
+    }
+
+    /**
+     * Completes the S3 multipart upload once all bytes have been received.
+     *
+     * @return the metadata of the uploaded file, or an empty Mono if the session does not exist.
+     */
+    public Mono<File> completeSession(Long sessionId) {
+        return sessionRepository.findById(sessionId)
+                .flatMap(session -> completedParts(session)
+                        .flatMap(parts -> {
+                            long confirmedOffset = confirmedOffset(parts);
+                            if (confirmedOffset != session.getTotalSize()) {
+                                return Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                                        "Only " + confirmedOffset + " of " + session.getTotalSize() + " bytes have been uploaded"));
+                            }
+
+                            List<CompletedPart> completedParts = parts.stream()
+                                    .map(part -> CompletedPart.builder().partNumber(part.getPartNumber()).eTag(part.getEtag()).build())
+                                    .toList();
+                            ObjectLocation location = location(session);
+                            CompleteMultipartUploadRequest completeRequest = CompleteMultipartUploadRequest.builder()
+                                    .bucket(location.bucket()).key(location.key()).uploadId(session.getUploadId())
+                                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                                    .build();
+
+                            return Mono.fromFuture(() -> s3AsyncClient.completeMultipartUpload(completeRequest))
+                                    .then(fileRepository.findById(session.getFileId()))
+                                    .flatMap(metadata -> {
+                                        metadata.setSize(confirmedOffset);
+                                        metadata.setCrc32(combinedCrc(parts));
+                                        return fileRepository.save(metadata);
+                                    })
+                                    // Removes the parts as well (ON DELETE CASCADE)
+                                    .flatMap(metadata -> sessionRepository.delete(session).thenReturn(metadata));
+                        }));
+    }
+
+    /**
+     * Aborts the S3 multipart upload and forgets the session and its file.
+     *
+     * @return true once the session is gone, or an empty Mono if it does not exist.
+     */
+    public Mono<Boolean> abortSession(Long sessionId) {
+        return sessionRepository.findById(sessionId)
+                .flatMap(this::abort);
+    }
+
+    /**
+     * Aborts the sessions created before {@code createdBefore}, a session that fails is tried again next time.
+     *
+     * @return the number of sessions aborted.
+     */
+    public Mono<Integer> abortSessionsCreatedBefore(Instant createdBefore) {
+        return sessionRepository.findAllByCreatedAtBefore(createdBefore)
+                .concatMap(session -> abort(session)
+                        .onErrorResume(ex -> {
+                            log.warn("Could not abort expired session {}", session.getId(), ex);
+                            return Mono.empty();
+                        }))
+                .count()
+                .map(Long::intValue);
+    }
+
+    private Mono<Boolean> abort(UploadSession session) {
+        ObjectLocation location = location(session);
+        AbortMultipartUploadRequest abortRequest = AbortMultipartUploadRequest.builder()
+                .bucket(location.bucket()).key(location.key()).uploadId(session.getUploadId()).build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.abortMultipartUpload(abortRequest))
+                // Aborted before, only the rows are left
+                .onErrorResume(NoSuchUploadException.class, ex -> Mono.empty())
+                // The session and its parts go with the file (ON DELETE CASCADE)
+                .then(fileRepository.deleteById(session.getFileId()))
+                // Deletes don't go through the save callback
+                .doOnSuccess(done -> fileMetadataCache.invalidate(session.getFileId()))
+                .thenReturn(true);
+    }
+
+    private Mono<UploadSessionPart> uploadPart(UploadSession session, int partNumber, PartSlicer.Part part) {
+        ObjectLocation location = location(session);
+        UploadPartRequest partRequest = UploadPartRequest.builder()
+                .bucket(location.bucket()).key(location.key()).uploadId(session.getUploadId()).partNumber(partNumber).build();
+
+        CompositeRequestBody requestBody = new CompositeRequestBody(part.chunks());
+        CRC32 crc = new CRC32();
+        part.chunks().forEach(chunk -> crc.update(chunk.duplicate()));
+
+        return Mono.fromFuture(() -> s3AsyncClient.uploadPart(partRequest, requestBody))
+                .doFinally(signal -> requestBody.release())
+                .flatMap(response -> partRepository.save(
+                        new UploadSessionPart(session.getId(), partNumber, response.eTag(), part.size(), crc.getValue())))
+                .doOnNext(savedPart -> log.debug("Session {}: part {} of {} bytes uploaded", session.getId(), partNumber, part.size()));
+    }
+
+    private ObjectLocation location(UploadSession session) {
+        return objectLocator.locate(session.getBucket(), session.getS3Key());
+    }
+
+    private Mono<List<UploadSessionPart>> completedParts(UploadSession session) {
+        return partRepository.findAllBySessionIdOrderByPartNumber(session.getId()).collectList();
+    }
+
+    // Chunks have to start at the confirmed offset and parts are uploaded one after the other,
+    // so the completed parts always form a contiguous prefix of the file.
+    private static long confirmedOffset(List<UploadSessionPart> parts) {
+        return parts.stream().mapToLong(UploadSessionPart::getSize).sum();
+    }
+
+    private static long combinedCrc(List<UploadSessionPart> parts) {
+        long crc = 0;
+        for (UploadSessionPart part : parts) {
+            crc = Crc32Combine.combine(crc, part.getCrc32(), part.getSize());
+        }
+        return crc;
+    }
+
+    private static UploadSessionStatus toStatus(UploadSession session, List<UploadSessionPart> parts) {
+        return new UploadSessionStatus(session.getId(), session.getFileId(), session.getTotalSize(), session.getPartSize(), confirmedOffset(parts));
+    }
+}
@@ -0,0 +1,53 @@
+package io.filemanager.filez.files.resumable;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.Instant;
+
+/**
+ * The persisted state of a resumable upload: which S3 multipart upload it belongs to and how it is cut into parts.
+ * Stored in the database, so any node can continue a session that was started on another one.
+ */
+@Data
+@NoArgsConstructor
+@Table("upload_session")
+public class UploadSession {
+
+    @Id
+    private Long id;
+
+    @Column("file_id")
+    private Long fileId;
+
+    /**
+     * Null for sessions started before it was recorded, which upload to the default bucket.
+     */
+    @Column("bucket")
+    private String bucket;
+
+    @Column("s3_key")
+    private String s3Key;
+
+    @Column("upload_id")
+    private String uploadId;
+
+    @Column("part_size")
+    private long partSize;
+
+    @Column("total_size")
+    private long totalSize;
+
+    @CreatedDate
+    @Column("created_at")
+    private Instant createdAt;
+
+    @LastModifiedDate
+    @Column("updated_at")
+    private Instant updatedAt;
+}
@@ -0,0 +1,44 @@
+package io.filemanager.filez.files.resumable;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * A part of a resumable upload that S3 has accepted.
+ */
+@Data
+@NoArgsConstructor
+@Table("upload_session_part")
+public class UploadSessionPart {
+
+    public UploadSessionPart(Long sessionId, int partNumber, String etag, long size, long crc32) {
+        this.sessionId = sessionId;
+        this.partNumber = partNumber;
+        this.etag = etag;
+        this.size = size;
+        this.crc32 = crc32;
+    }
+
+    @Id
+    private Long id;
+
+    @Column("session_id")
+    private Long sessionId;
+
+    @Column("part_number")
+    private int partNumber;
+
+    @Column("etag")
+    private String etag;
+
+    private long size;
+
+    /**
+     * The CRC-32 of this part alone, the checksums of all parts are combined when the session completes.
+     */
+    @Column("crc32")
+    private long crc32;
+}
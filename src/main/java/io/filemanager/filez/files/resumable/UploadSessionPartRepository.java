@@ -0,0 +1,10 @@
+package io.filemanager.filez.files.resumable;
+
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface UploadSessionPartRepository extends ReactiveCrudRepository<UploadSessionPart, Long> {
+    Flux<UploadSessionPart> findAllBySessionIdOrderByPartNumber(Long sessionId);
+}
@@ -0,0 +1,13 @@
+package io.filemanager.filez.files.resumable;
+
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+
+@Repository
+public interface UploadSessionRepository extends ReactiveCrudRepository<UploadSession, Long> {
+
+    Flux<UploadSession> findAllByCreatedAtBefore(Instant createdBefore);
+}
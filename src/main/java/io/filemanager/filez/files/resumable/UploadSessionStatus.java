@@ -0,0 +1,6 @@
+package io.filemanager.filez.files.resumable;
+
+/**
+ * @param offset the number of bytes S3 has accepted so far, the next chunk has to start here.
+ */
+public record UploadSessionStatus(Long sessionId, Long fileId, long totalSize, long partSize, long offset) {}
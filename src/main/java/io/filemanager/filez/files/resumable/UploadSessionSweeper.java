@@ -0,0 +1,61 @@
+package io.filemanager.filez.files.resumable;
+
+import io.filemanager.filez.shared.config.UploadProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+/**
+ * Aborts resumable upload sessions that were never completed, every {@code s3.upload.session-sweep-interval}.
+ * Otherwise their rows and the parts of their S3 multipart uploads would be kept forever. Every instance sweeps,
+ * aborting a session twice does no harm.
+ */
+@Slf4j
+@Component
+public class UploadSessionSweeper {
+
+    private final ResumableUploadService resumableUploadService;
+    private final UploadProperties uploadProperties;
+
+    private Disposable sweeps;
+
+    public UploadSessionSweeper(ResumableUploadService resumableUploadService, UploadProperties uploadProperties) {
+        this.resumableUploadService = resumableUploadService;
+        this.uploadProperties = uploadProperties;
+    }
+
+    @PostConstruct
+    void start() {
+        // The next sweep starts an interval after the last one has ended
+        sweeps = Mono.delay(uploadProperties.getSessionSweepInterval())
+                .then(Mono.defer(this::sweep))
+                .repeat()
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (sweeps != null) {
+            sweeps.dispose();
+        }
+    }
+
+    private Mono<Void> sweep() {
+        return resumableUploadService.abortSessionsCreatedBefore(Instant.now().minus(uploadProperties.getSessionTtl()))
+                .doOnNext(count -> {
+                    if (count > 0) {
+                        log.info("Aborted {} upload sessions older than {}", count, uploadProperties.getSessionTtl());
+                    }
+                })
+                .onErrorResume(ex -> {
+                    log.warn("Sweeping expired upload sessions failed, retrying in the next sweep", ex);
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
@@ -0,0 +1,51 @@
+package io.filemanager.filez.files.storage;
+
+import io.filemanager.filez.files.File;
+import io.filemanager.filez.files.downloader.S3Downloader;
+import io.filemanager.filez.shared.dto.ByteRange;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the content of a file from wherever it is: its row, its range of a pack or an object of its own.
+ */
+@Component
+public class FileContentReader {
+
+    private final S3Downloader s3Downloader;
+    private final ObjectLocator objectLocator;
+
+    public FileContentReader(S3Downloader s3Downloader, ObjectLocator objectLocator) {
+        this.s3Downloader = s3Downloader;
+        this.objectLocator = objectLocator;
+    }
+
+    /**
+     * @param range the bytes of the file to read, or null for all of them.
+     */
+    public Flux<ByteBuffer> read(File file, ByteRange range) {
+        if (file.getContent() != null) {
+            return InlineContent.read(file.getContent(), range);
+        }
+        if (file.getPackId() != null) {
+            if (file.getSize() == 0) {
+                return Flux.empty();
+            }
+            return s3Downloader.download(objectLocator.locatePack(file), rangeInPack(file, range), -1);
+        }
+        return s3Downloader.download(objectLocator.locate(file), range, file.getSize());
+    }
+
+    /**
+     * @param range the bytes of the file, or null for all of them.
+     * @return the same bytes in the pack of the file.
+     */
+    public static ByteRange rangeInPack(File file, ByteRange range) {
+        long offset = file.getPackOffset();
+        return range == null
+                ? new ByteRange(offset, offset + file.getSize() - 1)
+                : new ByteRange(offset + range.start(), offset + range.end());
+    }
+}
@@ -0,0 +1,42 @@
+package io.filemanager.filez.files.storage;
+
+import io.filemanager.filez.shared.dto.ByteRange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The content of files kept in their database row, see {@link io.filemanager.filez.files.File#getContent()}.
+ */
+public final class InlineContent {
+
+    private InlineContent() {
+    }
+
+    /**
+     * @param range the bytes to read, or null for all of them.
+     * @return a new buffer for every subscriber, the content itself is shared and must not be modified.
+     */
+    public static Flux<ByteBuffer> read(byte[] content, ByteRange range) {
+        return Mono.fromSupplier(() -> range == null
+                        ? ByteBuffer.wrap(content)
+                        : ByteBuffer.wrap(content, (int) range.start(), (int) range.length()))
+                .flux();
+    }
+
+    public static byte[] join(List<ByteBuffer> chunks) {
+        byte[] content = new byte[chunks.stream().mapToInt(ByteBuffer::remaining).sum()];
+        ByteBuffer target = ByteBuffer.wrap(content);
+        chunks.forEach(chunk -> target.put(chunk.duplicate()));
+        return content;
+    }
+
+    public static long crc32(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,40 @@
+package io.filemanager.filez.files.storage;
+
+import java.util.HexFormat;
+
+/**
+ * How the S3 key of a file is built. The layout is stored with each file, so files keep the key they were
+ * uploaded with when the configured layout changes.
+ */
+public enum KeyLayout {
+
+    /**
+     * {@code <id>-<file name>}. IDs are sequential, so all writes of a moment go to the same key prefix, and with it
+     * to the same S3 partition.
+     */
+    PLAIN,
+
+    /**
+     * {@code <4 hex digits>/<id>-<file name>}: the prefix is a hash of the ID, which spreads consecutive uploads over
+     * 65536 prefixes that S3 can serve from different partitions.
+     */
+    HASHED;
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    public String key(long id, String fileName) {
+        String name = id + "-" + fileName;
+        return switch (this) {
+            case PLAIN -> name;
+            case HASHED -> HEX.toHexDigits((short) (mix(id) >>> 48)) + "/" + name;
+        };
+    }
+
+    // The finalizer of SplitMix64: consecutive IDs end up far apart
+    private static long mix(long id) {
+        long z = id * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
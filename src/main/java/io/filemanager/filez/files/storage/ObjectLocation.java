@@ -0,0 +1,7 @@
+package io.filemanager.filez.files.storage;
+
+/**
+ * Where the content of a file is stored in S3.
+ */
+public record ObjectLocation(String bucket, String key) {
+}
@@ -0,0 +1,77 @@
+package io.filemanager.filez.files.storage;
+
+import io.filemanager.filez.files.File;
+import io.filemanager.filez.shared.config.StorageProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The one place S3 keys and buckets of files are decided.
+ * <p>
+ * A new file gets the configured key layout and, if several buckets are configured, the next one of them in turn.
+ * Both are stored with the file, so it stays readable when the configuration changes. Files stored before either
+ * was recorded have neither and are found with the plain layout in the default bucket.
+ * <p>
+ * Packs are in the bucket of their files, under {@code packs/} with the hashed layout of the pack ID.
+ */
+@Component
+public class ObjectLocator {
+
+    private final String defaultBucket;
+    private final KeyLayout keyLayout;
+    private final List<String> buckets;
+    private final AtomicInteger nextBucket = new AtomicInteger();
+
+    public ObjectLocator(StorageProperties storageProperties) {
+        this.defaultBucket = storageProperties.getDefaultBucket();
+        this.keyLayout = storageProperties.getKeyLayout();
+        this.buckets = storageProperties.getBuckets().isEmpty()
+                ? List.of(defaultBucket)
+                : List.copyOf(storageProperties.getBuckets());
+    }
+
+    /**
+     * Decides where a new file goes, before it is saved for the first time.
+     */
+    public void assign(File file) {
+        file.setKeyLayout(keyLayout);
+        file.setBucket(buckets.get(Math.floorMod(nextBucket.getAndIncrement(), buckets.size())));
+    }
+
+    /**
+     * The object of its own a file is uploaded to. Packed files have been moved out of it, see {@link #locatePack}.
+     *
+     * @param file a saved file, it needs its ID.
+     */
+    public ObjectLocation locate(File file) {
+        KeyLayout layout = file.getKeyLayout() != null ? file.getKeyLayout() : KeyLayout.PLAIN;
+        return locate(file.getBucket(), layout.key(file.getId(), file.getFileName()));
+    }
+
+    /**
+     * The pack a packed file is in. Its content starts at {@link File#getPackOffset()}.
+     */
+    public ObjectLocation locatePack(File file) {
+        return locatePack(file.getBucket(), file.getPackId());
+    }
+
+    public ObjectLocation locatePack(String bucket, long packId) {
+        return locate(bucket, "packs/" + KeyLayout.HASHED.key(packId, "pack"));
+    }
+
+    /**
+     * @param bucket the recorded bucket, or null for the default one.
+     */
+    public ObjectLocation locate(String bucket, String key) {
+        return new ObjectLocation(bucket != null ? bucket : defaultBucket, key);
+    }
+
+    /**
+     * All buckets new files may go to.
+     */
+    public List<String> buckets() {
+        return buckets;
+    }
+}
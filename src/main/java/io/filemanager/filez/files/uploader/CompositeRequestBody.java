@@ -0,0 +1,48 @@
+package io.filemanager.filez.files.uploader;
+
+import org.reactivestreams.Subscriber;
+import reactor.core.publisher.Flux;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A scatter-gather request body: it hands the chunks of a part to the SDK one by one instead of
+ * re-assembling them into one freshly allocated buffer, and it reports the content length up front.
+ * <p>
+ * Every subscription gets read-only views of the chunks, so the SDK can re-subscribe when it retries
+ * a request. Once the part request has finished, {@link #release()} drops the references to the chunks.
+ */
+public final class CompositeRequestBody implements AsyncRequestBody {
+
+    private volatile List<ByteBuffer> chunks;
+    private final long contentLength;
+
+    public CompositeRequestBody(List<ByteBuffer> chunks) {
+        this.chunks = chunks;
+        this.contentLength = chunks.stream().mapToLong(ByteBuffer::remaining).sum();
+    }
+
+    @Override
+    public Optional<Long> contentLength() {
+        return Optional.of(contentLength);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        List<ByteBuffer> current = chunks;
+        if (current == null) {
+            Flux.<ByteBuffer>error(new IllegalStateException("Request body has already been released")).subscribe(subscriber);
+            return;
+        }
+        Flux.fromIterable(current)
+                .map(ByteBuffer::asReadOnlyBuffer)
+                .subscribe(subscriber);
+    }
+
+    public void release() {
+        chunks = null;
+    }
+}
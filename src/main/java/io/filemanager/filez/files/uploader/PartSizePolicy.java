@@ -0,0 +1,109 @@
+package io.filemanager.filez.files.uploader;
+
+import io.filemanager.filez.shared.config.UploadProperties;
+
+/**
+ * Picks the part sizes for a single multipart upload.
+ * <p>
+ * S3 allows at most 10,000 parts of 5 MB to 5 GB each (only the last part may be smaller). When the
+ * content length is known up front we pick one size that fits the whole file into that limit, preferring
+ * fewer, bigger parts for large files. When it is unknown we start small, so small files don't pay for
+ * big buffers, and double the part size every {@link #GROWTH_INTERVAL} parts.
+ * <p>
+ * In both cases the part size is bounded by the memory ceiling of an upload: the parts in flight plus the
+ * part currently being filled must fit into {@link UploadProperties#getMaxMemoryPerUpload()}.
+ */
+public final class PartSizePolicy {
+
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    static final long MAX_PART_SIZE = 5L * 1024 * 1024 * 1024;
+    static final int MAX_PARTS = 10_000;
+    // Part count we aim for when the content length is known, bigger parts mean fewer requests.
+    static final int TARGET_PARTS = 1_000;
+    static final int GROWTH_INTERVAL = 1_000;
+
+    private static final long MB = 1024 * 1024;
+
+    private final long initialPartSize;
+    private final long maxPartSize;
+    private final boolean growing;
+    private final int partsInFlight;
+
+    private PartSizePolicy(long initialPartSize, long maxPartSize, boolean growing, int partsInFlight) {
+        this.initialPartSize = initialPartSize;
+        this.maxPartSize = maxPartSize;
+        this.growing = growing;
+        this.partsInFlight = partsInFlight;
+    }
+
+    /**
+     * @param contentLength the declared length of the content, or a negative value if it is unknown.
+     */
+    public static PartSizePolicy forUpload(long contentLength, UploadProperties uploadProperties) {
+        long memoryCeiling = uploadProperties.getMaxMemoryPerUpload().toBytes();
+        int maxConcurrency = Math.max(1, uploadProperties.getMaxConcurrency());
+        // The biggest part that still lets every in-flight part plus the one being filled fit into memory.
+        long partSizeCeiling = Math.min(MAX_PART_SIZE, roundDownToMb(memoryCeiling / (maxConcurrency + 1)));
+
+        if (contentLength < 0) {
+            long maxPartSize = Math.max(MIN_PART_SIZE, partSizeCeiling);
+            return new PartSizePolicy(MIN_PART_SIZE, maxPartSize, true, partsInFlight(memoryCeiling, maxPartSize, maxConcurrency));
+        }
+
+        long requiredPartSize = Math.max(MIN_PART_SIZE, roundUpToMb(ceilDiv(contentLength, MAX_PARTS)));
+        long preferredPartSize = Math.max(MIN_PART_SIZE, Math.min(roundUpToMb(ceilDiv(contentLength, TARGET_PARTS)), partSizeCeiling));
+        long partSize = Math.max(requiredPartSize, preferredPartSize);
+
+        if (partSize > MAX_PART_SIZE) {
+            throw new IllegalArgumentException("Content length of " + contentLength + " bytes exceeds the maximum S3 object size");
+        }
+        if (partSize * 2 > memoryCeiling && contentLength > partSize) {
+            throw new IllegalArgumentException("Content length of " + contentLength + " bytes requires parts of " + partSize
+                    + " bytes, which does not fit into the memory ceiling of " + memoryCeiling + " bytes per upload");
+        }
+        return new PartSizePolicy(partSize, partSize, false, partsInFlight(memoryCeiling, partSize, maxConcurrency));
+    }
+
+    /**
+     * The size of the given part (1-based). Fails once the upload would need more parts than S3 allows.
+     */
+    public long partSize(int partNumber) {
+        if (partNumber > MAX_PARTS) {
+            throw new IllegalStateException("Upload exceeds the maximum of " + MAX_PARTS + " parts");
+        }
+        if (!growing) {
+            return initialPartSize;
+        }
+        int doublings = Math.min((partNumber - 1) / GROWTH_INTERVAL, 20);
+        return Math.min(initialPartSize << doublings, maxPartSize);
+    }
+
+    public long initialPartSize() {
+        return initialPartSize;
+    }
+
+    public int partsInFlight() {
+        return partsInFlight;
+    }
+
+    /**
+     * One part worth of memory is always reserved for the part that is currently being filled from the
+     * incoming stream, the rest can be spent on in-flight parts.
+     */
+    private static int partsInFlight(long memoryCeiling, long partSize, int maxConcurrency) {
+        long partsWithinBudget = memoryCeiling / partSize - 1;
+        return (int) Math.max(1, Math.min(maxConcurrency, partsWithinBudget));
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    private static long roundUpToMb(long bytes) {
+        return ceilDiv(bytes, MB) * MB;
+    }
+
+    private static long roundDownToMb(long bytes) {
+        return bytes / MB * MB;
+    }
+}
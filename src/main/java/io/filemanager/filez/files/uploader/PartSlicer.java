@@ -0,0 +1,82 @@
+package io.filemanager.filez.files.uploader;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Groups a stream of ByteBuffers into parts of exactly the requested size, only the last part may be smaller.
+ * The size of every part is looked up by its part number, so it may change over the course of an upload.
+ * Buffers that straddle a part boundary are split into views of the original buffer, no bytes are copied.
+ * <p>
+ * Unlike bufferTimeout, the slicer counts bytes instead of buffers and never cuts a part short because the
+ * client is slow, so every part except the last one satisfies the S3 minimum part size.
+ * <p>
+ * A full part is only emitted once the first byte of the next part arrives (or the stream completes), so
+ * every part knows whether it is the last one. An empty stream results in a single, empty, last part.
+ */
+public final class PartSlicer {
+
+    public record Part(int number, List<ByteBuffer> chunks, boolean last) {
+        public long size() {
+            return chunks.stream().mapToLong(ByteBuffer::remaining).sum();
+        }
+    }
+
+    private final IntToLongFunction partSizes;
+    private List<ByteBuffer> pending = new ArrayList<>();
+    private long pendingBytes = 0;
+    private int nextPartNumber = 1;
+    private long partSize;
+
+    private PartSlicer(IntToLongFunction partSizes) {
+        this.partSizes = partSizes;
+        this.partSize = partSizes.applyAsLong(nextPartNumber);
+    }
+
+    public static Flux<Part> slice(Flux<ByteBuffer> content, long partSize) {
+        return slice(content, partNumber -> partSize);
+    }
+
+    public static Flux<Part> slice(Flux<ByteBuffer> content, IntToLongFunction partSizes) {
+        // A new slicer per subscription, it holds the state of the part that is currently being filled.
+        // Prefetch of 1 so we never pull more buffers from the client than the part we are filling needs.
+        return Flux.defer(() -> {
+            PartSlicer slicer = new PartSlicer(partSizes);
+            return content.concatMapIterable(slicer::offer, 1)
+                    .concatWith(Mono.fromCallable(slicer::flush));
+        });
+    }
+
+    private List<Part> offer(ByteBuffer buffer) {
+        List<Part> completedParts = new ArrayList<>(1);
+        int position = buffer.position();
+        int limit = buffer.limit();
+
+        while (position < limit) {
+            if (pendingBytes == partSize) {
+                // More bytes are coming, so the full part we were holding back is not the last one.
+                completedParts.add(new Part(nextPartNumber++, pending, false));
+                pending = new ArrayList<>();
+                pendingBytes = 0;
+                partSize = partSizes.applyAsLong(nextPartNumber);
+            }
+            int length = (int) Math.min(limit - position, partSize - pendingBytes);
+            pending.add(buffer.slice(position, length));
+            pendingBytes += length;
+            position += length;
+        }
+        return completedParts;
+    }
+
+    private Part flush() {
+        Part lastPart = new Part(nextPartNumber, pending, true);
+        pending = new ArrayList<>();
+        pendingBytes = 0;
+        return lastPart;
+    }
+}
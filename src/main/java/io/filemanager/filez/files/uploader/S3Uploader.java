@@ -1,10 +1,18 @@
 package io.filemanager.filez.files.uploader;
 
+import io.filemanager.filez.files.storage.ObjectLocation;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.nio.ByteBuffer;
 
 public interface S3Uploader {
-    Mono<UploadResult> uploadFile(String key, Flux<ByteBuffer> fileContent, String contentType);
-}
\ No newline at end of file
+    /**
+     * @param contentLength the declared length of the content, or a negative value if it is not known up front.
+     */
+    Mono<UploadResult> uploadFile(ObjectLocation location, Flux<ByteBuffer> fileContent, String contentType, long contentLength);
+
+    default Mono<UploadResult> uploadFile(ObjectLocation location, Flux<ByteBuffer> fileContent, String contentType) {
+        return uploadFile(location, fileContent, contentType, -1);
+    }
+}
@@ -1,6 +1,9 @@
 package io.filemanager.filez.files.uploader;
 
-import org.springframework.beans.factory.annotation.Value;
+import io.filemanager.filez.files.storage.ObjectLocation;
+import io.filemanager.filez.shared.config.UploadProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -9,70 +12,134 @@ import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.*;
 
 import java.nio.ByteBuffer;
-import java.time.Duration;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
 
+@Slf4j
 @Component
+@ConditionalOnProperty(name = "s3.upload.engine", havingValue = "streaming", matchIfMissing = true)
 public class StreamingMultipartS3Uploader implements S3Uploader {
 
-    private static final int PART_SIZE_IN_BYTES = 5 * 1024 * 1024;
-
     private final S3AsyncClient s3AsyncClient;
-    private final String bucketName;
+    private final UploadProperties uploadProperties;
 
-    public StreamingMultipartS3Uploader(S3AsyncClient s3AsyncClient, @Value("${s3.bucket}") String bucketName) {
+    public StreamingMultipartS3Uploader(S3AsyncClient s3AsyncClient, UploadProperties uploadProperties) {
         this.s3AsyncClient = s3AsyncClient;
-        this.bucketName = bucketName;
+        this.uploadProperties = uploadProperties;
     }
 
     @Override
-    public Mono<UploadResult> uploadFile(String key, Flux<ByteBuffer> fileContent, String contentType) {
+    public Mono<UploadResult> uploadFile(ObjectLocation location, Flux<ByteBuffer> fileContent, String contentType, long contentLength) {
         final AtomicLong totalSize = new AtomicLong(0);
+        final AtomicInteger partCount = new AtomicInteger(0);
+        final AtomicLong maxPartSize = new AtomicLong(0);
+        final CRC32 crc = new CRC32();
+
+        // Create a new Flux that counts bytes as they flow through. The CRC-32 is kept with the file,
+        // so archives can write STORED entries without reading the content twice.
+        Flux<ByteBuffer> countedContent = fileContent.doOnNext(bb -> {
+            totalSize.addAndGet(bb.remaining());
+            crc.update(bb.duplicate());
+        });
+
+        return Mono.fromCallable(() -> PartSizePolicy.forUpload(contentLength, uploadProperties))
+                .flatMap(policy -> {
+                    log.debug("Uploading {} with an initial part size of {} bytes and up to {} part(s) in flight",
+                            location.key(), policy.initialPartSize(), policy.partsInFlight());
+
+                    Flux<PartSlicer.Part> parts = PartSlicer.slice(countedContent, policy::partSize)
+                            .doOnNext(part -> {
+                                partCount.incrementAndGet();
+                                maxPartSize.accumulateAndGet(policy.partSize(part.number()), Math::max);
+                            });
+
+                    // Look at the first part before talking to S3: if the whole file fits into it, a single PUT
+                    // saves the createMultipartUpload and completeMultipartUpload round-trips.
+                    return parts
+                            .<PutObjectResponse>switchOnFirst((signal, allParts) -> {
+                                PartSlicer.Part firstPart = signal.get();
+                                if (firstPart != null && firstPart.last()) {
+                                    return putObject(location, contentType, firstPart).flux();
+                                }
+                                if (signal.hasError()) {
+                                    return Flux.error(signal.getThrowable());
+                                }
+                                return multipartUpload(location, contentType, allParts, policy.partsInFlight()).flux();
+                            })
+                            .single()
+                            .map(response -> new UploadResult(response, totalSize.get(), partCount.get(),
+                                    policy.initialPartSize(), maxPartSize.get(), crc.getValue()));
+                });
+    }
 
-        // Create a new Flux that counts bytes as they flow through
-        Flux<ByteBuffer> countedContent = fileContent.doOnNext(bb -> totalSize.addAndGet(bb.remaining()));
+    private Mono<PutObjectResponse> putObject(ObjectLocation location, String contentType, PartSlicer.Part part) {
+        PutObjectRequest putRequest = PutObjectRequest.builder()
+                .bucket(location.bucket()).key(location.key()).contentType(contentType).contentLength(part.size()).build();
+
+        AsyncRequestBody requestBody = partBody(uploadProperties.getPartBody(), part.chunks());
+
+        return Mono.fromFuture(() -> s3AsyncClient.putObject(putRequest, requestBody))
+                .doFinally(signal -> release(requestBody));
+    }
 
+    private Mono<PutObjectResponse> multipartUpload(ObjectLocation location, String contentType, Flux<PartSlicer.Part> parts, int partsInFlight) {
         CreateMultipartUploadRequest createRequest = CreateMultipartUploadRequest.builder()
-                .bucket(bucketName).key(key).contentType(contentType).build();
+                .bucket(location.bucket()).key(location.key()).contentType(contentType).build();
 
-        return Mono.fromFuture(s3AsyncClient.createMultipartUpload(createRequest))
+        return Mono.fromFuture(() -> s3AsyncClient.createMultipartUpload(createRequest))
                 .flatMap(createResponse -> {
                     String uploadId = createResponse.uploadId();
-                    AtomicInteger partNumber = new AtomicInteger(1);
 
-                    Flux<CompletedPart> completedPartsFlux = countedContent
-                            .bufferTimeout(PART_SIZE_IN_BYTES, Duration.ofSeconds(5))
-                            .concatMap(byteBufferList -> uploadPart(uploadId, key, partNumber.getAndIncrement(), byteBufferList));
+                    // Parts may complete out of order when more than one is in flight,
+                    // completeUpload sorts them by part number before finishing the upload.
+                    Flux<CompletedPart> completedPartsFlux = parts
+                            .flatMap(part -> uploadPart(uploadId, location, part), partsInFlight);
 
                     return completedPartsFlux.collectList()
-                            .flatMap(completedParts -> completeUpload(uploadId, key, completedParts))
-                            .map(response -> new UploadResult(response, totalSize.get()))
-                            .doOnError(ex -> abortUpload(uploadId, key));
+                            .flatMap(completedParts -> completeUpload(uploadId, location, completedParts))
+                            .doOnError(ex -> abortUpload(uploadId, location));
                 });
     }
 
+    private Mono<CompletedPart> uploadPart(String uploadId, ObjectLocation location, PartSlicer.Part part) {
+        UploadPartRequest partRequest = UploadPartRequest.builder()
+                .bucket(location.bucket()).key(location.key()).uploadId(uploadId).partNumber(part.number()).build();
 
-    private Mono<CompletedPart> uploadPart(String uploadId, String key, int partNumber, List<ByteBuffer> byteBufferList) {
-        int totalSize = byteBufferList.stream().mapToInt(ByteBuffer::remaining).sum();
-        ByteBuffer combinedBuffer = ByteBuffer.allocate(totalSize);
-        byteBufferList.forEach(combinedBuffer::put);
-        combinedBuffer.flip();
+        AsyncRequestBody requestBody = partBody(uploadProperties.getPartBody(), part.chunks());
 
-        UploadPartRequest partRequest = UploadPartRequest.builder()
-                .bucket(bucketName).key(key).uploadId(uploadId).partNumber(partNumber).build();
+        return Mono.fromFuture(() -> s3AsyncClient.uploadPart(partRequest, requestBody))
+                .map(response -> CompletedPart.builder().partNumber(part.number()).eTag(response.eTag()).build())
+                .doFinally(signal -> release(requestBody));
+    }
+
+    // Let go of the chunks as soon as the request is done, whatever the outcome.
+    private static void release(AsyncRequestBody requestBody) {
+        if (requestBody instanceof CompositeRequestBody compositeRequestBody) {
+            compositeRequestBody.release();
+        }
+    }
 
-        return Mono.fromFuture(s3AsyncClient.uploadPart(partRequest, AsyncRequestBody.fromByteBuffer(combinedBuffer)))
-                .map(response -> CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build());
+    static AsyncRequestBody partBody(UploadProperties.PartBody mode, List<ByteBuffer> byteBufferList) {
+        return switch (mode) {
+            case COMPOSITE -> new CompositeRequestBody(byteBufferList);
+            case COPY -> {
+                int totalSize = byteBufferList.stream().mapToInt(ByteBuffer::remaining).sum();
+                ByteBuffer combinedBuffer = ByteBuffer.allocate(totalSize);
+                byteBufferList.forEach(buffer -> combinedBuffer.put(buffer.duplicate()));
+                combinedBuffer.flip();
+                yield AsyncRequestBody.fromByteBuffer(combinedBuffer);
+            }
+        };
     }
 
-    private Mono<PutObjectResponse> completeUpload(String uploadId, String key, List<CompletedPart> parts) {
+    private Mono<PutObjectResponse> completeUpload(String uploadId, ObjectLocation location, List<CompletedPart> parts) {
         parts.sort(Comparator.comparingInt(CompletedPart::partNumber));
         CompletedMultipartUpload completedMultipartUpload = CompletedMultipartUpload.builder().parts(parts).build();
         CompleteMultipartUploadRequest completeRequest = CompleteMultipartUploadRequest.builder()
-                .bucket(bucketName).key(key).uploadId(uploadId)
+                .bucket(location.bucket()).key(location.key()).uploadId(uploadId)
                 .multipartUpload(completedMultipartUpload).build();
 
         return Mono.fromFuture(s3AsyncClient.completeMultipartUpload(completeRequest))
@@ -82,9 +149,9 @@ public class StreamingMultipartS3Uploader implements S3Uploader {
                         .build());
     }
 
-    private void abortUpload(String uploadId, String key) {
+    private void abortUpload(String uploadId, ObjectLocation location) {
         AbortMultipartUploadRequest abortRequest = AbortMultipartUploadRequest.builder()
-                .bucket(bucketName).key(key).uploadId(uploadId).build();
+                .bucket(location.bucket()).key(location.key()).uploadId(uploadId).build();
         s3AsyncClient.abortMultipartUpload(abortRequest);
     }
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package io.filemanager.filez.files.uploader;
+
+import io.filemanager.filez.files.storage.ObjectLocation;
+import io.filemanager.filez.shared.config.S3Config;
+import io.filemanager.filez.shared.config.S3Properties;
+import io.filemanager.filez.shared.config.UploadProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Subscriber;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.transfer.s3.S3TransferManager;
+import software.amazon.awssdk.transfer.s3.model.UploadRequest;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Uploads through the SDK's {@link S3TransferManager}: the content is streamed into one request body, the client
+ * splits it into parts of {@code s3.crt.minimum-part-size} and uploads them in parallel. Files up to one part go up
+ * with a single PUT.
+ * <p>
+ * Only a client that does multipart by itself makes the transfer manager upload in parallel. A CRT client always
+ * does, so it is shared; for the Netty transport a second, multipart-enabled client is built, which buffers at most
+ * {@code s3.upload.max-memory-per-upload} bytes per upload.
+ * <p>
+ * Selected with {@code s3.upload.engine=transfer-manager}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "s3.upload.engine", havingValue = "transfer-manager")
+public class TransferManagerS3Uploader implements S3Uploader {
+
+    // Null when the shared client is used
+    private final S3AsyncClient multipartClient;
+    private final S3TransferManager transferManager;
+    private final long partSize;
+
+    public TransferManagerS3Uploader(S3AsyncClient s3AsyncClient, S3Properties s3Properties, UploadProperties uploadProperties) {
+        this.multipartClient = s3Properties.getTransport() == S3Properties.Transport.CRT
+                ? null
+                : S3Config.multipartClient(s3Properties, uploadProperties.getMaxMemoryPerUpload().toBytes());
+        this.transferManager = S3TransferManager.builder()
+                .s3Client(multipartClient != null ? multipartClient : s3AsyncClient)
+                .build();
+        this.partSize = s3Properties.getMinimumPartSize();
+
+        log.info("Uploading through the transfer manager on the {} transport, parts of {} bytes",
+                s3Properties.getTransport(), partSize);
+    }
+
+    @Override
+    public Mono<UploadResult> uploadFile(ObjectLocation location, Flux<ByteBuffer> fileContent, String contentType, long contentLength) {
+        final AtomicLong totalSize = new AtomicLong(0);
+        final CRC32 crc = new CRC32();
+
+        // Same counting as the streaming uploader, so both return the same result for the same content
+        Flux<ByteBuffer> countedContent = fileContent.doOnNext(bb -> {
+            totalSize.addAndGet(bb.remaining());
+            crc.update(bb.duplicate());
+        });
+
+        UploadRequest uploadRequest = UploadRequest.builder()
+                .putObjectRequest(b -> b.bucket(location.bucket()).key(location.key()).contentType(contentType))
+                .requestBody(requestBody(countedContent, contentLength))
+                .build();
+
+        return Mono.fromFuture(() -> transferManager.upload(uploadRequest).completionFuture())
+                .map(completedUpload -> {
+                    long size = totalSize.get();
+                    // The parts are cut by the client, this is the count it cuts them into
+                    int partCount = size <= partSize ? 1 : (int) ((size + partSize - 1) / partSize);
+                    long firstPartSize = partCount == 1 ? size : partSize;
+                    return new UploadResult(completedUpload.response(), size, partCount, firstPartSize, firstPartSize, crc.getValue());
+                });
+    }
+
+    // Declares the length when it is known, so the client doesn't have to buffer a part to find out
+    private static AsyncRequestBody requestBody(Flux<ByteBuffer> content, long contentLength) {
+        return new AsyncRequestBody() {
+            @Override
+            public Optional<Long> contentLength() {
+                return contentLength >= 0 ? Optional.of(contentLength) : Optional.empty();
+            }
+
+            @Override
+            public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+                content.subscribe(subscriber);
+            }
+        };
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Doesn't close the client it was given
+        transferManager.close();
+        if (multipartClient != null) {
+            multipartClient.close();
+        }
+    }
+}
@@ -2,4 +2,15 @@ package io.filemanager.filez.files.uploader;
 
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 
-public record UploadResult(PutObjectResponse response, long size) {}
\ No newline at end of file
+/**
+ * @param partCount       the number of parts the file was uploaded in, 1 for a single PUT.
+ * @param initialPartSize the part size the upload started with.
+ * @param maxPartSize     the biggest part size chosen during the upload.
+ * @param crc32           the CRC-32 of the uploaded content, or null if it wasn't computed.
+ */
+public record UploadResult(PutObjectResponse response, long size, int partCount, long initialPartSize, long maxPartSize, Long crc32) {
+
+    public UploadResult(PutObjectResponse response, long size) {
+        this(response, size, 1, size, size, null);
+    }
+}
@@ -0,0 +1,46 @@
+package io.filemanager.filez.shared.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+public class ArchiveConfig {
+    @Bean
+    ArchiveProperties archiveProperties(@Value("${archive.prefetch-entries:4}") Integer prefetchEntries,
+                                        @Value("${archive.prefetch-budget:16MB}") DataSize prefetchBudget,
+                                        @Value("${archive.compression-threads:0}") Integer compressionThreads,
+                                        @Value("${archive.max-concurrent-builds:0}") Integer maxConcurrentBuilds,
+                                        @Value("${archive.max-queued-builds:32}") Integer maxQueuedBuilds,
+                                        @Value("${archive.queue-timeout:30s}") Duration queueTimeout,
+                                        @Value("${archive.parallel-compression:true}") Boolean parallelCompression,
+                                        @Value("${archive.parallel-threshold:16MB}") DataSize parallelThreshold,
+                                        @Value("${archive.block-size:1MB}") DataSize blockSize,
+                                        @Value("${archive.entry-table-memory:16MB}") DataSize entryTableMemory,
+                                        @Value("${archive.spill-directory:${java.io.tmpdir}}") String spillDirectory,
+                                        @Value("${archive.query-page-size:1000}") Integer queryPageSize,
+                                        @Value("${archive.deflater-pool-size:32}") Integer deflaterPoolSize,
+                                        @Value("${archive.frame-size:64KB}") DataSize frameSize)
+    {
+        return ArchiveProperties.builder()
+                .prefetchEntries(prefetchEntries)
+                .prefetchBudget(prefetchBudget)
+                .compressionThreads(compressionThreads)
+                .maxConcurrentBuilds(maxConcurrentBuilds)
+                .maxQueuedBuilds(maxQueuedBuilds)
+                .queueTimeout(queueTimeout)
+                .parallelCompression(parallelCompression)
+                .parallelThreshold(parallelThreshold)
+                .blockSize(blockSize)
+                .entryTableMemory(entryTableMemory)
+                .spillDirectory(Path.of(spillDirectory))
+                .queryPageSize(queryPageSize)
+                .deflaterPoolSize(deflaterPoolSize)
+                .frameSize(frameSize)
+                .build();
+    }
+}
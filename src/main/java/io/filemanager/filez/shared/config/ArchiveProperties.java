@@ -0,0 +1,99 @@
+package io.filemanager.filez.shared.config;
+
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+
+@Data
+@Builder
+public class ArchiveProperties {
+    /**
+     * How many entries are opened ahead of the one being compressed.
+     */
+    @Builder.Default
+    private int prefetchEntries = 4;
+
+    /**
+     * The memory one archive may spend on buffering prefetched entries. Entries that are too big for their share
+     * of the budget aren't prefetched, their GET is only sent when it's their turn.
+     */
+    @Builder.Default
+    private DataSize prefetchBudget = DataSize.ofMegabytes(16);
+
+    /**
+     * The threads that compress archive entries, 0 for one per available processor.
+     */
+    @Builder.Default
+    private int compressionThreads = 0;
+
+    /**
+     * How many archives are built at the same time, 0 for two per compression thread.
+     */
+    @Builder.Default
+    private int maxConcurrentBuilds = 0;
+
+    /**
+     * How many archive requests may wait for a free slot. Further requests are answered with 503.
+     */
+    @Builder.Default
+    private int maxQueuedBuilds = 32;
+
+    /**
+     * How long a request waits for a free slot before it is answered with 503.
+     */
+    @Builder.Default
+    private Duration queueTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Deflate large entries in blocks on all compression threads (pigz-style) instead of on one.
+     */
+    @Builder.Default
+    private boolean parallelCompression = true;
+
+    /**
+     * Entries smaller than this are always deflated on one thread.
+     */
+    @Builder.Default
+    private DataSize parallelThreshold = DataSize.ofMegabytes(16);
+
+    /**
+     * The uncompressed size of the blocks a large entry is split into.
+     */
+    @Builder.Default
+    private DataSize blockSize = DataSize.ofMegabytes(1);
+
+    /**
+     * The memory the entry table of one archive may take (about 36 bytes plus the name per entry).
+     * Beyond that, entries are moved to a temporary file until the central directory is written.
+     */
+    @Builder.Default
+    private DataSize entryTableMemory = DataSize.ofMegabytes(16);
+
+    /**
+     * How many idle deflaters are kept for reuse. Each one holds a few hundred KB of native memory.
+     */
+    @Builder.Default
+    private int deflaterPoolSize = 32;
+
+    /**
+     * The size of the frames deflated entries are sent in. Headers, compressed data and data descriptors are
+     * coalesced into frames of this size.
+     */
+    @Builder.Default
+    private DataSize frameSize = DataSize.ofKilobytes(64);
+
+    /**
+     * How many rows are read per query when the files of an archive are selected by criteria.
+     */
+    @Builder.Default
+    private int queryPageSize = 1000;
+
+    /**
+     * Where entry tables are moved to when they outgrow their memory.
+     */
+    private Path spillDirectory;
+}
@@ -0,0 +1,36 @@
+package io.filemanager.filez.shared.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+public class CacheConfig {
+    @Bean
+    DiskCacheProperties diskCacheProperties(@Value("${cache.disk.enabled:false}") Boolean enabled,
+                                            @Value("${cache.disk.directory:${java.io.tmpdir}/filez-cache}") String directory,
+                                            @Value("${cache.disk.max-size:10GB}") DataSize maxSize,
+                                            @Value("${cache.disk.max-object-size:512MB}") DataSize maxObjectSize)
+    {
+        return DiskCacheProperties.builder()
+                .enabled(enabled)
+                .directory(Path.of(directory))
+                .maxSize(maxSize)
+                .maxObjectSize(maxObjectSize)
+                .build();
+    }
+
+    @Bean
+    MetadataCacheProperties metadataCacheProperties(@Value("${cache.metadata.max-size:10000}") Long maxSize,
+                                                    @Value("${cache.metadata.ttl:10m}") Duration ttl)
+    {
+        return MetadataCacheProperties.builder()
+                .maxSize(maxSize)
+                .ttl(ttl)
+                .build();
+    }
+}
@@ -0,0 +1,29 @@
+package io.filemanager.filez.shared.config;
+
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+
+@Data
+@Builder
+public class DiskCacheProperties {
+    @Builder.Default
+    private boolean enabled = false;
+
+    private Path directory;
+
+    /**
+     * Least recently used files are evicted once the cache grows beyond this size.
+     */
+    @Builder.Default
+    private DataSize maxSize = DataSize.ofGigabytes(10);
+
+    /**
+     * Bigger files are never cached, so a single download can't flush the whole cache.
+     */
+    @Builder.Default
+    private DataSize maxObjectSize = DataSize.ofMegabytes(512);
+}
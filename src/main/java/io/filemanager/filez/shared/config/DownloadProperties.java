@@ -0,0 +1,35 @@
+package io.filemanager.filez.shared.config;
+
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.util.unit.DataSize;
+
+
+@Data
+@Builder
+public class DownloadProperties {
+    /**
+     * Fetch large objects as several ranges in parallel instead of a single GET.
+     */
+    @Builder.Default
+    private boolean parallel = false;
+
+    /**
+     * Downloads smaller than this are always fetched with a single GET.
+     */
+    @Builder.Default
+    private DataSize parallelThreshold = DataSize.ofMegabytes(64);
+
+    /**
+     * The size of the ranges a parallel download is split into.
+     */
+    @Builder.Default
+    private DataSize rangeSize = DataSize.ofMegabytes(8);
+
+    /**
+     * How many ranges of one download are fetched at the same time. Together with the range size,
+     * this bounds the memory a single download may hold.
+     */
+    @Builder.Default
+    private int concurrency = 4;
+}
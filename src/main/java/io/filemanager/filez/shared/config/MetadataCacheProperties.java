@@ -0,0 +1,23 @@
+package io.filemanager.filez.shared.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+
+@Data
+@Builder
+public class MetadataCacheProperties {
+    /**
+     * The number of rows cached, a row with inline content counts once more per KB of it.
+     */
+    @Builder.Default
+    private long maxSize = 10_000;
+
+    /**
+     * Entries are reloaded after this time, which bounds the staleness of rows changed outside this service.
+     */
+    @Builder.Default
+    private Duration ttl = Duration.ofMinutes(10);
+}
@@ -0,0 +1,33 @@
+package io.filemanager.filez.shared.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Configuration
+public class PackConfig {
+    @Bean
+    PackProperties packProperties(@Value("${pack.enabled:false}") Boolean enabled,
+                                  @Value("${pack.interval:1m}") Duration interval,
+                                  @Value("${pack.max-file-size:1MB}") DataSize maxFileSize,
+                                  @Value("${pack.target-size:64MB}") DataSize targetSize,
+                                  @Value("${pack.min-files:100}") Integer minFiles,
+                                  @Value("${pack.max-files:10000}") Integer maxFiles,
+                                  @Value("${pack.compaction-threshold:0.5}") Double compactionThreshold,
+                                  @Value("${pack.grace-period:15m}") Duration gracePeriod)
+    {
+        return PackProperties.builder()
+                .enabled(enabled)
+                .interval(interval)
+                .maxFileSize(maxFileSize)
+                .targetSize(targetSize)
+                .minFiles(minFiles)
+                .maxFiles(maxFiles)
+                .compactionThreshold(compactionThreshold)
+                .gracePeriod(gracePeriod)
+                .build();
+    }
+}
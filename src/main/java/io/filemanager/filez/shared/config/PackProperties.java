@@ -0,0 +1,63 @@
+package io.filemanager.filez.shared.config;
+
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+
+@Data
+@Builder
+public class PackProperties {
+    /**
+     * Whether small files are packed on this instance. Enable it on exactly one instance: instances don't coordinate
+     * their rounds, so a second one may compact or delete a pack while the first is still moving files into it.
+     */
+    @Builder.Default
+    private boolean enabled = false;
+
+    /**
+     * The pause between two rounds of packing, compacting and deleting what is no longer needed.
+     */
+    @Builder.Default
+    private Duration interval = Duration.ofMinutes(1);
+
+    /**
+     * Files in S3 up to this size are packed.
+     */
+    @Builder.Default
+    private DataSize maxFileSize = DataSize.ofMegabytes(1);
+
+    /**
+     * The size a pack is filled up to.
+     */
+    @Builder.Default
+    private DataSize targetSize = DataSize.ofMegabytes(64);
+
+    /**
+     * A pack is only written once this many files are waiting for one.
+     */
+    @Builder.Default
+    private int minFiles = 100;
+
+    /**
+     * The most files that go into one pack.
+     */
+    @Builder.Default
+    private int maxFiles = 10_000;
+
+    /**
+     * A pack is rewritten once its files take less than this share of it, the rest belongs to deleted files.
+     */
+    @Builder.Default
+    private double compactionThreshold = 0.5;
+
+    /**
+     * How long objects that files were moved out of are kept. Other instances may read them until their cached
+     * metadata expires, so this has to be longer than {@code cache.metadata.ttl}. Packs younger than this aren't
+     * compacted either.
+     */
+    @Builder.Default
+    private Duration gracePeriod = Duration.ofMinutes(15);
+}
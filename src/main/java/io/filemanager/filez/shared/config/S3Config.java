@@ -1,17 +1,26 @@
 package io.filemanager.filez.shared.config;
 
+import io.filemanager.filez.files.storage.KeyLayout;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.Protocol;
+import software.amazon.awssdk.http.nio.netty.Http2Configuration;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.crt.S3CrtHttpConfiguration;
+import software.amazon.awssdk.services.s3.multipart.MultipartConfiguration;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.List;
 
 @Configuration
 public class S3Config {
@@ -24,7 +33,15 @@ public class S3Config {
                               @Value("${s3.region:eu-central-1}") String region,
                               @Value("${s3.max-connections}") Integer maxConnections,
                               @Value("${s3.connection-timeout}") Integer connectionTimeout,
-                              @Value("${s3.socket-timeout}") Integer socketTimeout)
+                              @Value("${s3.socket-timeout}") Integer socketTimeout,
+                              @Value("${s3.transport:netty}") S3Properties.Transport transport,
+                              @Value("${s3.connection-acquisition-timeout:10s}") Duration connectionAcquisitionTimeout,
+                              @Value("${s3.max-pending-connection-acquires:10000}") Integer maxPendingConnectionAcquires,
+                              @Value("${s3.protocol:HTTP1_1}") Protocol protocol,
+                              @Value("${s3.http2.max-streams:100}") Long http2MaxStreams,
+                              @Value("${s3.http2.initial-window-size:1048576}") Integer http2InitialWindowSize,
+                              @Value("${s3.crt.target-throughput-gbps:10.0}") Double targetThroughputGbps,
+                              @Value("${s3.crt.minimum-part-size:8MB}") DataSize minimumPartSize)
     {
         return S3Properties.builder()
                 .host(endpoint)
@@ -35,29 +52,128 @@ public class S3Config {
                 .maxConnections(maxConnections)
                 .connectionTimeout(connectionTimeout)
                 .socketTimeout(socketTimeout)
+                .transport(transport)
+                .connectionAcquisitionTimeout(connectionAcquisitionTimeout)
+                .maxPendingConnectionAcquires(maxPendingConnectionAcquires)
+                .protocol(protocol)
+                .http2MaxStreams(http2MaxStreams)
+                .http2InitialWindowSize(http2InitialWindowSize)
+                .targetThroughputGbps(targetThroughputGbps)
+                .minimumPartSize(minimumPartSize.toBytes())
+                .build();
+    }
+
+    @Bean
+    UploadProperties uploadProperties(@Value("${s3.upload.max-concurrency:1}") Integer maxConcurrency,
+                                      @Value("${s3.upload.max-memory-per-upload:64MB}") DataSize maxMemoryPerUpload,
+                                      @Value("${s3.upload.part-body:composite}") UploadProperties.PartBody partBody,
+                                      @Value("${s3.upload.engine:streaming}") UploadProperties.Engine engine,
+                                      @Value("${s3.upload.session-ttl:7d}") Duration sessionTtl,
+                                      @Value("${s3.upload.session-sweep-interval:1h}") Duration sessionSweepInterval)
+    {
+        return UploadProperties.builder()
+                .maxConcurrency(maxConcurrency)
+                .maxMemoryPerUpload(maxMemoryPerUpload)
+                .partBody(partBody)
+                .engine(engine)
+                .sessionTtl(sessionTtl)
+                .sessionSweepInterval(sessionSweepInterval)
+                .build();
+    }
+
+    @Bean
+    StorageProperties storageProperties(@Value("${s3.bucket}") String defaultBucket,
+                                        @Value("${s3.key-layout:hashed}") KeyLayout keyLayout,
+                                        @Value("${s3.buckets:}") List<String> buckets,
+                                        @Value("${s3.inline-threshold:32KB}") DataSize inlineThreshold)
+    {
+        return StorageProperties.builder()
+                .defaultBucket(defaultBucket)
+                .keyLayout(keyLayout)
+                .buckets(buckets.stream().map(String::trim).filter(bucket -> !bucket.isEmpty()).toList())
+                .inlineThreshold(inlineThreshold)
+                .build();
+    }
+
+    @Bean
+    DownloadProperties downloadProperties(@Value("${s3.download.parallel:false}") Boolean parallel,
+                                          @Value("${s3.download.parallel-threshold:64MB}") DataSize parallelThreshold,
+                                          @Value("${s3.download.range-size:8MB}") DataSize rangeSize,
+                                          @Value("${s3.download.concurrency:4}") Integer concurrency)
+    {
+        return DownloadProperties.builder()
+                .parallel(parallel)
+                .parallelThreshold(parallelThreshold)
+                .rangeSize(rangeSize)
+                .concurrency(concurrency)
                 .build();
     }
 
     @Bean
     public S3AsyncClient s3AsyncClient(S3Properties s3Properties) {
-        // Use the standard Netty client
+        return switch (s3Properties.getTransport()) {
+            case NETTY -> nettyClient(s3Properties, null);
+            case CRT -> crtClient(s3Properties);
+        };
+    }
+
+    /**
+     * A client that splits large uploads into parts of {@code minimumPartSize} and sends them in parallel by itself,
+     * holding at most {@code bufferSize} bytes per upload. The CRT client always does; a Netty client is built with
+     * multipart enabled, apart from the shared one.
+     */
+    public static S3AsyncClient multipartClient(S3Properties s3Properties, long bufferSize) {
+        return switch (s3Properties.getTransport()) {
+            case NETTY -> nettyClient(s3Properties, MultipartConfiguration.builder()
+                    .minimumPartSizeInBytes(s3Properties.getMinimumPartSize())
+                    .thresholdInBytes(s3Properties.getMinimumPartSize())
+                    .apiCallBufferSizeInBytes(bufferSize)
+                    .build());
+            case CRT -> crtClient(s3Properties);
+        };
+    }
+
+    // Multipart is left to the uploaders unless a configuration is given
+    private static S3AsyncClient nettyClient(S3Properties s3Properties, MultipartConfiguration multipartConfiguration) {
         S3Configuration s3Configuration = S3Configuration.builder()
                 .checksumValidationEnabled(false)
                 .chunkedEncodingEnabled(true) // Recommended for streaming
                 .build();
 
+        NettyNioAsyncHttpClient.Builder httpClient = NettyNioAsyncHttpClient.builder()
+                .connectionAcquisitionTimeout(s3Properties.getConnectionAcquisitionTimeout())
+                .maxPendingConnectionAcquires(s3Properties.getMaxPendingConnectionAcquires())
+                .protocol(s3Properties.getProtocol())
+                .http2Configuration(Http2Configuration.builder()
+                        .maxStreams(s3Properties.getHttp2MaxStreams())
+                        .initialWindowSize(s3Properties.getHttp2InitialWindowSize())
+                        .build())
+                .tcpKeepAlive(true);
+        if (s3Properties.getMaxConnections() != null) {
+            httpClient.maxConcurrency(s3Properties.getMaxConnections());
+        }
+        if (s3Properties.getConnectionTimeout() != null) {
+            httpClient.connectionTimeout(Duration.ofSeconds(s3Properties.getConnectionTimeout()));
+        }
+        if (s3Properties.getSocketTimeout() != null) {
+            httpClient.readTimeout(Duration.ofSeconds(s3Properties.getSocketTimeout()))
+                    .writeTimeout(Duration.ofSeconds(s3Properties.getSocketTimeout()));
+        }
+
         var builder = S3AsyncClient.builder()
                 .serviceConfiguration(s3Configuration)
+                .httpClientBuilder(httpClient)
                 .region(Region.of(s3Properties.getRegion()));
+        if (multipartConfiguration != null) {
+            builder.multipartEnabled(true)
+                    .multipartConfiguration(multipartConfiguration);
+        }
 
         // If an endpoint is defined (for MinIO, S3Mock, etc.), use it.
-        if (s3Properties.getHost() != null && !s3Properties.getHost().isEmpty()) {
-            AwsBasicCredentials credentials =
-                    AwsBasicCredentials.create(s3Properties.getAccessKey(), s3Properties.getSecretKey());
-
+        if (hasEndpoint(s3Properties)) {
             builder.endpointOverride(URI.create(s3Properties.getUriAsString()))
                     .forcePathStyle(true) // Essential for most S3 mocks
-                    .credentialsProvider(StaticCredentialsProvider.create(credentials));
+                    .credentialsProvider(staticCredentials(s3Properties));
         } else {
             // For real AWS, use default credentials and configured region
             builder.credentialsProvider(DefaultCredentialsProvider.create());
@@ -65,4 +181,41 @@ public class S3Config {
 
         return builder.build();
     }
+
+    private static S3AsyncClient crtClient(S3Properties s3Properties) {
+        S3CrtHttpConfiguration.Builder httpConfiguration = S3CrtHttpConfiguration.builder();
+        if (s3Properties.getConnectionTimeout() != null) {
+            httpConfiguration.connectionTimeout(Duration.ofSeconds(s3Properties.getConnectionTimeout()));
+        }
+
+        var builder = S3AsyncClient.crtBuilder()
+                .checksumValidationEnabled(false)
+                .targetThroughputInGbps(s3Properties.getTargetThroughputGbps())
+                .minimumPartSizeInBytes(s3Properties.getMinimumPartSize())
+                .thresholdInBytes(s3Properties.getMinimumPartSize())
+                .httpConfiguration(httpConfiguration.build())
+                .region(Region.of(s3Properties.getRegion()));
+        if (s3Properties.getMaxConnections() != null) {
+            builder.maxConcurrency(s3Properties.getMaxConnections());
+        }
+
+        if (hasEndpoint(s3Properties)) {
+            builder.endpointOverride(URI.create(s3Properties.getUriAsString()))
+                    .forcePathStyle(true)
+                    .credentialsProvider(staticCredentials(s3Properties));
+        } else {
+            builder.credentialsProvider(DefaultCredentialsProvider.create());
+        }
+
+        return builder.build();
+    }
+
+    private static boolean hasEndpoint(S3Properties s3Properties) {
+        return s3Properties.getHost() != null && !s3Properties.getHost().isEmpty();
+    }
+
+    private static StaticCredentialsProvider staticCredentials(S3Properties s3Properties) {
+        return StaticCredentialsProvider.create(
+                AwsBasicCredentials.create(s3Properties.getAccessKey(), s3Properties.getSecretKey()));
+    }
 }
@@ -2,10 +2,13 @@ package io.filemanager.filez.shared.config;
 
 import lombok.Builder;
 import lombok.Data;
+import software.amazon.awssdk.http.Protocol;
+
+import java.time.Duration;
 
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class S3Properties {
     @Builder.Default
     private boolean secure = false;
@@ -14,12 +17,80 @@ public class S3Properties {
     private String accessKey;
     private String secretKey;
     private String region;
+    /**
+     * The connections of the Netty pool, the concurrent requests of the CRT client.
+     */
     private Integer maxConnections;
+    /**
+     * In seconds.
+     */
     private Integer connectionTimeout;
+    /**
+     * How long a read or write may block, in seconds.
+     */
     private Integer socketTimeout;
 
+    /**
+     * The HTTP client the S3 client sends its requests with.
+     */
+    @Builder.Default
+    private Transport transport = Transport.NETTY;
+
+    /**
+     * How long a request waits for a free connection of the Netty pool.
+     */
+    @Builder.Default
+    private Duration connectionAcquisitionTimeout = Duration.ofSeconds(10);
+
+    /**
+     * How many requests may wait for a free connection of the Netty pool.
+     */
+    @Builder.Default
+    private int maxPendingConnectionAcquires = 10_000;
+
+    /**
+     * HTTP/1.1 for AWS, which doesn't speak HTTP/2 for S3. HTTP/2 is for S3-compatible stores that do.
+     */
+    @Builder.Default
+    private Protocol protocol = Protocol.HTTP1_1;
+
+    /**
+     * The concurrent streams per HTTP/2 connection.
+     */
+    @Builder.Default
+    private long http2MaxStreams = 100;
+
+    /**
+     * The initial HTTP/2 flow control window, in bytes.
+     */
+    @Builder.Default
+    private int http2InitialWindowSize = 1024 * 1024;
+
+    /**
+     * The throughput the CRT client sizes its connection pool for.
+     */
+    @Builder.Default
+    private double targetThroughputGbps = 10.0;
+
+    /**
+     * The part size the CRT client, and the client of the transfer manager, split large transfers into.
+     */
+    @Builder.Default
+    private long minimumPartSize = 8 * 1024 * 1024;
+
     public String getUriAsString() {
         String schema = secure ? "https" : "http";
         return schema + "://" + host + ":" + port;
     }
+
+    public enum Transport {
+        /**
+         * The SDK's Netty client with a connection pool configured from these properties.
+         */
+        NETTY,
+        /**
+         * The native AWS Common Runtime client, which parallelizes large transfers on its own.
+         */
+        CRT
+    }
 }
@@ -0,0 +1,38 @@
+package io.filemanager.filez.shared.config;
+
+import io.filemanager.filez.files.storage.KeyLayout;
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+
+
+@Data
+@Builder
+public class StorageProperties {
+    /**
+     * The bucket of files that have none recorded, and of all new files unless {@code buckets} is set.
+     */
+    private String defaultBucket;
+
+    /**
+     * How the keys of new files are built.
+     */
+    @Builder.Default
+    private KeyLayout keyLayout = KeyLayout.HASHED;
+
+    /**
+     * The buckets new files are spread over, one after the other. Empty for the default bucket only.
+     * All of them have to exist.
+     */
+    @Builder.Default
+    private List<String> buckets = List.of();
+
+    /**
+     * Files up to this size are kept in their database row instead of S3, so reading one takes a single query.
+     * 0 stores every file in S3.
+     */
+    @Builder.Default
+    private DataSize inlineThreshold = DataSize.ofKilobytes(32);
+}
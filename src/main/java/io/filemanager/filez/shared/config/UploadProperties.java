@@ -0,0 +1,64 @@
+package io.filemanager.filez.shared.config;
+
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+
+@Data
+@Builder
+public class UploadProperties {
+    /**
+     * How many parts of a single multipart upload may be in flight at once.
+     * A value of 1 keeps the uploader strictly sequential.
+     */
+    @Builder.Default
+    private int maxConcurrency = 1;
+
+    /**
+     * Upper bound for the bytes a single upload may hold on heap (in-flight parts plus the part being filled).
+     */
+    @Builder.Default
+    private DataSize maxMemoryPerUpload = DataSize.ofMegabytes(64);
+
+    /**
+     * How the chunks of a part are handed to the SDK.
+     */
+    @Builder.Default
+    private PartBody partBody = PartBody.COMPOSITE;
+
+    /**
+     * Which {@code S3Uploader} handles uploads.
+     */
+    @Builder.Default
+    private Engine engine = Engine.STREAMING;
+
+    /**
+     * How long a resumable upload session may take from its creation. Older sessions are aborted, together with
+     * their S3 multipart upload and their file.
+     */
+    @Builder.Default
+    private Duration sessionTtl = Duration.ofDays(7);
+
+    /**
+     * The pause between two sweeps for expired upload sessions.
+     */
+    @Builder.Default
+    private Duration sessionSweepInterval = Duration.ofHours(1);
+
+    public enum Engine {
+        /** Our own multipart upload: adaptive part sizes, parts sliced off the stream and sent as they fill up. */
+        STREAMING,
+        /** The SDK's transfer manager, which splits the stream into parts and uploads them in parallel. */
+        TRANSFER_MANAGER
+    }
+
+    public enum PartBody {
+        /** Copy all chunks of a part into one heap buffer before sending it. */
+        COPY,
+        /** Send the chunks as they are, as one request body with a known content length. */
+        COMPOSITE
+    }
+}
@@ -0,0 +1,21 @@
+package io.filemanager.filez.shared.dto;
+
+/**
+ * An inclusive byte range of a resource, as used by HTTP Range requests and S3 ranged GETs.
+ */
+public record ByteRange(long start, long end) {
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    /** The value for a Range header or {@code GetObjectRequest.range}, e.g. {@code bytes=0-499}. */
+    public String toRangeHeader() {
+        return "bytes=" + start + "-" + end;
+    }
+
+    /** The value for a Content-Range header, e.g. {@code bytes 0-499/1234}. */
+    public String toContentRange(long size) {
+        return "bytes " + start + "-" + end + "/" + size;
+    }
+}
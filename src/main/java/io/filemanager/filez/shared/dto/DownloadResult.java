@@ -3,5 +3,52 @@ package io.filemanager.filez.shared.dto;
 import reactor.core.publisher.Flux;
 
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.function.Function;
 
-public record DownloadResult(String fileName, String fileType, Flux<ByteBuffer> fileContent) { }
+/**
+ * @param size         the size of the file in bytes, or -1 if it is not known.
+ * @param eTag         a strong validator for the file content, used for If-Range.
+ * @param fileContent  the whole file.
+ * @param rangeReader  reads a single byte range of the file, or null if ranges are not supported.
+ * @param localFile    a local copy of the file that can be sent without copying it through user space, or null.
+ * @param localFileRelease lets go of the local file, see {@link #release()}. Null if there is nothing to release.
+ */
+public record DownloadResult(String fileName,
+                             String fileType,
+                             long size,
+                             String eTag,
+                             Instant lastModified,
+                             Flux<ByteBuffer> fileContent,
+                             Function<ByteRange, Flux<ByteBuffer>> rangeReader,
+                             Path localFile,
+                             Runnable localFileRelease) {
+
+    public DownloadResult(String fileName, String fileType, Flux<ByteBuffer> fileContent) {
+        this(fileName, fileType, -1, null, null, fileContent, null, null, null);
+    }
+
+    public DownloadResult(String fileName, String fileType, long size, String eTag, Instant lastModified,
+                          Flux<ByteBuffer> fileContent, Function<ByteRange, Flux<ByteBuffer>> rangeReader) {
+        this(fileName, fileType, size, eTag, lastModified, fileContent, rangeReader, null, null);
+    }
+
+    public DownloadResult(String fileName, String fileType, long size, String eTag, Instant lastModified,
+                          Flux<ByteBuffer> fileContent, Function<ByteRange, Flux<ByteBuffer>> rangeReader, Path localFile) {
+        this(fileName, fileType, size, eTag, lastModified, fileContent, rangeReader, localFile, null);
+    }
+
+    /**
+     * To be called once the response has been written (or has failed): until then the local file isn't deleted.
+     */
+    public void release() {
+        if (localFileRelease != null) {
+            localFileRelease.run();
+        }
+    }
+
+    public boolean supportsRanges() {
+        return size >= 0 && rangeReader != null;
+    }
+}
@@ -0,0 +1,74 @@
+package io.filemanager.filez.shared.util;
+
+/**
+ * Combines the CRC-32 of two consecutive byte sequences into the CRC-32 of their concatenation, without
+ * the bytes themselves (zlib's crc32_combine). This lets parts of one stream be checksummed separately, e.g. in parallel
+ * or in different requests.
+ */
+public final class Crc32Combine {
+
+    // The reflected CRC-32 polynomial
+    private static final long POLYNOMIAL = 0xEDB88320L;
+
+    private Crc32Combine() {
+    }
+
+    /**
+     * @param crc1   the CRC-32 of the first sequence.
+     * @param crc2   the CRC-32 of the second sequence.
+     * @param length the length of the second sequence in bytes.
+     * @return the CRC-32 of the first sequence followed by the second one.
+     */
+    public static long combine(long crc1, long crc2, long length) {
+        if (length <= 0) {
+            return crc1;
+        }
+        // Appending `length` zero bytes to the first sequence is a linear operation on its CRC, applied here
+        // by squaring the operator for a single zero bit (one zero byte = 8 zero bits, and so on).
+        long[] even = new long[32];
+        long[] odd = new long[32];
+
+        odd[0] = POLYNOMIAL;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        square(even, odd); // two zero bits
+        square(odd, even); // four zero bits
+
+        do {
+            square(even, odd);
+            if ((length & 1) != 0) {
+                crc1 = times(even, crc1);
+            }
+            length >>= 1;
+            if (length == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((length & 1) != 0) {
+                crc1 = times(odd, crc1);
+            }
+            length >>= 1;
+        } while (length != 0);
+
+        return crc1 ^ crc2;
+    }
+
+    private static long times(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+}
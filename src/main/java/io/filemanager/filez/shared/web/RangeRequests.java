@@ -0,0 +1,144 @@
+package io.filemanager.filez.shared.web;
+
+import io.filemanager.filez.shared.dto.ByteRange;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Helpers for answering HTTP Range requests (RFC 9110) with 206 Partial Content or 416 Range Not Satisfiable.
+ */
+public final class RangeRequests {
+
+    private RangeRequests() {
+    }
+
+    /**
+     * Resolves the Range header of a request against a resource of the given size.
+     *
+     * @return an empty Optional when the whole resource should be served (no or unparseable Range header, or an
+     * If-Range precondition that doesn't match), an empty list when none of the ranges can be satisfied or several
+     * ranges add up to more than the whole resource, and the satisfiable ranges otherwise.
+     */
+    public static Optional<List<ByteRange>> resolve(HttpHeaders requestHeaders, long size, String eTag, Instant lastModified) {
+        List<HttpRange> httpRanges;
+        try {
+            httpRanges = requestHeaders.getRange();
+        } catch (IllegalArgumentException ex) {
+            // An invalid Range header is ignored
+            return Optional.empty();
+        }
+        if (httpRanges.isEmpty() || !ifRangeMatches(requestHeaders.getFirst(HttpHeaders.IF_RANGE), eTag, lastModified)) {
+            return Optional.empty();
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(httpRanges.size());
+        long total = 0;
+        for (HttpRange httpRange : httpRanges) {
+            try {
+                long start = httpRange.getRangeStart(size);
+                long end = httpRange.getRangeEnd(size);
+                if (start < size && start <= end) {
+                    ranges.add(new ByteRange(start, end));
+                    total += end - start + 1;
+                }
+            } catch (IllegalArgumentException ex) {
+                // Unsatisfiable ranges are skipped, the request fails only if none is left
+            }
+        }
+        // Overlapping ranges like bytes=0-,0-,... would read the resource once per range, rejected as Spring's
+        // HttpRange.toResourceRegions does
+        if (ranges.size() > 1 && total > size) {
+            return Optional.of(List.of());
+        }
+        return Optional.of(ranges);
+    }
+
+    /**
+     * A 206 response for one or more satisfiable ranges. A single range is sent as is, several ranges are sent
+     * as a multipart/byteranges body.
+     *
+     * @param headers additional headers for the response, e.g. Content-Disposition.
+     */
+    public static ResponseEntity<Flux<ByteBuffer>> partialContent(List<ByteRange> ranges,
+                                                                  long size,
+                                                                  MediaType contentType,
+                                                                  HttpHeaders headers,
+                                                                  Function<ByteRange, Flux<ByteBuffer>> rangeReader) {
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .headers(headers)
+                    .header(HttpHeaders.CONTENT_RANGE, range.toContentRange(size))
+                    .contentLength(range.length())
+                    .contentType(contentType)
+                    .body(rangeReader.apply(range));
+        }
+
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        long contentLength = 0;
+        List<Flux<ByteBuffer>> bodyParts = new ArrayList<>(ranges.size() * 2 + 1);
+        for (ByteRange range : ranges) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + range.toContentRange(size) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            contentLength += partHeader.length + range.length();
+            bodyParts.add(Flux.just(ByteBuffer.wrap(partHeader)));
+            bodyParts.add(Flux.defer(() -> rangeReader.apply(range)));
+        }
+        byte[] closingBoundary = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closingBoundary.length;
+        bodyParts.add(Flux.just(ByteBuffer.wrap(closingBoundary)));
+
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .headers(headers)
+                .contentLength(contentLength)
+                .contentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary))
+                .body(Flux.concat(bodyParts));
+    }
+
+    public static <T> ResponseEntity<T> rangeNotSatisfiable(long size) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                .build();
+    }
+
+    /**
+     * If-Range holds either an entity tag or an HTTP date. The range is only honoured if the validator still matches,
+     * otherwise the client gets the whole, current resource.
+     */
+    static boolean ifRangeMatches(String ifRange, String eTag, Instant lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Weak entity tags never match (strong comparison)
+            return eTag != null && !ifRange.startsWith("W/") && ifRange.equals(eTag);
+        }
+        if (lastModified == null) {
+            return false;
+        }
+        try {
+            Instant date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return date.equals(lastModified.truncatedTo(ChronoUnit.SECONDS));
+        } catch (DateTimeParseException ex) {
+            return false;
+        }
+    }
+}
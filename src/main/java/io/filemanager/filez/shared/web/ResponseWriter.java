@@ -0,0 +1,62 @@
+package io.filemanager.filez.shared.web;
+
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes responses directly to the {@link ServerHttpResponse}, for handlers that need more than a
+ * {@link ResponseEntity} can express, e.g. sending a local file with zero-copy transfer.
+ */
+public final class ResponseWriter {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private ResponseWriter() {
+    }
+
+    /**
+     * Writes status, headers and body of the entity.
+     */
+    public static Mono<Void> write(ResponseEntity<Flux<ByteBuffer>> entity, ServerHttpResponse response) {
+        writeHead(entity, response);
+        Flux<ByteBuffer> body = entity.getBody();
+        if (body == null) {
+            return response.setComplete();
+        }
+        DataBufferFactory bufferFactory = response.bufferFactory();
+        return response.writeWith(body.map(bufferFactory::wrap));
+    }
+
+    /**
+     * Writes status and headers of the entity, followed by a region of a local file instead of its body.
+     * The file is handed to the server (sendfile) when it supports zero-copy transfer, and read in chunks otherwise.
+     */
+    public static Mono<Void> writeFile(ResponseEntity<?> entity, Path file, long position, long count, ServerHttpResponse response) {
+        writeHead(entity, response);
+        if (response instanceof ZeroCopyHttpOutputMessage zeroCopyResponse) {
+            return zeroCopyResponse.writeWith(file, position, count);
+        }
+        return response.writeWith(DataBufferUtils.takeUntilByteCount(
+                DataBufferUtils.readAsynchronousFileChannel(
+                        () -> AsynchronousFileChannel.open(file, StandardOpenOption.READ),
+                        position,
+                        response.bufferFactory(),
+                        READ_BUFFER_SIZE),
+                count));
+    }
+
+    private static void writeHead(ResponseEntity<?> entity, ServerHttpResponse response) {
+        response.setStatusCode(entity.getStatusCode());
+        response.getHeaders().putAll(entity.getHeaders());
+    }
+}
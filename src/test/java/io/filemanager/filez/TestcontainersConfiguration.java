@@ -70,7 +70,8 @@ public class TestcontainersConfiguration {
                                      @Value("${s3.region:eu-central-1}") String region,
                                      @Value("${s3.max-connections:100}") Integer maxConnections,
                                      @Value("${s3.connection-timeout:60}") Integer connectionTimeout,
-                                     @Value("${s3.socket-timeout:60}") Integer socketTimeout
+                                     @Value("${s3.socket-timeout:60}") Integer socketTimeout,
+                                     @Value("${s3.transport:netty}") S3Properties.Transport transport
 
     ) {
         String s3host = endpoint.isEmpty() ? s3mock.getHost() : endpoint;
@@ -85,6 +86,7 @@ public class TestcontainersConfiguration {
                 .maxConnections(maxConnections)
                 .connectionTimeout(connectionTimeout)
                 .socketTimeout(socketTimeout)
+                .transport(transport)
                 .build();
     }
 
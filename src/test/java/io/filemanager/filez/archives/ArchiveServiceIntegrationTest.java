@@ -1,19 +1,26 @@
 package io.filemanager.filez.archives;
 
 import io.filemanager.filez.files.File;
+import io.filemanager.filez.files.FileCriteria;
 import io.filemanager.filez.files.FileRepository;
+import io.filemanager.filez.files.pack.Pack;
+import io.filemanager.filez.files.pack.PackRepository;
+import io.filemanager.filez.files.storage.KeyLayout;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Mockito;
 import org.reactivestreams.Subscriber;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.server.ResponseStatusException;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
@@ -29,19 +36,30 @@ import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @Testcontainers
@@ -71,9 +89,19 @@ class ArchiveServiceIntegrationTest {
     @Autowired
     private FileRepository metadataRepository;
 
+    @Autowired
+    private PackRepository packRepository;
+
+    private final AtomicInteger openedObjects = new AtomicInteger();
+
+    @TempDir
+    Path directory;
+
     @BeforeEach
     void cleanup() {
         metadataRepository.deleteAll().block();
+        packRepository.deleteAll().block();
+        openedObjects.set(0);
     }
 
     private static class GetObjectRequestMatcher implements ArgumentMatcher<GetObjectRequest> {
@@ -90,8 +118,12 @@ class ArchiveServiceIntegrationTest {
     }
 
     private void mockS3GetObject(String key, String content) {
-        Flux<ByteBuffer> contentFlux = Flux.just(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
+        mockS3GetObject(key, Flux.just(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8))),
+                CompletableFuture::completedFuture);
+    }
 
+    private void mockS3GetObject(String key, Flux<ByteBuffer> contentFlux,
+                                 Function<ResponsePublisher<GetObjectResponse>, CompletableFuture<ResponsePublisher<GetObjectResponse>>> response) {
         @SuppressWarnings("unchecked")
         ResponsePublisher<GetObjectResponse> mockResponsePublisher = Mockito.mock(ResponsePublisher.class);
 
@@ -101,12 +133,13 @@ class ArchiveServiceIntegrationTest {
             return null;
         }).when(mockResponsePublisher).subscribe(any(Subscriber.class));
 
-        CompletableFuture<ResponsePublisher<GetObjectResponse>> future = CompletableFuture.completedFuture(mockResponsePublisher);
-
         when(s3AsyncClient.getObject(
                 Mockito.argThat(new GetObjectRequestMatcher(key)),
                 Mockito.<AsyncResponseTransformer<GetObjectResponse, ResponsePublisher<GetObjectResponse>>>any()
-        )).thenReturn(future);
+        )).thenAnswer(invocation -> {
+            openedObjects.incrementAndGet();
+            return response.apply(mockResponsePublisher);
+        });
     }
 
     @Test
@@ -157,6 +190,450 @@ class ArchiveServiceIntegrationTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("createZipStreamFromIds should read files from their recorded bucket and key layout")
+    void createZipStream_readsRecordedLocation() {
+        File hashed = new File(null, "sharded.txt", "text/plain", 7L);
+        hashed.setKeyLayout(KeyLayout.HASHED);
+        hashed.setBucket("shard-2");
+        hashed = metadataRepository.save(hashed).block();
+        Assertions.assertNotNull(hashed);
+        String hashedKey = KeyLayout.HASHED.key(hashed.getId(), hashed.getFileName());
+        mockS3GetObject(hashedKey, "sharded");
+
+        byte[] zipBytes = aggregateBuffers(archiveService.createZipStreamFromIds(List.of(hashed.getId())).collectList().block());
+
+        Map<String, String> zippedContents = new HashMap<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                zippedContents.put(entry.getName(), new String(zis.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            fail("Failed to read zip stream", e);
+        }
+        // The entry keeps its name, whatever the key is
+        assertThat(zippedContents).containsExactly(Map.entry(hashed.getId() + "-sharded.txt", "sharded"));
+        verify(s3AsyncClient).getObject(
+                Mockito.<GetObjectRequest>argThat(request -> request.bucket().equals("shard-2") && request.key().equals(hashedKey)),
+                Mockito.<AsyncResponseTransformer<GetObjectResponse, ResponsePublisher<GetObjectResponse>>>any());
+    }
+
+    @Test
+    @DisplayName("createZipStreamMatching should archive the files matching the criteria in ID order")
+    void createZipStreamMatching_success() {
+        // --- Arrange ---
+        File file1 = metadataRepository.save(new File(null, "export-b.txt", "text/plain", 1L)).block();
+        File other = metadataRepository.save(new File(null, "other.txt", "text/plain", 1L)).block();
+        File file2 = metadataRepository.save(new File(null, "export-a.txt", "text/plain", 1L)).block();
+        Assertions.assertNotNull(file1);
+        Assertions.assertNotNull(other);
+        Assertions.assertNotNull(file2);
+        String key1 = file1.getId() + "-" + file1.getFileName();
+        String key2 = file2.getId() + "-" + file2.getFileName();
+        mockS3GetObject(key1, "b");
+        mockS3GetObject(key2, "a");
+
+        // --- Act ---
+        Mono<byte[]> aggregatedBytesMono = archiveService.createZipStreamMatching(
+                        new FileCriteria(null, null, null, null, "export-"), ZipOptions.DEFAULT)
+                .collectList()
+                .map(this::aggregateBuffers);
+
+        // --- Assert ---
+        StepVerifier.create(aggregatedBytesMono)
+                .assertNext(zipBytes -> {
+                    List<String> names = new ArrayList<>();
+                    try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+                        ZipEntry entry;
+                        while ((entry = zis.getNextEntry()) != null) {
+                            names.add(entry.getName());
+                        }
+                    } catch (IOException e) {
+                        fail("Failed to read zip stream", e);
+                    }
+                    assertThat(names).containsExactly(key1, key2);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("createZipStreamFromIds should open the next entries while the current one is still streaming")
+    void createZipStream_prefetchesNextEntries() {
+        // --- Arrange ---
+        // The first file is too big to be buffered, so its GET is only sent when its entry is compressed
+        File file1 = metadataRepository.save(new File(null, "big.bin", "application/octet-stream", 1024L * 1024 * 1024)).block();
+        File file2 = metadataRepository.save(new File(null, "small-1.txt", "text/plain", 5L)).block();
+        File file3 = metadataRepository.save(new File(null, "small-2.txt", "text/plain", 5L)).block();
+        Assertions.assertNotNull(file1);
+        Assertions.assertNotNull(file2);
+        Assertions.assertNotNull(file3);
+        String key1 = file1.getId() + "-" + file1.getFileName();
+        String key2 = file2.getId() + "-" + file2.getFileName();
+        String key3 = file3.getId() + "-" + file3.getFileName();
+
+        // The content of the first file records how many objects had been opened when it was read
+        mockS3GetObject(key1,
+                Flux.defer(() -> Flux.just(ByteBuffer.wrap(("opened: " + openedObjects.get()).getBytes(StandardCharsets.UTF_8)))),
+                publisher -> CompletableFuture.supplyAsync(() -> publisher, CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS)));
+        mockS3GetObject(key2, "two");
+        mockS3GetObject(key3, "three");
+
+        // --- Act ---
+        Mono<byte[]> aggregatedBytesMono = archiveService.createZipStreamFromIds(List.of(file1.getId(), file2.getId(), file3.getId()))
+                .collectList()
+                .map(this::aggregateBuffers);
+
+        // --- Assert ---
+        StepVerifier.create(aggregatedBytesMono)
+                .assertNext(zipBytes -> {
+                    List<String> names = new ArrayList<>();
+                    Map<String, String> zippedContents = new HashMap<>();
+                    try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+                        ZipEntry entry;
+                        while ((entry = zis.getNextEntry()) != null) {
+                            names.add(entry.getName());
+                            zippedContents.put(entry.getName(), new String(zis.readAllBytes(), StandardCharsets.UTF_8));
+                        }
+                    } catch (IOException e) {
+                        fail("Failed to read zip stream", e);
+                    }
+                    assertThat(names).containsExactly(key1, key2, key3);
+                    assertThat(zippedContents).containsEntry(key1, "opened: 3");
+                    assertThat(zippedContents).containsEntry(key3, "three");
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("createZipStreamFromIds should not send the GET of an entry too big to be buffered before its turn")
+    void createZipStream_opensBigEntriesWhenWritten() {
+        // --- Arrange ---
+        File file1 = metadataRepository.save(new File(null, "big-1.bin", "application/octet-stream", 1024L * 1024 * 1024)).block();
+        File file2 = metadataRepository.save(new File(null, "big-2.bin", "application/octet-stream", 1024L * 1024 * 1024)).block();
+        Assertions.assertNotNull(file1);
+        Assertions.assertNotNull(file2);
+        String key1 = file1.getId() + "-" + file1.getFileName();
+        String key2 = file2.getId() + "-" + file2.getFileName();
+
+        // The content of each file records how many objects had been opened when it was read
+        mockS3GetObject(key1,
+                Flux.defer(() -> Flux.just(ByteBuffer.wrap(("opened: " + openedObjects.get()).getBytes(StandardCharsets.UTF_8)))),
+                CompletableFuture::completedFuture);
+        mockS3GetObject(key2,
+                Flux.defer(() -> Flux.just(ByteBuffer.wrap(("opened: " + openedObjects.get()).getBytes(StandardCharsets.UTF_8)))),
+                CompletableFuture::completedFuture);
+
+        // --- Act ---
+        Mono<byte[]> aggregatedBytesMono = archiveService.createZipStreamFromIds(List.of(file1.getId(), file2.getId()))
+                .collectList()
+                .map(this::aggregateBuffers);
+
+        // --- Assert ---
+        StepVerifier.create(aggregatedBytesMono)
+                .assertNext(zipBytes -> {
+                    Map<String, String> zippedContents = new HashMap<>();
+                    try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+                        ZipEntry entry;
+                        while ((entry = zis.getNextEntry()) != null) {
+                            zippedContents.put(entry.getName(), new String(zis.readAllBytes(), StandardCharsets.UTF_8));
+                        }
+                    } catch (IOException e) {
+                        fail("Failed to read zip stream", e);
+                    }
+                    assertThat(zippedContents).containsEntry(key1, "opened: 1");
+                    assertThat(zippedContents).containsEntry(key2, "opened: 2");
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("createZipStreamFromIds should store already-compressed files and deflate the others")
+    void createZipStream_storesCompressedContentTypes() {
+        // --- Arrange ---
+        byte[] image = "not really a png".getBytes(StandardCharsets.UTF_8);
+        CRC32 imageCrc = new CRC32();
+        imageCrc.update(image);
+        File png = new File(null, "picture.png", "image/png", image.length);
+        png.setCrc32(imageCrc.getValue());
+        png = metadataRepository.save(png).block();
+        // Uploaded before CRCs were recorded, so it can only be deflated
+        File legacyPng = metadataRepository.save(new File(null, "old.png", "image/png", image.length)).block();
+        File text = metadataRepository.save(new File(null, "notes.txt", "text/plain", 5L)).block();
+        Assertions.assertNotNull(png);
+        Assertions.assertNotNull(legacyPng);
+        Assertions.assertNotNull(text);
+        String pngKey = png.getId() + "-" + png.getFileName();
+        String legacyKey = legacyPng.getId() + "-" + legacyPng.getFileName();
+        String textKey = text.getId() + "-" + text.getFileName();
+
+        mockS3GetObject(pngKey, Flux.just(ByteBuffer.wrap(image)), CompletableFuture::completedFuture);
+        mockS3GetObject(legacyKey, Flux.just(ByteBuffer.wrap(image)), CompletableFuture::completedFuture);
+        mockS3GetObject(textKey, "notes");
+
+        // --- Act ---
+        Mono<byte[]> aggregatedBytesMono = archiveService.createZipStreamFromIds(List.of(png.getId(), legacyPng.getId(), text.getId()))
+                .collectList()
+                .map(this::aggregateBuffers);
+
+        // --- Assert ---
+        StepVerifier.create(aggregatedBytesMono)
+                .assertNext(zipBytes -> {
+                    Map<String, Integer> methods = new HashMap<>();
+                    Map<String, String> zippedContents = new HashMap<>();
+                    try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+                        ZipEntry entry;
+                        while ((entry = zis.getNextEntry()) != null) {
+                            methods.put(entry.getName(), entry.getMethod());
+                            zippedContents.put(entry.getName(), new String(zis.readAllBytes(), StandardCharsets.UTF_8));
+                        }
+                    } catch (IOException e) {
+                        fail("Failed to read zip stream", e);
+                    }
+                    assertThat(methods).containsEntry(pngKey, ZipEntry.STORED);
+                    assertThat(methods).containsEntry(legacyKey, ZipEntry.DEFLATED);
+                    assertThat(methods).containsEntry(textKey, ZipEntry.DEFLATED);
+                    assertThat(zippedContents).containsEntry(pngKey, "not really a png");
+                    assertThat(zippedContents).containsEntry(textKey, "notes");
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("createZipStreamFromIds should fail when a stored entry does not match its recorded CRC-32")
+    void createZipStream_failsOnCrcMismatch() {
+        // --- Arrange ---
+        File png = new File(null, "picture.png", "image/png", 5L);
+        png.setCrc32(42L);
+        png = metadataRepository.save(png).block();
+        Assertions.assertNotNull(png);
+        mockS3GetObject(png.getId() + "-" + png.getFileName(), "bytes");
+
+        // --- Act & Assert ---
+        StepVerifier.create(archiveService.createZipStreamFromIds(List.of(png.getId()), ZipOptions.of(CompressionMethod.STORED)))
+                .thenConsumeWhile(buffer -> true)
+                .verifyError(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("createZipStreamFromIds should deflate with the requested level and strategy")
+    void createZipStream_withCompressionOptions() {
+        // --- Arrange ---
+        String content = "compressible ".repeat(1000);
+        File fast = metadataRepository.save(new File(null, "fast.txt", "text/plain", content.length())).block();
+        File uncompressed = metadataRepository.save(new File(null, "level0.txt", "text/plain", content.length())).block();
+        Assertions.assertNotNull(fast);
+        Assertions.assertNotNull(uncompressed);
+        String fastKey = fast.getId() + "-" + fast.getFileName();
+        String uncompressedKey = uncompressed.getId() + "-" + uncompressed.getFileName();
+        mockS3GetObject(fastKey, content);
+        mockS3GetObject(uncompressedKey, content);
+
+        // --- Act ---
+        // The second archive reuses the pooled deflater of the first one with other settings
+        byte[] huffmanZip = aggregateBuffers(archiveService.createZipStreamFromIds(List.of(fast.getId()),
+                new ZipOptions(CompressionMethod.DEFLATED, 1, DeflateStrategy.HUFFMAN_ONLY)).collectList().block());
+        byte[] storedZip = aggregateBuffers(archiveService.createZipStreamFromIds(List.of(uncompressed.getId()),
+                new ZipOptions(CompressionMethod.DEFLATED, 0, DeflateStrategy.DEFAULT)).collectList().block());
+
+        // --- Assert ---
+        try (ZipInputStream huffman = new ZipInputStream(new ByteArrayInputStream(huffmanZip));
+             ZipInputStream stored = new ZipInputStream(new ByteArrayInputStream(storedZip))) {
+            ZipEntry huffmanEntry = huffman.getNextEntry();
+            assertThat(new String(huffman.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(content);
+            ZipEntry storedEntry = stored.getNextEntry();
+            assertThat(new String(stored.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(content);
+
+            // Huffman coding alone can't exploit the repetitions, level 0 doesn't compress at all
+            assertThat(huffmanEntry.getCompressedSize()).isLessThan(content.length()).isGreaterThan(content.length() / 4);
+            assertThat(storedEntry.getMethod()).isEqualTo(ZipEntry.DEFLATED);
+            assertThat(storedEntry.getCompressedSize()).isGreaterThan(content.length());
+        } catch (IOException e) {
+            fail("Failed to read zip stream", e);
+        }
+    }
+
+    @Test
+    @DisplayName("createStoredArchive should lay out the files so the archive has the announced size")
+    void createStoredArchive_success() {
+        // --- Arrange ---
+        byte[] content = "stored content".getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        File file = new File(null, "stored.bin", "application/octet-stream", content.length);
+        file.setCrc32(crc.getValue());
+        file = metadataRepository.save(file).block();
+        Assertions.assertNotNull(file);
+        String key = file.getId() + "-" + file.getFileName();
+        mockS3GetObject(key, Flux.just(ByteBuffer.wrap(content)), CompletableFuture::completedFuture);
+
+        // --- Act & Assert ---
+        StepVerifier.create(archiveService.createStoredArchive(List.of(file.getId()))
+                        .flatMap(archive -> archive.read().collectList().map(this::aggregateBuffers)
+                                .map(zipBytes -> {
+                                    assertThat(zipBytes).hasSize((int) archive.size());
+                                    return zipBytes;
+                                })))
+                .assertNext(zipBytes -> {
+                    try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+                        ZipEntry entry = zis.getNextEntry();
+                        assertThat(entry).isNotNull();
+                        assertThat(entry.getName()).isEqualTo(key);
+                        assertThat(zis.readAllBytes()).isEqualTo(content);
+                    } catch (IOException e) {
+                        fail("Failed to read zip stream", e);
+                    }
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("archives read inline files from their row without touching S3")
+    void archives_readInlineFilesWithoutS3() {
+        byte[] content = "inline content".getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        File file = new File(null, "inline.txt", "text/plain", content.length);
+        file.setCrc32(crc.getValue());
+        file.setContent(content);
+        file = metadataRepository.save(file).block();
+        Assertions.assertNotNull(file);
+        String name = file.getId() + "-" + file.getFileName();
+
+        byte[] streamed = aggregateBuffers(archiveService.createZipStreamFromIds(List.of(file.getId())).collectList().block());
+        byte[] stored = archiveService.createStoredArchive(List.of(file.getId()))
+                .flatMap(archive -> archive.read().collectList().map(this::aggregateBuffers))
+                .block();
+
+        for (byte[] zipBytes : List.of(streamed, stored)) {
+            try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+                ZipEntry entry = zis.getNextEntry();
+                assertThat(entry).isNotNull();
+                assertThat(entry.getName()).isEqualTo(name);
+                assertThat(zis.readAllBytes()).isEqualTo(content);
+            } catch (IOException e) {
+                fail("Failed to read zip stream", e);
+            }
+        }
+        assertThat(openedObjects).hasValue(0);
+        verify(s3AsyncClient, Mockito.never()).getObject(any(GetObjectRequest.class),
+                Mockito.<AsyncResponseTransformer<GetObjectResponse, ResponsePublisher<GetObjectResponse>>>any());
+    }
+
+    @Test
+    @DisplayName("archives should read files next to each other in a pack with one ranged GET")
+    void archives_readPackedFilesWithOneRange() {
+        Pack pack = new Pack();
+        pack.setBucket("my-test-bucket");
+        pack.setSize(15);
+        pack = packRepository.save(pack).block();
+        Assertions.assertNotNull(pack);
+        // The bytes in the middle belong to a deleted file
+        File alpha = packed(pack, "alpha.txt", "alpha", 0);
+        File bravo = packed(pack, "bravo.txt", "bravo", 10);
+        String packKey = "packs/" + KeyLayout.HASHED.key(pack.getId(), "pack");
+        mockS3GetObject(packKey, "alphagone-bravo");
+
+        byte[] zipBytes = aggregateBuffers(archiveService.createZipStreamFromIds(List.of(alpha.getId(), bravo.getId())).collectList().block());
+
+        Map<String, String> zippedContents = new HashMap<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                zippedContents.put(entry.getName(), new String(zis.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            fail("Failed to read zip stream", e);
+        }
+        assertThat(zippedContents).containsOnly(
+                Map.entry(alpha.getId() + "-alpha.txt", "alpha"),
+                Map.entry(bravo.getId() + "-bravo.txt", "bravo"));
+        assertThat(openedObjects).hasValue(1);
+        verify(s3AsyncClient).getObject(
+                Mockito.<GetObjectRequest>argThat(request -> request.key().equals(packKey) && "bytes=0-14".equals(request.range())),
+                Mockito.<AsyncResponseTransformer<GetObjectResponse, ResponsePublisher<GetObjectResponse>>>any());
+    }
+
+    private File packed(Pack pack, String fileName, String content, long offset) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        File file = new File(null, fileName, "text/plain", bytes.length);
+        file.setCrc32(crc.getValue());
+        file.setBucket(pack.getBucket());
+        file.setPackId(pack.getId());
+        file.setPackOffset(offset);
+        File saved = metadataRepository.save(file).block();
+        Assertions.assertNotNull(saved);
+        return saved;
+    }
+
+    @Test
+    @DisplayName("createStoredArchive should fail with 409 for files without a recorded CRC-32")
+    void createStoredArchive_withoutCrc_fails() {
+        File file = metadataRepository.save(new File(null, "legacy.bin", "application/octet-stream", 5L)).block();
+        Assertions.assertNotNull(file);
+
+        StepVerifier.create(archiveService.createStoredArchive(List.of(file.getId())))
+                .expectErrorSatisfies(error -> assertThat(error)
+                        .isInstanceOfSatisfying(ResponseStatusException.class,
+                                ex -> assertThat(ex.getStatusCode()).isEqualTo(HttpStatus.CONFLICT)))
+                .verify();
+    }
+
+    @Test
+    @DisplayName("createZipStreamFromIds should write ZIP64 records for entries and offsets beyond 4 GB")
+    void createZipStream_zip64() throws IOException {
+        // --- Arrange ---
+        // Zeros from a synthetic source, so the archive takes neither memory nor disk space
+        long hugeSize = 4L * 1024 * 1024 * 1024 + 512 * 1024 * 1024;
+        ByteBuffer zeros = ByteBuffer.allocate(1024 * 1024);
+        Flux<ByteBuffer> hugeContent = Flux.range(0, (int) (hugeSize / zeros.capacity()))
+                .map(i -> zeros.asReadOnlyBuffer());
+        CRC32 hugeCrc = new CRC32();
+        hugeContent.doOnNext(hugeCrc::update).blockLast();
+
+        File huge = new File(null, "huge.zip", "application/zip", hugeSize);
+        huge.setCrc32(hugeCrc.getValue());
+        huge = metadataRepository.save(huge).block();
+        File text = metadataRepository.save(new File(null, "after.txt", "text/plain", 10L)).block();
+        Assertions.assertNotNull(huge);
+        Assertions.assertNotNull(text);
+        String hugeKey = huge.getId() + "-" + huge.getFileName();
+        String textKey = text.getId() + "-" + text.getFileName();
+        mockS3GetObject(hugeKey, hugeContent, CompletableFuture::completedFuture);
+        mockS3GetObject(textKey, "after 4 GB");
+
+        // --- Act ---
+        // Only the records are written, the zeros are left as holes
+        Path file = directory.resolve("huge.zip");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+            long[] position = {0};
+            archiveService.createZipStreamFromIds(List.of(huge.getId(), text.getId()))
+                    .doOnNext(buffer -> {
+                        try {
+                            if (!buffer.isReadOnly()) {
+                                channel.write(buffer.duplicate(), position[0]);
+                            }
+                            position[0] += buffer.remaining();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .blockLast();
+        }
+
+        // --- Assert ---
+        try (ZipFile zipFile = new ZipFile(file.toFile())) {
+            assertThat(zipFile.size()).isEqualTo(2);
+            assertThat(zipFile.getEntry(hugeKey).getMethod()).isEqualTo(ZipEntry.STORED);
+            assertThat(zipFile.getEntry(hugeKey).getSize()).isEqualTo(hugeSize);
+            try (var in = zipFile.getInputStream(zipFile.getEntry(textKey))) {
+                assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("after 4 GB");
+            }
+        }
+    }
+
     private byte[] aggregateBuffers(List<ByteBuffer> buffers) {
         int totalSize = buffers.stream().mapToInt(ByteBuffer::remaining).sum();
         ByteArrayOutputStream baos = new ByteArrayOutputStream(totalSize);
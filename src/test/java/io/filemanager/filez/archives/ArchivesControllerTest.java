@@ -1,21 +1,30 @@
 package io.filemanager.filez.archives;
 
+import io.filemanager.filez.files.FileCriteria;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(ArchivesController.class)
@@ -43,7 +52,7 @@ class ArchivesControllerTest {
 
         // 3. Mock the service call. When createZipStreamFromIds is called with any list,
         //    return our predefined mock stream.
-        when(archiveService.createZipStreamFromIds(any(List.class))).thenReturn(mockStream);
+        when(archiveService.createZipStreamFromIds(any(List.class), any())).thenReturn(mockStream);
 
         // --- Act & Assert ---
         // Use the WebTestClient to perform the POST request.
@@ -65,4 +74,120 @@ class ArchivesControllerTest {
                 .expectHeader().valueEquals(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + customZipName + "\"")
                 .expectBody(byte[].class).isEqualTo(fakeBytes);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("POST /download-zip should return 503 when no archive slot is free")
+    void downloadFilesAsZip_whenSaturated_returns503() {
+        when(archiveService.createZipStreamFromIds(any(List.class), any()))
+                .thenReturn(Flux.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many archives are being built")));
+
+        webTestClient.post()
+                .uri("/api/archives/download-zip")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(List.of(1L))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    @DisplayName("POST /download-zip should pass the compression level and strategy to the service")
+    void downloadFilesAsZip_withCompressionOptions() {
+        byte[] fakeBytes = "this-is-fake-zip-data".getBytes(StandardCharsets.UTF_8);
+        ZipOptions options = new ZipOptions(CompressionMethod.DEFLATED, 1, DeflateStrategy.HUFFMAN_ONLY);
+        when(archiveService.createZipStreamFromIds(any(List.class), eq(options)))
+                .thenReturn(Flux.just(ByteBuffer.wrap(fakeBytes)));
+
+        webTestClient.post()
+                .uri("/api/archives/download-zip?method=DEFLATED&level=1&strategy=HUFFMAN_ONLY")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(List.of(1L))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(byte[].class).isEqualTo(fakeBytes);
+    }
+
+    @Test
+    @DisplayName("POST /download-zip should return 400 for a compression level outside of 0-9")
+    void downloadFilesAsZip_withInvalidLevel_returns400() {
+        webTestClient.post()
+                .uri("/api/archives/download-zip?level=10")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(List.of(1L))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    private static StoredZipArchive storedArchive(String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ZipEntryInfo entry = new ZipEntryInfo("1-a.txt", crc.getValue(), bytes.length, bytes.length, ZipEntry.STORED, Instant.parse("2025-06-01T12:00:00Z"));
+        return new StoredZipArchive(List.of(entry), (key, range, size) ->
+                Flux.just(ByteBuffer.wrap(bytes, (int) range.start(), (int) range.length())));
+    }
+
+    @Test
+    @DisplayName("GET /zip should send the stored archive with an exact Content-Length and an ETag")
+    void downloadStoredZip_success() {
+        StoredZipArchive archive = storedArchive("some content");
+        when(archiveService.createStoredArchive(any(List.class))).thenReturn(Mono.just(archive));
+
+        byte[] body = webTestClient.get()
+                .uri("/api/archives/zip?ids=1&zipName=export.zip")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentLength(archive.size())
+                .expectHeader().valueEquals(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .expectHeader().valueEquals(HttpHeaders.ETAG, archive.eTag())
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"export.zip\"")
+                .expectBody(byte[].class).returnResult().getResponseBody();
+
+        assertThat(body).hasSize((int) archive.size());
+    }
+
+    @Test
+    @DisplayName("GET /zip with a Range header should resume the download with 206 Partial Content")
+    void downloadStoredZip_withRange_returnsPartialContent() {
+        StoredZipArchive archive = storedArchive("some content");
+        when(archiveService.createStoredArchive(any(List.class))).thenReturn(Mono.just(archive));
+        long start = archive.size() - 10;
+
+        webTestClient.get()
+                .uri("/api/archives/zip?ids=1")
+                .header(HttpHeaders.RANGE, "bytes=" + start + "-")
+                .header(HttpHeaders.IF_RANGE, archive.eTag())
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (archive.size() - 1) + "/" + archive.size())
+                .expectHeader().contentLength(10);
+    }
+
+    @Test
+    @DisplayName("GET /zip should return 409 when a file has no recorded CRC-32")
+    void downloadStoredZip_withoutCrc_returns409() {
+        when(archiveService.createStoredArchive(any(List.class)))
+                .thenReturn(Mono.error(new ResponseStatusException(HttpStatus.CONFLICT, "File 1 has no recorded CRC-32")));
+
+        webTestClient.get()
+                .uri("/api/archives/zip?ids=1")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    @DisplayName("GET /query should pass the criteria to the service and stream the zip")
+    void downloadMatchingFilesAsZip_success() {
+        byte[] fakeBytes = "this-is-fake-zip-data".getBytes(StandardCharsets.UTF_8);
+        FileCriteria criteria = new FileCriteria(10L, null, Instant.parse("2025-09-01T00:00:00Z"), Instant.parse("2025-10-01T00:00:00Z"), "report");
+        when(archiveService.createZipStreamMatching(eq(criteria), eq(ZipOptions.DEFAULT)))
+                .thenReturn(Flux.just(ByteBuffer.wrap(fakeBytes)));
+
+        webTestClient.get()
+                .uri("/api/archives/query?fromId=10&createdFrom=2025-09-01T00:00:00Z&createdTo=2025-10-01T00:00:00Z&namePrefix=report&zipName=september.zip")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"september.zip\"")
+                .expectBody(byte[].class).isEqualTo(fakeBytes);
+    }
+}
@@ -0,0 +1,28 @@
+package io.filemanager.filez.archives;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompressionMethodTest {
+
+    @Test
+    @DisplayName("AUTO should store compressed media and archives, and deflate everything else")
+    void auto_storesCompressedContentTypes() {
+        assertThat(CompressionMethod.AUTO.stores("image/jpeg")).isTrue();
+        assertThat(CompressionMethod.AUTO.stores("video/mp4")).isTrue();
+        assertThat(CompressionMethod.AUTO.stores("Application/ZIP; charset=binary")).isTrue();
+
+        assertThat(CompressionMethod.AUTO.stores("text/plain")).isFalse();
+        assertThat(CompressionMethod.AUTO.stores("image/bmp")).isFalse();
+        assertThat(CompressionMethod.AUTO.stores(null)).isFalse();
+    }
+
+    @Test
+    @DisplayName("STORED and DEFLATED should ignore the content type")
+    void explicitMethods_ignoreContentType() {
+        assertThat(CompressionMethod.STORED.stores("text/plain")).isTrue();
+        assertThat(CompressionMethod.DEFLATED.stores("image/jpeg")).isFalse();
+    }
+}
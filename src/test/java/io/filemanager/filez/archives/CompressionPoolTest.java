@@ -0,0 +1,94 @@
+package io.filemanager.filez.archives;
+
+import io.filemanager.filez.shared.config.ArchiveProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompressionPoolTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CompressionPool compressionPool = new CompressionPool(ArchiveProperties.builder()
+            .compressionThreads(2)
+            .maxConcurrentBuilds(1)
+            .maxQueuedBuilds(1)
+            .queueTimeout(Duration.ofSeconds(5))
+            .build(), meterRegistry);
+
+    @AfterEach
+    void shutdown() {
+        compressionPool.shutdown();
+    }
+
+    private static boolean isServiceUnavailable(Throwable ex) {
+        return ex instanceof ResponseStatusException statusException
+                && statusException.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE;
+    }
+
+    @Test
+    @DisplayName("admit should queue builds beyond the limit and reject them once the queue is full")
+    void admit_queuesAndRejects() {
+        Sinks.Empty<Void> firstBuildDone = Sinks.empty();
+        List<String> results = new CopyOnWriteArrayList<>();
+
+        compressionPool.admit(() -> firstBuildDone.asMono().thenMany(Flux.just("first"))).subscribe(results::add);
+        compressionPool.admit(() -> Flux.just("second")).subscribe(results::add);
+
+        assertThat(compressionPool.activeBuilds()).isEqualTo(1);
+        assertThat(compressionPool.queuedBuilds()).isEqualTo(1);
+        StepVerifier.create(compressionPool.admit(() -> Flux.just("third")))
+                .verifyErrorMatches(CompressionPoolTest::isServiceUnavailable);
+        assertThat(results).isEmpty();
+
+        // The slot of the first build goes to the queued one
+        firstBuildDone.tryEmitEmpty();
+
+        assertThat(results).containsExactly("first", "second");
+        assertThat(compressionPool.activeBuilds()).isZero();
+        assertThat(compressionPool.queuedBuilds()).isZero();
+        assertThat(meterRegistry.get("archive.builds.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("admit should reject a build that waits longer than the queue timeout")
+    void admit_timesOut() {
+        CompressionPool pool = new CompressionPool(ArchiveProperties.builder()
+                .compressionThreads(1)
+                .maxConcurrentBuilds(1)
+                .queueTimeout(Duration.ofMillis(100))
+                .build(), meterRegistry);
+        try {
+            StepVerifier.create(pool.admit(Flux::never))
+                    .then(() -> StepVerifier.create(pool.admit(() -> Flux.just("late")))
+                            .verifyErrorMatches(CompressionPoolTest::isServiceUnavailable))
+                    .then(() -> assertThat(pool.queuedBuilds()).isZero())
+                    .thenCancel()
+                    .verify();
+            assertThat(pool.activeBuilds()).isZero();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("the scheduler should run work on the compression threads")
+    void scheduler_usesCompressionThreads() {
+        StepVerifier.create(Mono.fromCallable(() -> Thread.currentThread().getName())
+                        .subscribeOn(compressionPool.scheduler()))
+                .assertNext(threadName -> assertThat(threadName).startsWith("compression-"))
+                .verifyComplete();
+    }
+}
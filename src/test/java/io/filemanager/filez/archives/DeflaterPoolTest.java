@@ -0,0 +1,79 @@
+package io.filemanager.filez.archives;
+
+import io.filemanager.filez.shared.config.ArchiveProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeflaterPoolTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DeflaterPool deflaterPool(int size) {
+        return new DeflaterPool(ArchiveProperties.builder().deflaterPoolSize(size).build(), meterRegistry);
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] input) {
+        deflater.setInput(input);
+        deflater.finish();
+        byte[] output = new byte[input.length + 64];
+        int length = deflater.deflate(output);
+        assertThat(deflater.finished()).isTrue();
+        return Arrays.copyOf(output, length);
+    }
+
+    @Test
+    @DisplayName("a released deflater should be reused with the settings of the next stream")
+    void release_reusesDeflater() {
+        DeflaterPool pool = deflaterPool(2);
+        byte[] input = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+        Deflater first = pool.acquire(Deflater.BEST_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+        deflate(first, input);
+        pool.release(first);
+        Deflater second = pool.acquire(Deflater.NO_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+
+        assertThat(second).isSameAs(first);
+        Deflater fresh = new Deflater(Deflater.NO_COMPRESSION, true);
+        try {
+            assertThat(deflate(second, input)).isEqualTo(deflate(fresh, input));
+        } finally {
+            fresh.end();
+        }
+        assertThat(meterRegistry.get("archive.deflaters.created").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("release should end deflaters beyond the pool size")
+    void release_isBounded() {
+        DeflaterPool pool = deflaterPool(1);
+        Deflater first = pool.acquire(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+        Deflater second = pool.acquire(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+
+        pool.release(first);
+        pool.release(second);
+
+        assertThat(pool.idleCount()).isEqualTo(1);
+        assertThat(meterRegistry.get("archive.deflaters.idle").gauge().value()).isEqualTo(1);
+        assertThatThrownBy(() -> deflate(second, new byte[10])).isInstanceOf(NullPointerException.class);
+    }
+
+    @Test
+    @DisplayName("discard should end the deflater instead of returning it")
+    void discard_endsDeflater() {
+        DeflaterPool pool = deflaterPool(2);
+        Deflater deflater = pool.acquire(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+
+        pool.discard(deflater);
+
+        assertThat(pool.idleCount()).isZero();
+        assertThatThrownBy(() -> deflate(deflater, new byte[10])).isInstanceOf(NullPointerException.class);
+    }
+}
@@ -0,0 +1,142 @@
+package io.filemanager.filez.archives;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntryDeflaterTest {
+
+    private static final int FRAME_SIZE = 4096;
+
+    private static byte[] sampleData(int size) {
+        Random random = new Random(42);
+        String[] words = {"frame", "entry", "deflate", "header", "descriptor", "\n"};
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        while (out.size() < size) {
+            out.writeBytes(words[random.nextInt(words.length)].getBytes(StandardCharsets.UTF_8));
+        }
+        return Arrays.copyOf(out.toByteArray(), size);
+    }
+
+    private static byte[] toBytes(List<ByteBuffer> frames) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ByteBuffer frame : frames) {
+            byte[] bytes = new byte[frame.remaining()];
+            frame.duplicate().get(bytes);
+            out.writeBytes(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] compressed, int expectedSize) throws Exception {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            byte[] result = new byte[expectedSize + 1];
+            int length = inflater.inflate(result);
+            assertThat(inflater.finished()).isTrue();
+            return Arrays.copyOf(result, length);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Test
+    @DisplayName("header, compressed content and trailer should be coalesced into full frames")
+    void deflate_coalescesFrames() throws Exception {
+        byte[] data = sampleData(500_000);
+        byte[] header = "HEADER".getBytes(StandardCharsets.UTF_8);
+        byte[] trailer = "TRAILER".getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            EntryDeflater entryDeflater = new EntryDeflater(deflater, new byte[FRAME_SIZE]);
+
+            List<ByteBuffer> frames = new ArrayList<>(entryDeflater.write(ByteBuffer.wrap(header)));
+            for (int offset = 0; offset < data.length; offset += 1000) {
+                frames.addAll(entryDeflater.deflate(ByteBuffer.wrap(data, offset, Math.min(1000, data.length - offset))));
+            }
+            frames.addAll(entryDeflater.finish());
+            frames.addAll(entryDeflater.write(ByteBuffer.wrap(trailer)));
+            frames.addAll(entryDeflater.flush());
+
+            assertThat(frames.subList(0, frames.size() - 1)).allSatisfy(frame -> assertThat(frame.remaining()).isEqualTo(FRAME_SIZE));
+            assertThat(frames.get(frames.size() - 1).remaining()).isBetween(1, FRAME_SIZE);
+
+            byte[] output = toBytes(frames);
+            assertThat(Arrays.copyOf(output, header.length)).isEqualTo(header);
+            assertThat(Arrays.copyOfRange(output, output.length - trailer.length, output.length)).isEqualTo(trailer);
+            byte[] compressed = Arrays.copyOfRange(output, header.length, output.length - trailer.length);
+            assertThat(entryDeflater.compressedSize()).isEqualTo(compressed.length);
+            assertThat(inflate(compressed, data.length)).isEqualTo(data);
+
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            assertThat(entryDeflater.crc()).isEqualTo(crc.getValue());
+            assertThat(entryDeflater.uncompressedSize()).isEqualTo(data.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Test
+    @DisplayName("content should not be flushed per chunk")
+    void deflate_doesNotFlushPerChunk() {
+        byte[] data = sampleData(200_000);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        Deflater flushing = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            EntryDeflater entryDeflater = new EntryDeflater(deflater, new byte[FRAME_SIZE]);
+            long syncFlushedSize = 0;
+            byte[] output = new byte[FRAME_SIZE];
+            for (int offset = 0; offset < data.length; offset += 500) {
+                int length = Math.min(500, data.length - offset);
+                entryDeflater.deflate(ByteBuffer.wrap(data, offset, length));
+
+                flushing.setInput(data, offset, length);
+                int written;
+                do {
+                    written = flushing.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+                    syncFlushedSize += written;
+                } while (written == output.length);
+            }
+            entryDeflater.finish();
+
+            assertThat(entryDeflater.compressedSize()).isLessThan(syncFlushedSize);
+        } finally {
+            deflater.end();
+            flushing.end();
+        }
+    }
+
+    @Test
+    @DisplayName("an entry that fits into one frame should give exactly one frame")
+    void deflate_smallEntry() {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            EntryDeflater entryDeflater = new EntryDeflater(deflater, new byte[FRAME_SIZE]);
+
+            assertThat(entryDeflater.write(ByteBuffer.wrap(new byte[30]))).isEmpty();
+            assertThat(entryDeflater.deflate(ByteBuffer.wrap("tiny".getBytes(StandardCharsets.UTF_8)))).isEmpty();
+            assertThat(entryDeflater.finish()).isEmpty();
+            assertThat(entryDeflater.write(ByteBuffer.wrap(new byte[16]))).isEmpty();
+            List<ByteBuffer> frames = entryDeflater.flush();
+
+            assertThat(frames).hasSize(1);
+            assertThat(frames.get(0).remaining()).isEqualTo(30 + entryDeflater.compressedSize() + 16);
+        } finally {
+            deflater.end();
+        }
+    }
+}
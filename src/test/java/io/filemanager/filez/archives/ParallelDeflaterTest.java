@@ -0,0 +1,96 @@
+package io.filemanager.filez.archives;
+
+import io.filemanager.filez.shared.config.ArchiveProperties;
+import io.filemanager.filez.shared.util.Crc32Combine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelDeflaterTest {
+
+    private final DeflaterPool deflaters = new DeflaterPool(ArchiveProperties.builder().build(), new SimpleMeterRegistry());
+
+    // Compressible, with repetitions that reach across block boundaries
+    private static byte[] sampleData(int size) {
+        Random random = new Random(42);
+        String[] words = {"archive", "entry", "deflate", "block", "dictionary", "stream", "\n"};
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        while (out.size() < size) {
+            out.writeBytes(words[random.nextInt(words.length)].getBytes());
+        }
+        return Arrays.copyOf(out.toByteArray(), size);
+    }
+
+    private static Flux<ByteBuffer> chunked(byte[] bytes, int chunkSize) {
+        return Flux.range(0, (bytes.length + chunkSize - 1) / chunkSize)
+                .map(i -> ByteBuffer.wrap(bytes, i * chunkSize, Math.min(chunkSize, bytes.length - i * chunkSize)));
+    }
+
+    private static byte[] inflate(byte[] compressed, int expectedSize) throws Exception {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            byte[] result = new byte[expectedSize + 1];
+            int length = inflater.inflate(result);
+            assertThat(inflater.finished()).isTrue();
+            return Arrays.copyOf(result, length);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Test
+    @DisplayName("deflate should produce one valid DEFLATE stream with the CRC of the whole input")
+    void deflate_blocksFormOneStream() throws Exception {
+        byte[] data = sampleData(1_000_000);
+
+        List<ParallelDeflater.Block> blocks = ParallelDeflater.deflate(chunked(data, 10_000), deflaters, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 64 * 1024, 4, Schedulers.parallel())
+                .collectList()
+                .block();
+
+        assertThat(blocks).hasSize((1_000_000 + 64 * 1024 - 1) / (64 * 1024));
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        long crc = 0;
+        long length = 0;
+        for (ParallelDeflater.Block block : blocks) {
+            compressed.write(block.data().array(), block.data().position(), block.data().remaining());
+            crc = Crc32Combine.combine(crc, block.crc(), block.inputLength());
+            length += block.inputLength();
+        }
+        CRC32 expectedCrc = new CRC32();
+        expectedCrc.update(data);
+
+        assertThat(length).isEqualTo(data.length);
+        assertThat(crc).isEqualTo(expectedCrc.getValue());
+        assertThat(inflate(compressed.toByteArray(), data.length)).isEqualTo(data);
+        // The preset dictionaries keep the ratio close to that of a single stream
+        assertThat(compressed.size()).isLessThan(data.length / 2);
+    }
+
+    @Test
+    @DisplayName("deflate should produce a valid stream for empty input")
+    void deflate_emptyInput() throws Exception {
+        List<ParallelDeflater.Block> blocks = ParallelDeflater.deflate(Flux.empty(), deflaters, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 1024, 2, Schedulers.parallel())
+                .collectList()
+                .block();
+
+        assertThat(blocks).hasSize(1);
+        assertThat(blocks.get(0).inputLength()).isZero();
+        byte[] compressed = new byte[blocks.get(0).data().remaining()];
+        blocks.get(0).data().get(compressed);
+        assertThat(inflate(compressed, 0)).isEmpty();
+    }
+}
@@ -0,0 +1,229 @@
+package io.filemanager.filez.archives;
+
+import io.filemanager.filez.shared.dto.ByteRange;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StoredZipArchiveTest {
+
+    private static final Instant UPLOADED = Instant.parse("2025-06-01T12:00:00Z");
+
+    private static final long GB = 1024L * 1024 * 1024;
+    private static final ByteBuffer ZEROS = ByteBuffer.allocate(1024 * 1024);
+
+    private final Map<String, byte[]> objects = new HashMap<>();
+    private final List<String> reads = new ArrayList<>();
+
+    @TempDir
+    Path directory;
+
+    // Objects that are not in the map consist of zeros, so they can be as big as needed without any memory
+    private Flux<ByteBuffer> readObject(String key, ByteRange range, long objectSize) {
+        reads.add(key + ":" + range.start() + "-" + range.end());
+        byte[] content = objects.get(key);
+        if (content == null) {
+            return zeros(range.length());
+        }
+        return Flux.just(ByteBuffer.wrap(Arrays.copyOfRange(content, (int) range.start(), (int) range.end() + 1)));
+    }
+
+    // Read-only, which tells them apart from the archive's own records
+    private static Flux<ByteBuffer> zeros(long length) {
+        long chunks = (length + ZEROS.capacity() - 1) / ZEROS.capacity();
+        return Flux.range(0, (int) chunks)
+                .map(i -> ZEROS.asReadOnlyBuffer().limit((int) Math.min(ZEROS.capacity(), length - (long) i * ZEROS.capacity())));
+    }
+
+    private static long zerosCrc(long length) {
+        CRC32 crc = new CRC32();
+        zeros(length).doOnNext(crc::update).blockLast();
+        return crc.getValue();
+    }
+
+    private ZipEntryInfo zerosEntry(String key, long size) {
+        return new ZipEntryInfo(key, zerosCrc(size), size, size, ZipEntry.STORED, UPLOADED);
+    }
+
+    /**
+     * Writes the archive to a file, leaving holes for the zeros, so even a multi-GB archive takes next to no disk space.
+     */
+    private Path writeSparse(Flux<ByteBuffer> content) throws IOException {
+        Path file = directory.resolve("archive.zip");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+            long[] position = {0};
+            content.doOnNext(buffer -> {
+                try {
+                    if (!buffer.isReadOnly()) {
+                        channel.write(buffer.duplicate(), position[0]);
+                    }
+                    position[0] += buffer.remaining();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).blockLast();
+        }
+        return file;
+    }
+
+    private ZipEntryInfo entry(String key, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        objects.put(key, bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return new ZipEntryInfo(key, crc.getValue(), bytes.length, bytes.length, ZipEntry.STORED, UPLOADED);
+    }
+
+    private StoredZipArchive archive() {
+        return new StoredZipArchive(List.of(
+                entry("1-a.txt", "first file"),
+                entry("2-empty.txt", ""),
+                entry("3-c.txt", "the third and last file")), this::readObject);
+    }
+
+    private static byte[] readAll(Flux<ByteBuffer> content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        content.doOnNext(buffer -> {
+            byte[] chunk = new byte[buffer.remaining()];
+            buffer.get(chunk);
+            out.writeBytes(chunk);
+        }).blockLast();
+        return out.toByteArray();
+    }
+
+    @Test
+    @DisplayName("read should produce a valid archive of exactly the announced size")
+    void read_producesValidArchive() throws IOException {
+        StoredZipArchive archive = archive();
+
+        byte[] zipBytes = readAll(archive.read());
+
+        assertThat(zipBytes).hasSize((int) archive.size());
+        Map<String, String> zippedContents = new HashMap<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                assertThat(entry.getMethod()).isEqualTo(ZipEntry.STORED);
+                zippedContents.put(entry.getName(), new String(zis.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        assertThat(zippedContents).containsEntry("1-a.txt", "first file")
+                .containsEntry("2-empty.txt", "")
+                .containsEntry("3-c.txt", "the third and last file");
+    }
+
+    @Test
+    @DisplayName("read should return the same bytes for every range as the whole archive, reading only the overlapping objects")
+    void read_rangeMatchesWholeArchive() {
+        StoredZipArchive archive = archive();
+        byte[] zipBytes = readAll(archive.read());
+
+        for (int start = 0; start < zipBytes.length; start += 7) {
+            for (int end = start; end < zipBytes.length; end += 13) {
+                assertThat(readAll(archive.read(new ByteRange(start, end))))
+                        .isEqualTo(Arrays.copyOfRange(zipBytes, start, end + 1));
+            }
+        }
+
+        // Only the tail of the first object, and nothing of the other ones
+        reads.clear();
+        long firstContentEnd = 30 + "1-a.txt".length() + "first file".length() - 1;
+        readAll(archive.read(new ByteRange(firstContentEnd - 2, firstContentEnd)));
+        assertThat(reads).containsExactly("1-a.txt:7-9");
+    }
+
+    @Test
+    @DisplayName("the same entries should always give the same size and entity tag")
+    void layout_isDeterministic() {
+        StoredZipArchive first = archive();
+        StoredZipArchive second = archive();
+        StoredZipArchive other = new StoredZipArchive(List.of(entry("1-a.txt", "first file")), this::readObject);
+
+        assertThat(second.size()).isEqualTo(first.size());
+        assertThat(second.eTag()).isEqualTo(first.eTag()).startsWith("\"");
+        assertThat(other.eTag()).isNotEqualTo(first.eTag());
+        assertThat(first.lastModified()).isEqualTo(UPLOADED);
+    }
+
+    @Test
+    @DisplayName("entries and offsets beyond 4 GB should be written with ZIP64 records")
+    void read_writesZip64ForMultiGigabyteArchives() throws IOException {
+        StoredZipArchive archive = new StoredZipArchive(List.of(
+                zerosEntry("1-huge.bin", 5 * GB),
+                zerosEntry("2-big.bin", 3 * GB),
+                entry("3-small.txt", "after 8 GB")), this::readObject);
+
+        Path file = writeSparse(archive.read());
+
+        assertThat(Files.size(file)).isEqualTo(archive.size());
+        try (ZipFile zipFile = new ZipFile(file.toFile())) {
+            assertThat(zipFile.size()).isEqualTo(3);
+            assertThat(zipFile.getEntry("1-huge.bin").getSize()).isEqualTo(5 * GB);
+            assertThat(zipFile.getEntry("1-huge.bin").getCompressedSize()).isEqualTo(5 * GB);
+            assertThat(zipFile.getEntry("2-big.bin").getSize()).isEqualTo(3 * GB);
+            try (var in = zipFile.getInputStream(zipFile.getEntry("3-small.txt"))) {
+                assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("after 8 GB");
+            }
+        }
+
+        // The tail (ZIP64 records included) is the same when it is requested as a range
+        long tailStart = archive.size() - 500;
+        ByteBuffer tail = ByteBuffer.allocate(500);
+        try (FileChannel channel = FileChannel.open(file)) {
+            channel.read(tail, tailStart);
+        }
+        assertThat(readAll(archive.read(new ByteRange(tailStart, archive.size() - 1)))).isEqualTo(tail.array());
+    }
+
+    @Test
+    @DisplayName("more than 65,535 entries should be written with a ZIP64 end of central directory")
+    void read_writesZip64ForManyEntries() throws IOException {
+        List<ZipEntryInfo> entries = new ArrayList<>();
+        for (int i = 0; i < 70_000; i++) {
+            entries.add(entry(i + "-file.txt", Integer.toString(i)));
+        }
+        StoredZipArchive archive = new StoredZipArchive(entries, this::readObject);
+
+        byte[] zipBytes = readAll(archive.read());
+
+        Path file = Files.write(directory.resolve("many.zip"), zipBytes);
+        try (ZipFile zipFile = new ZipFile(file.toFile())) {
+            assertThat(zipFile.size()).isEqualTo(70_000);
+            try (var in = zipFile.getInputStream(zipFile.getEntry("69999-file.txt"))) {
+                assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("69999");
+            }
+        }
+        int count = 0;
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+            while (zis.getNextEntry() != null) {
+                zis.readAllBytes();
+                count++;
+            }
+        }
+        assertThat(count).isEqualTo(70_000);
+    }
+}
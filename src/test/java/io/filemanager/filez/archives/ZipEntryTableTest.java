@@ -0,0 +1,116 @@
+package io.filemanager.filez.archives;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ZipEntryTableTest {
+
+    private static final Instant UPLOADED = Instant.parse("2025-06-01T12:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Writes STORED entries with the given number of entries, and returns the archive with the chunks of its central directory.
+     */
+    private static byte[] writeArchive(ZipEntryTable entryTable, int entryCount, List<ByteBuffer> centralDirectoryChunks) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < entryCount; i++) {
+            byte[] content = ("content of " + i).getBytes(StandardCharsets.UTF_8);
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            ZipEntryInfo entry = new ZipEntryInfo(i + "-file.txt", crc.getValue(), content.length, content.length, ZipEntry.STORED, UPLOADED);
+            entryTable.add(entry);
+            out.writeBytes(toBytes(ZipRecords.localFileHeader(entry)));
+            out.writeBytes(content);
+        }
+        assertThat(entryTable.centralDirectoryOffset()).isEqualTo(out.size());
+
+        entryTable.centralDirectory().doOnNext(chunk -> {
+            centralDirectoryChunks.add(chunk.duplicate());
+            out.writeBytes(toBytes(chunk));
+        }).blockLast();
+        return out.toByteArray();
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private long spillFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    @DisplayName("the central directory should be emitted in chunks and describe every entry")
+    void centralDirectory_isChunked() throws IOException {
+        List<ByteBuffer> chunks = new ArrayList<>();
+        byte[] zipBytes;
+        try (ZipEntryTable entryTable = new ZipEntryTable(16 * 1024 * 1024, directory)) {
+            zipBytes = writeArchive(entryTable, 20_000, chunks);
+            assertThat(entryTable.spilled()).isFalse();
+            assertThat(entryTable.count()).isEqualTo(20_000);
+        }
+
+        assertThat(chunks).hasSizeGreaterThan(1);
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.remaining()).isLessThanOrEqualTo(ZipEntryTable.CHUNK_SIZE));
+        Path file = Files.write(directory.resolve("archive.zip"), zipBytes);
+        try (ZipFile zipFile = new ZipFile(file.toFile())) {
+            assertThat(zipFile.size()).isEqualTo(20_000);
+            try (var in = zipFile.getInputStream(zipFile.getEntry("19999-file.txt"))) {
+                assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("content of 19999");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("a table that outgrows its memory should spill to a file and still give the same central directory")
+    void add_spillsToFile() throws IOException {
+        byte[] inMemory;
+        try (ZipEntryTable entryTable = new ZipEntryTable(16 * 1024 * 1024, directory)) {
+            inMemory = writeArchive(entryTable, 5_000, new ArrayList<>());
+        }
+
+        byte[] spilled;
+        try (ZipEntryTable entryTable = new ZipEntryTable(4096, directory)) {
+            spilled = writeArchive(entryTable, 5_000, new ArrayList<>());
+            assertThat(entryTable.spilled()).isTrue();
+            assertThat(spillFiles()).isEqualTo(1);
+        }
+
+        assertThat(spilled).isEqualTo(inMemory);
+        assertThat(spillFiles()).isZero();
+    }
+
+    @Test
+    @DisplayName("an empty table should give just the end of central directory record")
+    void centralDirectory_empty() {
+        try (ZipEntryTable entryTable = new ZipEntryTable(4096, directory)) {
+            List<ByteBuffer> chunks = entryTable.centralDirectory().collectList().block();
+
+            assertThat(chunks).hasSize(1);
+            assertThat(chunks.get(0).remaining()).isEqualTo(ZipRecords.END_OF_CENTRAL_DIRECTORY_SIZE);
+        }
+    }
+}
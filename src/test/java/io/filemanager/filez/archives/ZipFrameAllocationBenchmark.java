@@ -0,0 +1,194 @@
+package io.filemanager.filez.archives;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the heap allocated (and the frames sent) per MB archived by the single-threaded deflate path, the way it
+ * was (8 KB buffer per call, a copy of every chunk, SYNC_FLUSH per input buffer, the DOS time converted for every
+ * header) and the way it is now ({@link EntryDeflater}). Both run on the current thread, so all their allocations
+ * are counted. Run with {@code ./gradlew benchmark}.
+ */
+@Slf4j
+@Tag("benchmark")
+class ZipFrameAllocationBenchmark {
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final int FRAME_SIZE = 64 * 1024;
+    private static final Instant UPLOADED = Instant.parse("2025-06-01T12:00:00Z");
+
+    private final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private record Result(long frames, long bytes) {
+    }
+
+    private interface Emitter {
+        Result archive(List<List<ByteBuffer>> entries);
+    }
+
+    // Compressible text, like logs or CSV exports
+    private static byte[] sampleData(int size) {
+        Random random = new Random(42);
+        String[] words = {"timestamp", "level", "INFO", "request", "archive", "entry", "42", ",", "\n"};
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        while (out.size() < size) {
+            out.writeBytes(words[random.nextInt(words.length)].getBytes(StandardCharsets.UTF_8));
+        }
+        return Arrays.copyOf(out.toByteArray(), size);
+    }
+
+    private static List<List<ByteBuffer>> entries(int count, int entrySize) {
+        byte[] data = sampleData(entrySize);
+        List<ByteBuffer> chunks = new ArrayList<>();
+        for (int offset = 0; offset < entrySize; offset += CHUNK_SIZE) {
+            chunks.add(ByteBuffer.wrap(data, offset, Math.min(CHUNK_SIZE, entrySize - offset)));
+        }
+        List<List<ByteBuffer>> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(chunks);
+        }
+        return entries;
+    }
+
+    @Test
+    @DisplayName("per-chunk SYNC_FLUSH with copies vs. NO_FLUSH into coalesced frames")
+    void beforeVsAfter() {
+        List<List<ByteBuffer>> smallEntries = entries(2000, 16 * 1024);
+        List<List<ByteBuffer>> largeEntries = entries(4, 16 * 1024 * 1024);
+
+        // warm up
+        before(smallEntries);
+        after(smallEntries);
+
+        report("before, 2000 x 16 KB", this::before, smallEntries);
+        report("after,  2000 x 16 KB", this::after, smallEntries);
+        report("before, 4 x 16 MB", this::before, largeEntries);
+        report("after,  4 x 16 MB", this::after, largeEntries);
+    }
+
+    private void report(String name, Emitter emitter, List<List<ByteBuffer>> entries) {
+        long inputBytes = entries.stream().flatMap(List::stream).mapToLong(ByteBuffer::remaining).sum();
+        long allocatedBefore = threadMXBean.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        Result result = emitter.archive(entries);
+        long nanos = System.nanoTime() - start;
+        long allocated = threadMXBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        double megabytes = inputBytes / (1024.0 * 1024.0);
+
+        log.info("{}: {} bytes allocated per MB archived, {} frames per MB, {} bytes output, {} ms",
+                name,
+                (long) (allocated / megabytes),
+                (long) (result.frames() / megabytes),
+                result.bytes(),
+                nanos / 1_000_000);
+    }
+
+    private Result after(List<List<ByteBuffer>> entries) {
+        long frames = 0;
+        long bytes = 0;
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        byte[] buffer = new byte[FRAME_SIZE];
+        try {
+            for (int i = 0; i < entries.size(); i++) {
+                ZipEntryInfo header = new ZipEntryInfo(i + "-export.csv", 0, 0, 0, ZipEntry.DEFLATED, UPLOADED);
+                EntryDeflater entryDeflater = new EntryDeflater(deflater, buffer);
+                List<ByteBuffer> output = new ArrayList<>(entryDeflater.write(ZipRecords.localFileHeader(header)));
+                for (ByteBuffer chunk : entries.get(i)) {
+                    output.addAll(entryDeflater.deflate(chunk.duplicate()));
+                }
+                output.addAll(entryDeflater.finish());
+                ZipEntryInfo entryInfo = header.withContent(entryDeflater.crc(), entryDeflater.compressedSize(), entryDeflater.uncompressedSize());
+                output.addAll(entryDeflater.write(ZipRecords.dataDescriptor(entryInfo)));
+                output.addAll(entryDeflater.flush());
+                ZipRecords.centralDirectoryHeaderSize(entryInfo);
+
+                frames += output.size();
+                bytes += output.stream().mapToLong(ByteBuffer::remaining).sum();
+                deflater.reset();
+            }
+        } finally {
+            deflater.end();
+        }
+        return new Result(frames, bytes);
+    }
+
+    // The emitter before frames were coalesced
+    private Result before(List<List<ByteBuffer>> entries) {
+        long frames = 0;
+        long bytes = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            String name = i + "-export.csv";
+            List<ByteBuffer> output = new ArrayList<>();
+            output.add(ZipRecords.localFileHeader(new ZipEntryInfo(name, 0, 0, 0, ZipEntry.DEFLATED, Instant.now())));
+
+            // At the level of the new path, so only the emitters differ
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            CRC32 crc = new CRC32();
+            long uncompressedSize = 0;
+            long compressedSize = 0;
+            for (ByteBuffer chunk : entries.get(i)) {
+                ByteBuffer buffer = chunk.duplicate();
+                crc.update(buffer.duplicate());
+                uncompressedSize += buffer.remaining();
+                deflater.setInput(buffer);
+                List<ByteBuffer> resultChunks = new ArrayList<>();
+                while (!deflater.needsInput()) {
+                    ByteBuffer compressedChunk = ByteBuffer.allocate(8192);
+                    int bytesCompressed = deflater.deflate(compressedChunk, Deflater.SYNC_FLUSH);
+                    if (bytesCompressed > 0) {
+                        compressedChunk.flip();
+                        resultChunks.add(copy(compressedChunk));
+                        compressedSize += bytesCompressed;
+                    } else {
+                        break;
+                    }
+                }
+                output.addAll(resultChunks);
+            }
+            ByteBuffer finalChunk = ByteBuffer.allocate(8192);
+            deflater.finish();
+            int remainingBytes = deflater.deflate(finalChunk);
+            if (remainingBytes > 0) {
+                finalChunk.flip();
+                compressedSize += remainingBytes;
+                output.add(copy(finalChunk));
+            }
+            deflater.end();
+
+            ZipEntryInfo entryInfo = new ZipEntryInfo(name, crc.getValue(), compressedSize, uncompressedSize, ZipEntry.DEFLATED, Instant.now());
+            output.add(ZipRecords.dataDescriptor(entryInfo));
+            // The central directory header converted the time once more
+            ZipRecords.dosTime(Instant.now());
+
+            frames += output.size();
+            bytes += output.stream().mapToLong(ByteBuffer::remaining).sum();
+        }
+        assertThat(frames).isPositive();
+        return new Result(frames, bytes);
+    }
+
+    private static ByteBuffer copy(ByteBuffer original) {
+        ByteBuffer copy = ByteBuffer.allocate(original.remaining());
+        copy.put(original);
+        copy.flip();
+        return copy;
+    }
+}
@@ -3,10 +3,12 @@ package io.filemanager.filez.files;
 import io.filemanager.filez.shared.dto.DownloadResult;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.MultipartBodyBuilder;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
@@ -17,7 +19,11 @@ import reactor.core.publisher.Mono;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 
@@ -88,4 +94,174 @@ class FileControllerTest {
                 .exchange()
                 .expectStatus().isNotFound();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("DELETE /{id} should return 204 No Content once the file is deleted")
+    void deleteFileById_whenFound_returns204() {
+        when(fileService.deleteFile(1L)).thenReturn(Mono.just(true));
+
+        webTestClient.delete().uri("/api/files/1")
+                .exchange()
+                .expectStatus().isNoContent();
+    }
+
+    @Test
+    @DisplayName("DELETE /{id} should return 404 Not Found when the file does not exist")
+    void deleteFileById_whenNotFound_returns404() {
+        when(fileService.deleteFile(any(Long.class))).thenReturn(Mono.empty());
+
+        webTestClient.delete().uri("/api/files/99")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    private DownloadResult rangedResult(byte[] fileBytes) {
+        return new DownloadResult(
+                "video.mp4",
+                "video/mp4",
+                fileBytes.length,
+                "\"1-1000\"",
+                Instant.parse("2025-01-01T10:00:00Z"),
+                Flux.just(ByteBuffer.wrap(fileBytes)),
+                range -> Flux.just(ByteBuffer.wrap(fileBytes, (int) range.start(), (int) range.length())));
+    }
+
+    @Test
+    @DisplayName("GET /download/{id} with a Range header should return 206 with the requested bytes")
+    void downloadFileById_withRange_returnsPartialContent() {
+        // --- Arrange ---
+        byte[] fileBytes = "0123456789abcdefghij".getBytes(StandardCharsets.UTF_8);
+        when(fileService.downloadFile(any(Long.class))).thenReturn(Mono.just(rangedResult(fileBytes)));
+
+        // --- Act & Assert ---
+        webTestClient.get().uri("/api/files/download/1")
+                .header(HttpHeaders.RANGE, "bytes=5-9")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 5-9/20")
+                .expectHeader().contentLength(5)
+                .expectBody(byte[].class).isEqualTo("56789".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("GET /download/{id} with several ranges should return a multipart/byteranges body")
+    void downloadFileById_withMultipleRanges_returnsMultipart() {
+        // --- Arrange ---
+        byte[] fileBytes = "0123456789abcdefghij".getBytes(StandardCharsets.UTF_8);
+        when(fileService.downloadFile(any(Long.class))).thenReturn(Mono.just(rangedResult(fileBytes)));
+
+        // --- Act & Assert ---
+        webTestClient.get().uri("/api/files/download/1")
+                .header(HttpHeaders.RANGE, "bytes=0-1,-3")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().value(HttpHeaders.CONTENT_TYPE, contentType -> assertThat(contentType).startsWith("multipart/byteranges"))
+                .expectBody(String.class).value(body -> {
+                    assertThat(body).contains("Content-Range: bytes 0-1/20\r\n\r\n01");
+                    assertThat(body).contains("Content-Range: bytes 17-19/20\r\n\r\nhij");
+                });
+    }
+
+    @Test
+    @DisplayName("GET /download/{id} with an unsatisfiable range should return 416")
+    void downloadFileById_withUnsatisfiableRange_returns416() {
+        // --- Arrange ---
+        byte[] fileBytes = "0123456789".getBytes(StandardCharsets.UTF_8);
+        when(fileService.downloadFile(any(Long.class))).thenReturn(Mono.just(rangedResult(fileBytes)));
+
+        // --- Act & Assert ---
+        webTestClient.get().uri("/api/files/download/1")
+                .header(HttpHeaders.RANGE, "bytes=50-60")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes */10");
+    }
+
+    @Test
+    @DisplayName("GET /download/{id} with ranges adding up to more than the file should return 416")
+    void downloadFileById_withOverlappingRanges_returns416() {
+        // --- Arrange ---
+        byte[] fileBytes = "0123456789".getBytes(StandardCharsets.UTF_8);
+        when(fileService.downloadFile(any(Long.class))).thenReturn(Mono.just(rangedResult(fileBytes)));
+
+        // --- Act & Assert ---
+        webTestClient.get().uri("/api/files/download/1")
+                .header(HttpHeaders.RANGE, "bytes=0-,0-,0-")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes */10");
+    }
+
+    @Test
+    @DisplayName("GET /download/{id} with a matching If-None-Match should return 304 without a body")
+    void downloadFileById_withMatchingIfNoneMatch_returns304() {
+        // --- Arrange ---
+        byte[] fileBytes = "0123456789".getBytes(StandardCharsets.UTF_8);
+        when(fileService.downloadFile(any(Long.class))).thenReturn(Mono.just(rangedResult(fileBytes)));
+
+        // --- Act & Assert ---
+        webTestClient.get().uri("/api/files/download/1")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"1-1000\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1-1000\"")
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    @DisplayName("GET /download/{id} with an If-Modified-Since after the last change should return 304")
+    void downloadFileById_withIfModifiedSince_returns304() {
+        // --- Arrange ---
+        byte[] fileBytes = "0123456789".getBytes(StandardCharsets.UTF_8);
+        when(fileService.downloadFile(any(Long.class))).thenReturn(Mono.just(rangedResult(fileBytes)));
+
+        // --- Act & Assert ---
+        webTestClient.get().uri("/api/files/download/1")
+                .header(HttpHeaders.IF_MODIFIED_SINCE, "Wed, 01 Jan 2025 10:00:00 GMT")
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    @DisplayName("GET /download/{id} with a stale If-Range should return the whole file")
+    void downloadFileById_withStaleIfRange_returnsWholeFile() {
+        // --- Arrange ---
+        byte[] fileBytes = "0123456789".getBytes(StandardCharsets.UTF_8);
+        when(fileService.downloadFile(any(Long.class))).thenReturn(Mono.just(rangedResult(fileBytes)));
+
+        // --- Act & Assert ---
+        webTestClient.get().uri("/api/files/download/1")
+                .header(HttpHeaders.RANGE, "bytes=5-9")
+                .header(HttpHeaders.IF_RANGE, "\"1-999\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .expectBody(byte[].class).isEqualTo(fileBytes);
+    }
+
+    @Test
+    @DisplayName("GET /download/{id} should send a range of a locally cached file")
+    void downloadFileById_fromLocalFile_returnsRange(@TempDir Path directory) throws Exception {
+        // --- Arrange ---
+        byte[] fileBytes = "0123456789abcdefghij".getBytes(StandardCharsets.UTF_8);
+        Path localFile = Files.write(directory.resolve("cached"), fileBytes);
+        DownloadResult cachedResult = new DownloadResult(
+                "video.mp4",
+                "video/mp4",
+                fileBytes.length,
+                "\"1-1000\"",
+                Instant.parse("2025-01-01T10:00:00Z"),
+                Flux.error(new IllegalStateException("the local file should be sent")),
+                range -> Flux.error(new IllegalStateException("the local file should be sent")),
+                localFile);
+        when(fileService.downloadFile(any(Long.class))).thenReturn(Mono.just(cachedResult));
+
+        // --- Act & Assert ---
+        webTestClient.get().uri("/api/files/download/1")
+                .header(HttpHeaders.RANGE, "bytes=10-")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 10-19/20")
+                .expectBody(byte[].class).isEqualTo("abcdefghij".getBytes(StandardCharsets.UTF_8));
+    }
+}
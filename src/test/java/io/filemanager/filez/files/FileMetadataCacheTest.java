@@ -0,0 +1,94 @@
+package io.filemanager.filez.files;
+
+import io.filemanager.filez.shared.config.MetadataCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FileMetadataCacheTest {
+
+    private final FileRepository fileRepository = mock(FileRepository.class);
+    private final FileMetadataCache cache = new FileMetadataCache(
+            fileRepository, MetadataCacheProperties.builder().build(), new SimpleMeterRegistry());
+
+    @Test
+    @DisplayName("findById should query the database only once for a hot ID")
+    void findById_cachesHits() {
+        File file = new File(1L, "a.txt", "text/plain", 10);
+        when(fileRepository.findById(1L)).thenReturn(Mono.just(file));
+
+        StepVerifier.create(cache.findById(1L)).expectNext(file).verifyComplete();
+        StepVerifier.create(cache.findById(1L)).expectNext(file).verifyComplete();
+
+        verify(fileRepository, times(1)).findById(1L);
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+        assertThat(cache.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("findById should not cache IDs that don't exist")
+    void findById_missingIdIsNotCached() {
+        when(fileRepository.findById(99L)).thenReturn(Mono.empty());
+
+        StepVerifier.create(cache.findById(99L)).verifyComplete();
+        StepVerifier.create(cache.findById(99L)).verifyComplete();
+
+        verify(fileRepository, times(2)).findById(99L);
+    }
+
+    @Test
+    @DisplayName("findById should not cache a file whose upload hasn't finished")
+    void findById_uploadInProgressIsNotCached() {
+        File uploading = new File(1L, "a.txt", "text/plain", 0);
+        File uploaded = new File(1L, "a.txt", "text/plain", 10);
+        uploaded.setCrc32(42L);
+        when(fileRepository.findById(1L)).thenReturn(Mono.just(uploading), Mono.just(uploaded));
+
+        StepVerifier.create(cache.findById(1L)).expectNext(uploading).verifyComplete();
+        StepVerifier.create(cache.findById(1L)).expectNext(uploaded).verifyComplete();
+        StepVerifier.create(cache.findById(1L)).expectNext(uploaded).verifyComplete();
+
+        verify(fileRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("findAllById should load all misses with one query and keep the order of the IDs")
+    void findAllById_batchesMisses() {
+        File first = new File(1L, "a.txt", "text/plain", 10);
+        File second = new File(2L, "b.txt", "text/plain", 20);
+        File third = new File(3L, "c.txt", "text/plain", 30);
+        when(fileRepository.findById(1L)).thenReturn(Mono.just(first));
+        when(fileRepository.findAllById(any(Iterable.class))).thenReturn(Flux.just(third, second));
+
+        StepVerifier.create(cache.findById(1L)).expectNext(first).verifyComplete();
+        StepVerifier.create(cache.findAllById(List.of(3L, 1L, 2L, 4L)))
+                .expectNext(third, first, second)
+                .verifyComplete();
+
+        verify(fileRepository, times(1)).findAllById(any(Iterable.class));
+    }
+
+    @Test
+    @DisplayName("saving a file should invalidate its cached metadata")
+    void onAfterSave_invalidates() {
+        File stale = new File(1L, "a.txt", "text/plain", 0);
+        File uploaded = new File(1L, "a.txt", "text/plain", 10);
+        when(fileRepository.findById(1L)).thenReturn(Mono.just(stale), Mono.just(uploaded));
+
+        StepVerifier.create(cache.findById(1L)).expectNext(stale).verifyComplete();
+        StepVerifier.create(cache.onAfterSave(uploaded, null, null)).expectNext(uploaded).verifyComplete();
+        StepVerifier.create(cache.findById(1L)).expectNext(uploaded).verifyComplete();
+    }
+}
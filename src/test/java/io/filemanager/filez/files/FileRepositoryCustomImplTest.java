@@ -0,0 +1,49 @@
+package io.filemanager.filez.files;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FileRepositoryCustomImplTest {
+
+    private static final int PAGE_SIZE = 10;
+
+    private final R2dbcEntityTemplate template = mock(R2dbcEntityTemplate.class, RETURNS_DEEP_STUBS);
+    private final FileRepositoryCustomImpl repository = new FileRepositoryCustomImpl(template);
+
+    @Test
+    @DisplayName("findAllMatching should read the next page only once the subscriber has taken the current one")
+    void findAllMatching_readsOnePageAhead() {
+        // Every query returns a full page of the next IDs, as if there were no end to the matching rows
+        AtomicInteger pagesRead = new AtomicInteger();
+        AtomicLong nextId = new AtomicLong(1);
+        when(template.select(File.class).matching(any(Query.class)).all()).thenAnswer(invocation -> Flux.defer(() -> {
+            pagesRead.incrementAndGet();
+            return Flux.range(0, PAGE_SIZE)
+                    .map(i -> new File(nextId.getAndIncrement(), "file.txt", "text/plain", 1));
+        }));
+
+        StepVerifier.create(repository.findAllMatching(new FileCriteria(null, null, null, null, null), PAGE_SIZE), 1)
+                .expectNextCount(1)
+                .thenRequest(PAGE_SIZE - 1)
+                .expectNextCount(PAGE_SIZE - 1)
+                .then(() -> assertThat(pagesRead.get()).isLessThanOrEqualTo(2))
+                .thenRequest(PAGE_SIZE)
+                .expectNextCount(PAGE_SIZE)
+                .then(() -> assertThat(pagesRead.get()).isLessThanOrEqualTo(3))
+                .thenCancel()
+                .verify();
+    }
+}
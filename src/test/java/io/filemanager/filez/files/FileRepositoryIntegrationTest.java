@@ -0,0 +1,106 @@
+package io.filemanager.filez.files;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class FileRepositoryIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", () -> String.format("r2dbc:postgresql://%s:%d/%s",
+                postgres.getHost(), postgres.getFirstMappedPort(), postgres.getDatabaseName()));
+        registry.add("spring.r2dbc.username", postgres::getUsername);
+        registry.add("spring.r2dbc.password", postgres::getPassword);
+        registry.add("spring.flyway.url", postgres::getJdbcUrl);
+        registry.add("spring.flyway.user", postgres::getUsername);
+        registry.add("spring.flyway.password", postgres::getPassword);
+    }
+
+    @MockitoBean
+    private S3AsyncClient s3AsyncClient;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    private List<File> files;
+
+    @BeforeEach
+    void setUp() {
+        fileRepository.deleteAll().block();
+        files = fileRepository.saveAll(Flux.just(
+                        new File(null, "report-2025.pdf", "application/pdf", 1L),
+                        new File(null, "report_draft.txt", "text/plain", 1L),
+                        new File(null, "reportX.txt", "text/plain", 1L),
+                        new File(null, "image.png", "image/png", 1L),
+                        new File(null, "report-2024.pdf", "application/pdf", 1L)))
+                .collectList()
+                .block();
+    }
+
+    private List<String> names(FileCriteria criteria, int pageSize) {
+        return fileRepository.findAllMatching(criteria, pageSize).map(File::getFileName).collectList().block();
+    }
+
+    @Test
+    @DisplayName("findAllMatching should return all matching rows in ID order across pages")
+    void findAllMatching_pagesInIdOrder() {
+        FileCriteria all = new FileCriteria(null, null, null, null, null);
+
+        assertThat(names(all, 2)).containsExactly("report-2025.pdf", "report_draft.txt", "reportX.txt", "image.png", "report-2024.pdf");
+        // A last page that is exactly full is followed by an empty one
+        StepVerifier.create(fileRepository.findAllMatching(new FileCriteria(null, null, null, null, "report-"), 1))
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findAllMatching should apply the ID range and match the name prefix literally")
+    void findAllMatching_appliesCriteria() {
+        Long secondId = files.get(1).getId();
+        Long fourthId = files.get(3).getId();
+
+        assertThat(names(new FileCriteria(secondId, fourthId, null, null, null), 10))
+                .containsExactly("report_draft.txt", "reportX.txt", "image.png");
+        // _ is not a wildcard
+        assertThat(names(new FileCriteria(null, null, null, null, "report_"), 10))
+                .containsExactly("report_draft.txt");
+        assertThat(names(new FileCriteria(null, null, null, null, "report"), 10))
+                .containsExactly("report-2025.pdf", "report_draft.txt", "reportX.txt", "report-2024.pdf");
+    }
+
+    @Test
+    @DisplayName("findAllMatching should include the start and exclude the end of the creation window")
+    void findAllMatching_appliesCreationWindow() {
+        Instant now = Instant.now();
+
+        assertThat(names(new FileCriteria(null, null, now.minus(1, ChronoUnit.HOURS), now.plus(1, ChronoUnit.HOURS), null), 10))
+                .hasSize(5);
+        assertThat(names(new FileCriteria(null, null, now.plus(1, ChronoUnit.HOURS), null, null), 10))
+                .isEmpty();
+        assertThat(names(new FileCriteria(null, null, null, now.minus(1, ChronoUnit.HOURS), null), 10))
+                .isEmpty();
+    }
+}
@@ -1,7 +1,9 @@
 package io.filemanager.filez.files;
 
+import io.filemanager.filez.files.storage.KeyLayout;
 import io.filemanager.filez.files.uploader.S3Uploader;
 import io.filemanager.filez.files.uploader.UploadResult;
+import io.filemanager.filez.shared.dto.ByteRange;
 import io.filemanager.filez.shared.dto.DownloadResult;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,13 +14,16 @@ import org.reactivestreams.Subscriber;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.server.ResponseStatusException;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
@@ -34,10 +39,16 @@ import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @Testcontainers
@@ -83,13 +94,19 @@ class FileServiceIntegrationTest {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.TEXT_PLAIN);
         when(mockFilePart.headers()).thenReturn(headers);
-        byte[] fileBytes = "hello world".getBytes(StandardCharsets.UTF_8);
-        DataBuffer dataBuffer = new DefaultDataBufferFactory().wrap(fileBytes);
-        when(mockFilePart.content()).thenReturn(Flux.just(dataBuffer));
+        // Above the inline threshold, which is only crossed by the second chunk
+        byte[] fileBytes = new byte[40 * 1024];
+        DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+        when(mockFilePart.content()).thenReturn(Flux.<DataBuffer>just(
+                bufferFactory.wrap(Arrays.copyOfRange(fileBytes, 0, 20 * 1024)),
+                bufferFactory.wrap(Arrays.copyOfRange(fileBytes, 20 * 1024, fileBytes.length))));
 
         long expectedSize = fileBytes.length;
-        UploadResult mockUploadResult = new UploadResult(PutObjectResponse.builder().eTag("test-etag").build(), expectedSize);
-        when(s3Uploader.uploadFile(any(), any(), any())).thenReturn(Mono.just(mockUploadResult));
+        // The uploader gets all of the content, including what was buffered to find out where it goes
+        when(s3Uploader.uploadFile(any(), any(), any(), anyLong())).thenAnswer(invocation -> invocation.<Flux<ByteBuffer>>getArgument(1)
+                .map(ByteBuffer::remaining)
+                .reduce(0L, (total, remaining) -> total + remaining)
+                .map(size -> new UploadResult(PutObjectResponse.builder().eTag("test-etag").build(), size)));
 
         // Act
         Mono<File> resultMono = fileService.uploadFile(mockFilePart);
@@ -100,8 +117,67 @@ class FileServiceIntegrationTest {
                         metadata.getFileName().equals("test-file.txt") &&
                                 metadata.getFileType().equals(MediaType.TEXT_PLAIN_VALUE) &&
                                 metadata.getSize() == expectedSize &&
-                                metadata.getId() != null)
+                                metadata.getId() != null &&
+                                metadata.getKeyLayout() == KeyLayout.HASHED &&
+                                metadata.getContent() == null)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("uploadFile should answer 400 for a declared length the uploader rejects and not keep the file")
+    void uploadFile_rejectedLength_returns400AndDeletesRow() {
+        FilePart mockFilePart = Mockito.mock(FilePart.class);
+        when(mockFilePart.filename()).thenReturn("huge.bin");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentLength(10L * 1024 * 1024 * 1024 * 1024);
+        when(mockFilePart.headers()).thenReturn(headers);
+        when(mockFilePart.content()).thenReturn(Flux.<DataBuffer>just(new DefaultDataBufferFactory().wrap(new byte[1024])));
+        when(s3Uploader.uploadFile(any(), any(), any(), anyLong()))
+                .thenReturn(Mono.error(new IllegalArgumentException("Content length exceeds the maximum S3 object size")));
+
+        StepVerifier.create(fileService.uploadFile(mockFilePart))
+                .expectErrorMatches(ex -> ex instanceof ResponseStatusException rse && rse.getStatusCode() == HttpStatus.BAD_REQUEST)
+                .verify();
+
+        StepVerifier.create(metadataRepository.count())
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("uploadFile should keep a file below the inline threshold in its row, and downloadFile serve it from there")
+    void uploadFile_smallFile_storedInline() {
+        FilePart mockFilePart = Mockito.mock(FilePart.class);
+        when(mockFilePart.filename()).thenReturn("tiny.txt");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.TEXT_PLAIN);
+        when(mockFilePart.headers()).thenReturn(headers);
+        byte[] fileBytes = "hello world".getBytes(StandardCharsets.UTF_8);
+        DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+        when(mockFilePart.content()).thenReturn(Flux.<DataBuffer>just(
+                bufferFactory.wrap(Arrays.copyOfRange(fileBytes, 0, 5)),
+                bufferFactory.wrap(Arrays.copyOfRange(fileBytes, 5, fileBytes.length))));
+
+        File uploaded = fileService.uploadFile(mockFilePart).block();
+
+        Assertions.assertNotNull(uploaded);
+        CRC32 crc = new CRC32();
+        crc.update(fileBytes);
+        assertThat(uploaded.getSize()).isEqualTo(fileBytes.length);
+        assertThat(uploaded.getCrc32()).isEqualTo(crc.getValue());
+        assertThat(metadataRepository.findById(uploaded.getId()).block().getContent()).isEqualTo(fileBytes);
+        verify(s3Uploader, never()).uploadFile(any(), any(), any(), anyLong());
+
+        StepVerifier.create(fileService.downloadFile(uploaded.getId())
+                        .flatMap(result -> DataBufferUtils.join(result.fileContent().map(bufferFactory::wrap))))
+                .assertNext(content -> assertThat(content.toString(StandardCharsets.UTF_8)).isEqualTo("hello world"))
+                .verifyComplete();
+        StepVerifier.create(fileService.downloadFile(uploaded.getId())
+                        .flatMapMany(result -> result.rangeReader().apply(new ByteRange(6, 10))))
+                .assertNext(range -> assertThat(StandardCharsets.UTF_8.decode(range).toString()).isEqualTo("world"))
                 .verifyComplete();
+        verify(s3AsyncClient, never()).getObject(any(GetObjectRequest.class),
+                Mockito.<AsyncResponseTransformer<GetObjectResponse, ResponsePublisher<GetObjectResponse>>>any());
     }
 
     @Test
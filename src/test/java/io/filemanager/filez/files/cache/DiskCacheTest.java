@@ -0,0 +1,167 @@
+package io.filemanager.filez.files.cache;
+
+import io.filemanager.filez.shared.config.DiskCacheProperties;
+import io.filemanager.filez.shared.dto.ByteRange;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class DiskCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DiskCache diskCache(long maxSize) throws Exception {
+        DiskCacheProperties properties = DiskCacheProperties.builder()
+                .enabled(true)
+                .directory(directory)
+                .maxSize(DataSize.ofBytes(maxSize))
+                .maxObjectSize(DataSize.ofBytes(maxSize))
+                .build();
+        return new DiskCache(properties, meterRegistry);
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random().nextBytes(bytes);
+        return bytes;
+    }
+
+    private static Flux<ByteBuffer> chunked(byte[] bytes, int chunkSize) {
+        return Flux.range(0, (bytes.length + chunkSize - 1) / chunkSize)
+                .map(i -> ByteBuffer.wrap(bytes, i * chunkSize, Math.min(chunkSize, bytes.length - i * chunkSize)));
+    }
+
+    private static byte[] readAll(Flux<ByteBuffer> content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        content.doOnNext(buffer -> {
+            byte[] chunk = new byte[buffer.remaining()];
+            buffer.get(chunk);
+            out.writeBytes(chunk);
+        }).blockLast();
+        return out.toByteArray();
+    }
+
+    // Looks the key up like a download would, without keeping the file pinned
+    private static boolean isCached(DiskCache diskCache, String key) {
+        Optional<DiskCache.CachedFile> cachedFile = diskCache.lookup(key);
+        cachedFile.ifPresent(DiskCache.CachedFile::release);
+        return cachedFile.isPresent();
+    }
+
+    private Path awaitEntry(DiskCache diskCache, String key) {
+        await().atMost(Duration.ofSeconds(5)).until(() -> diskCache.entryCount() > 0 && isCached(diskCache, key));
+        return directory.resolve(DiskCache.fileName(key));
+    }
+
+    @Test
+    @DisplayName("fill should pass the content through and cache it once the stream is complete")
+    void fill_cachesCompleteStream() throws Exception {
+        DiskCache diskCache = diskCache(1024 * 1024);
+        byte[] bytes = randomBytes(100_000);
+
+        assertThat(isCached(diskCache, "1-video.mp4")).isFalse();
+        assertThat(readAll(diskCache.fill("1-video.mp4", bytes.length, chunked(bytes, 8192)))).isEqualTo(bytes);
+
+        Path cachedFile = awaitEntry(diskCache, "1-video.mp4");
+        assertThat(Files.readAllBytes(cachedFile)).isEqualTo(bytes);
+        assertThat(readAll(diskCache.read(cachedFile, new ByteRange(10, 19)))).isEqualTo(Arrays.copyOfRange(bytes, 10, 20));
+        assertThat(meterRegistry.get("cache.gets").tag("result", "miss").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").counter().count()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("fill should not cache a stream that fails or delivers fewer bytes than expected")
+    void fill_skipsIncompleteStream() throws Exception {
+        DiskCache diskCache = diskCache(1024 * 1024);
+        byte[] bytes = randomBytes(10_000);
+
+        StepVerifier.create(diskCache.fill("1-a.bin", bytes.length, chunked(bytes, 1000).concatWith(Flux.error(new IllegalStateException()))))
+                .expectNextCount(10)
+                .verifyError(IllegalStateException.class);
+        readAll(diskCache.fill("2-b.bin", bytes.length + 1, chunked(bytes, 1000)));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> {
+            try (var files = Files.list(directory)) {
+                return files.findAny().isEmpty();
+            }
+        });
+        assertThat(isCached(diskCache, "1-a.bin")).isFalse();
+        assertThat(isCached(diskCache, "2-b.bin")).isFalse();
+    }
+
+    @Test
+    @DisplayName("fill should evict the least recently used files once the cache is full")
+    void fill_evictsLeastRecentlyUsed() throws Exception {
+        DiskCache diskCache = diskCache(25_000);
+
+        readAll(diskCache.fill("1-a.bin", 10_000, chunked(randomBytes(10_000), 4096)));
+        awaitEntry(diskCache, "1-a.bin");
+        readAll(diskCache.fill("2-b.bin", 10_000, chunked(randomBytes(10_000), 4096)));
+        awaitEntry(diskCache, "2-b.bin");
+        // Touch the first file, so the second one is the least recently used
+        isCached(diskCache, "1-a.bin");
+        readAll(diskCache.fill("3-c.bin", 10_000, chunked(randomBytes(10_000), 4096)));
+        awaitEntry(diskCache, "3-c.bin");
+
+        assertThat(isCached(diskCache, "1-a.bin")).isTrue();
+        assertThat(isCached(diskCache, "2-b.bin")).isFalse();
+        assertThat(diskCache.usedBytes()).isEqualTo(20_000);
+        assertThat(meterRegistry.get("cache.evictions").counter().count()).isEqualTo(1);
+        assertThat(directory.resolve(DiskCache.fileName("2-b.bin"))).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("an evicted file should stay on disk until the download reading it releases it")
+    void lookup_keepsEvictedFileUntilReleased() throws Exception {
+        DiskCache diskCache = diskCache(15_000);
+        byte[] bytes = randomBytes(10_000);
+
+        readAll(diskCache.fill("1-a.bin", bytes.length, chunked(bytes, 4096)));
+        Path file = awaitEntry(diskCache, "1-a.bin");
+        DiskCache.CachedFile cachedFile = diskCache.lookup("1-a.bin").orElseThrow();
+        readAll(diskCache.fill("2-b.bin", 10_000, chunked(randomBytes(10_000), 4096)));
+        awaitEntry(diskCache, "2-b.bin");
+
+        assertThat(isCached(diskCache, "1-a.bin")).isFalse();
+        assertThat(diskCache.usedBytes()).isEqualTo(10_000);
+        assertThat(readAll(diskCache.read(cachedFile.path(), null))).isEqualTo(bytes);
+
+        cachedFile.release();
+        cachedFile.release();
+
+        assertThat(file).doesNotExist();
+        assertThat(isCached(diskCache, "2-b.bin")).isTrue();
+    }
+
+    @Test
+    @DisplayName("the cache index should be rebuilt from the directory after a restart")
+    void constructor_loadsExistingFiles() throws Exception {
+        byte[] bytes = randomBytes(1000);
+        readAll(diskCache(1024 * 1024).fill("1-a.bin", bytes.length, Flux.just(ByteBuffer.wrap(bytes))));
+        await().atMost(Duration.ofSeconds(5)).until(() -> Files.exists(directory.resolve(DiskCache.fileName("1-a.bin"))));
+
+        DiskCache restarted = diskCache(1024 * 1024);
+
+        assertThat(isCached(restarted, "1-a.bin")).isTrue();
+        assertThat(restarted.usedBytes()).isEqualTo(1000);
+    }
+}
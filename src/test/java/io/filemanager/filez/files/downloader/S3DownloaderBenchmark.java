@@ -0,0 +1,107 @@
+package io.filemanager.filez.files.downloader;
+
+import io.filemanager.filez.TestcontainersConfiguration;
+import io.filemanager.filez.files.storage.ObjectLocation;
+import io.filemanager.filez.shared.config.DownloadProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares a single GET stream with parallel ranged GETs against the local S3 mock.
+ * Run with {@code ./gradlew benchmark}, the numbers are written to the test log.
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class S3DownloaderBenchmark {
+
+    private static final int OBJECT_SIZE = 256 * 1024 * 1024;
+    private static final String KEY = "download-benchmark.bin";
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    private S3AsyncClient s3AsyncClient;
+
+    @Value("${s3.bucket}")
+    private String bucketName;
+
+    @BeforeEach
+    void setup() {
+        s3AsyncClient.createBucket(b -> b.bucket(bucketName))
+                .exceptionally(err -> {
+                    if (err.getCause() instanceof BucketAlreadyOwnedByYouException) {
+                        return null;
+                    }
+                    throw new RuntimeException(err);
+                })
+                .join();
+
+        byte[] payload = new byte[OBJECT_SIZE];
+        new Random(42).nextBytes(payload);
+        s3AsyncClient.putObject(b -> b.bucket(bucketName).key(KEY), AsyncRequestBody.fromBytes(payload)).join();
+    }
+
+    @Test
+    @DisplayName("parallel ranged GETs vs. a single GET stream")
+    void singleVsParallel() {
+        S3Downloader single = new S3Downloader(s3AsyncClient, DownloadProperties.builder()
+                .parallel(false)
+                .build());
+        S3Downloader parallel = new S3Downloader(s3AsyncClient, DownloadProperties.builder()
+                .parallel(true)
+                .parallelThreshold(DataSize.ofMegabytes(64))
+                .rangeSize(DataSize.ofMegabytes(8))
+                .concurrency(8)
+                .build());
+
+        // warm up connections and JIT
+        download(single);
+        download(parallel);
+
+        double singleMbPerSecond = measure(single);
+        double parallelMbPerSecond = measure(parallel);
+
+        log.info("Download of {} MB: single GET {} MB/s, parallel ranges {} MB/s (x{})",
+                OBJECT_SIZE / (1024 * 1024),
+                String.format("%.1f", singleMbPerSecond),
+                String.format("%.1f", parallelMbPerSecond),
+                String.format("%.2f", parallelMbPerSecond / singleMbPerSecond));
+    }
+
+    private double measure(S3Downloader downloader) {
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            download(downloader);
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        return (double) OBJECT_SIZE * ROUNDS / (1024 * 1024) / seconds;
+    }
+
+    private void download(S3Downloader downloader) {
+        Long size = downloader.download(new ObjectLocation(bucketName, KEY), null, OBJECT_SIZE)
+                .map(ByteBuffer::remaining)
+                .reduce(0L, (total, remaining) -> total + remaining)
+                .block();
+
+        assertThat(size).isEqualTo(OBJECT_SIZE);
+    }
+}
@@ -0,0 +1,105 @@
+package io.filemanager.filez.files.downloader;
+
+import io.filemanager.filez.files.storage.ObjectLocation;
+import io.filemanager.filez.shared.config.DownloadProperties;
+import io.filemanager.filez.shared.dto.ByteRange;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+class S3DownloaderTest {
+
+    private static final ObjectLocation LOCATION = new ObjectLocation("bucket", "key");
+
+    private final S3AsyncClient s3AsyncClient = Mockito.mock(S3AsyncClient.class);
+
+    private final DownloadProperties downloadProperties = DownloadProperties.builder()
+            .parallel(true)
+            .parallelThreshold(DataSize.ofKilobytes(100))
+            .rangeSize(DataSize.ofKilobytes(16))
+            .concurrency(4)
+            .build();
+
+    private final S3Downloader s3Downloader = new S3Downloader(s3AsyncClient, downloadProperties);
+
+    /**
+     * Answers ranged GETs with the requested bytes, completing them with random delays so they finish out of order.
+     */
+    private AtomicInteger mockRangedGets(byte[] object) {
+        AtomicInteger requests = new AtomicInteger();
+        when(s3AsyncClient.getObject(
+                any(GetObjectRequest.class),
+                Mockito.<AsyncResponseTransformer<GetObjectResponse, ResponseBytes<GetObjectResponse>>>any()
+        )).thenAnswer(invocation -> {
+            requests.incrementAndGet();
+            GetObjectRequest request = invocation.getArgument(0);
+            String[] bounds = request.range().substring("bytes=".length()).split("-");
+            int start = Integer.parseInt(bounds[0]);
+            int end = Integer.parseInt(bounds[1]);
+            byte[] bytes = Arrays.copyOfRange(object, start, end + 1);
+            return CompletableFuture.supplyAsync(
+                    () -> ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), bytes),
+                    CompletableFuture.delayedExecutor(ThreadLocalRandom.current().nextInt(10), TimeUnit.MILLISECONDS));
+        });
+        return requests;
+    }
+
+    private static byte[] concat(List<ByteBuffer> buffers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffers.forEach(buffer -> {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            out.write(bytes, 0, bytes.length);
+        });
+        return out.toByteArray();
+    }
+
+    @Test
+    @DisplayName("download should fetch large objects as parallel ranges and emit them in order")
+    void download_parallelRanges() {
+        byte[] object = new byte[250 * 1024 + 17];
+        new Random().nextBytes(object);
+        AtomicInteger requests = mockRangedGets(object);
+
+        StepVerifier.create(s3Downloader.download(LOCATION, null, object.length).collectList())
+                .assertNext(buffers -> assertThat(concat(buffers)).isEqualTo(object))
+                .verifyComplete();
+        assertThat(requests.get()).isEqualTo(16);
+    }
+
+    @Test
+    @DisplayName("download should fetch a large byte range as parallel ranges")
+    void download_parallelSubRange() {
+        byte[] object = new byte[300 * 1024];
+        new Random().nextBytes(object);
+        mockRangedGets(object);
+        ByteRange range = new ByteRange(1000, 200 * 1024);
+
+        StepVerifier.create(Flux.from(s3Downloader.download(LOCATION, range, object.length)).collectList())
+                .assertNext(buffers -> assertThat(concat(buffers))
+                        .isEqualTo(Arrays.copyOfRange(object, 1000, 200 * 1024 + 1)))
+                .verifyComplete();
+    }
+}
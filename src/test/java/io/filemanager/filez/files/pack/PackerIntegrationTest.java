@@ -0,0 +1,212 @@
+package io.filemanager.filez.files.pack;
+
+import io.filemanager.filez.TestcontainersConfiguration;
+import io.filemanager.filez.files.File;
+import io.filemanager.filez.files.FileRepository;
+import io.filemanager.filez.files.FileService;
+import io.filemanager.filez.files.storage.InlineContent;
+import io.filemanager.filez.files.storage.ObjectLocation;
+import io.filemanager.filez.files.storage.ObjectLocator;
+import io.filemanager.filez.shared.dto.ByteRange;
+import io.filemanager.filez.shared.dto.DownloadResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"pack.min-files=2", "pack.grace-period=0s"})
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class PackerIntegrationTest {
+
+    @Autowired
+    private Packer packer;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private PackRepository packRepository;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private ObjectLocator objectLocator;
+
+    @Autowired
+    private S3AsyncClient s3AsyncClient;
+
+    @Value("${s3.bucket}")
+    private String bucketName;
+
+    @BeforeEach
+    void setup() {
+        s3AsyncClient.createBucket(b -> b.bucket(bucketName))
+                .exceptionally(err -> {
+                    if (err.getCause() instanceof BucketAlreadyOwnedByYouException) {
+                        return null;
+                    }
+                    throw new RuntimeException(err);
+                })
+                .join();
+        fileRepository.deleteAll().block();
+        packRepository.deleteAll().block();
+    }
+
+    private static byte[] randomBytes(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    // An uploaded file in an object of its own
+    private File store(String fileName, byte[] content) {
+        File file = new File(null, fileName, "application/octet-stream", content.length);
+        file.setCrc32(InlineContent.crc32(content));
+        objectLocator.assign(file);
+        File saved = fileRepository.save(file).block();
+        assertThat(saved).isNotNull();
+        ObjectLocation location = objectLocator.locate(saved);
+        s3AsyncClient.putObject(b -> b.bucket(location.bucket()).key(location.key()), AsyncRequestBody.fromBytes(content)).join();
+        return saved;
+    }
+
+    private File reload(File file) {
+        return fileRepository.findById(file.getId()).block();
+    }
+
+    private byte[] download(File file, ByteRange range) {
+        DownloadResult result = fileService.downloadFile(file.getId()).block();
+        assertThat(result).isNotNull();
+        Flux<ByteBuffer> content = range == null ? result.fileContent() : result.rangeReader().apply(range);
+        return InlineContent.join(content.collectList().block());
+    }
+
+    private boolean exists(ObjectLocation location) {
+        return Mono.fromFuture(() -> s3AsyncClient.headObject(b -> b.bucket(location.bucket()).key(location.key())))
+                .map(response -> true)
+                .onErrorResume(S3Exception.class, ex -> ex.statusCode() == 404 ? Mono.just(false) : Mono.error(ex))
+                .block();
+    }
+
+    @Test
+    @DisplayName("packSmallFiles should move small files into one pack and downloads should read their range of it")
+    void packSmallFiles_movesSmallFiles() {
+        byte[] first = randomBytes(10 * 1024, 1);
+        byte[] second = randomBytes(20 * 1024, 2);
+        byte[] third = randomBytes(30 * 1024, 3);
+        File firstFile = store("first.bin", first);
+        File secondFile = store("second.bin", second);
+        File thirdFile = store("third.bin", third);
+        File largeFile = store("large.bin", randomBytes(2 * 1024 * 1024, 4));
+        Instant uploaded = reload(firstFile).getUpdatedAt();
+
+        StepVerifier.create(packer.packSmallFiles())
+                .expectNext(3)
+                .verifyComplete();
+
+        File packedFirst = reload(firstFile);
+        File packedSecond = reload(secondFile);
+        File packedThird = reload(thirdFile);
+        assertThat(packedFirst.getPackId()).isNotNull();
+        assertThat(List.of(packedSecond.getPackId(), packedThird.getPackId())).containsOnly(packedFirst.getPackId());
+        assertThat(List.of(packedFirst.getPackOffset(), packedSecond.getPackOffset(), packedThird.getPackOffset()))
+                .containsExactly(0L, 10L * 1024, 30L * 1024);
+        // Packing doesn't change the file, so neither its ETag nor its archive entry
+        assertThat(packedFirst.getUpdatedAt()).isEqualTo(uploaded);
+        assertThat(reload(largeFile).getPackId()).isNull();
+
+        Pack pack = packRepository.findById(packedFirst.getPackId()).block();
+        assertThat(pack).isNotNull();
+        assertThat(pack.getSize()).isEqualTo(60L * 1024);
+        assertThat(exists(objectLocator.locatePack(packedFirst))).isTrue();
+
+        assertThat(download(packedFirst, null)).isEqualTo(first);
+        assertThat(download(packedSecond, null)).isEqualTo(second);
+        assertThat(download(packedThird, null)).isEqualTo(third);
+        assertThat(download(packedSecond, new ByteRange(100, 199))).isEqualTo(Arrays.copyOfRange(second, 100, 200));
+    }
+
+    @Test
+    @DisplayName("packSmallFiles should wait until enough files are there")
+    void packSmallFiles_waitsForMinFiles() {
+        File file = store("alone.bin", randomBytes(1024, 5));
+
+        StepVerifier.create(packer.packSmallFiles())
+                .expectNext(0)
+                .verifyComplete();
+
+        assertThat(reload(file).getPackId()).isNull();
+    }
+
+    @Test
+    @DisplayName("deleteUnused should delete the objects files were moved out of once the grace period is over")
+    void deleteUnused_deletesOriginals() {
+        byte[] first = randomBytes(4 * 1024, 6);
+        File firstFile = store("first.bin", first);
+        File secondFile = store("second.bin", randomBytes(4 * 1024, 7));
+        packer.packSmallFiles().block();
+
+        StepVerifier.create(packer.deleteUnused())
+                .expectNext(1)
+                .verifyComplete();
+
+        assertThat(exists(objectLocator.locate(firstFile))).isFalse();
+        assertThat(exists(objectLocator.locate(secondFile))).isFalse();
+        File packed = reload(firstFile);
+        assertThat(packRepository.findById(packed.getPackId()).block().isOriginalsDeleted()).isTrue();
+        assertThat(download(packed, null)).isEqualTo(first);
+    }
+
+    @Test
+    @DisplayName("compact should rewrite a mostly deleted pack, deleteUnused should then delete the old one")
+    void compact_rewritesSparsePacks() {
+        File deleted = store("deleted.bin", randomBytes(20 * 1024, 8));
+        byte[] kept = randomBytes(8 * 1024, 9);
+        File keptFile = store("kept.bin", kept);
+        File alsoDeleted = store("also-deleted.bin", randomBytes(20 * 1024, 10));
+        packer.packSmallFiles().block();
+        long oldPackId = reload(keptFile).getPackId();
+        ObjectLocation oldPack = objectLocator.locatePack(reload(keptFile));
+
+        fileService.deleteFile(deleted.getId()).block();
+        fileService.deleteFile(alsoDeleted.getId()).block();
+
+        StepVerifier.create(packer.compact())
+                .expectNext(1)
+                .verifyComplete();
+
+        File moved = reload(keptFile);
+        assertThat(moved.getPackId()).isNotEqualTo(oldPackId);
+        assertThat(moved.getPackOffset()).isZero();
+        assertThat(packRepository.findById(moved.getPackId()).block().getSize()).isEqualTo(kept.length);
+        assertThat(packRepository.findById(oldPackId).block().getRetiredAt()).isNotNull();
+        assertThat(download(moved, null)).isEqualTo(kept);
+
+        packer.deleteUnused().block();
+
+        assertThat(packRepository.findById(oldPackId).block()).isNull();
+        assertThat(exists(oldPack)).isFalse();
+        assertThat(download(moved, null)).isEqualTo(kept);
+    }
+}
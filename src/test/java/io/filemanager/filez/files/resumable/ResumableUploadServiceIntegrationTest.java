@@ -0,0 +1,159 @@
+package io.filemanager.filez.files.resumable;
+
+import io.filemanager.filez.files.FileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.assertj.core.groups.Tuple;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.server.ResponseStatusException;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Testcontainers
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class ResumableUploadServiceIntegrationTest {
+
+    private static final int MB = 1024 * 1024;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", () -> String.format("r2dbc:postgresql://%s:%d/%s",
+                postgres.getHost(), postgres.getFirstMappedPort(), postgres.getDatabaseName()));
+        registry.add("spring.r2dbc.username", postgres::getUsername);
+        registry.add("spring.r2dbc.password", postgres::getPassword);
+    }
+
+    @MockitoBean
+    private S3AsyncClient s3AsyncClient;
+
+    @Autowired
+    private ResumableUploadService resumableUploadService;
+
+    @Autowired
+    private FileRepository metadataRepository;
+
+    @BeforeEach
+    void setup() {
+        metadataRepository.deleteAll().block();
+
+        when(s3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("upload-1").build()));
+        when(s3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenAnswer(invocation -> {
+                    UploadPartRequest request = invocation.getArgument(0);
+                    return CompletableFuture.completedFuture(UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build());
+                });
+        when(s3AsyncClient.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().eTag("final-etag").build()));
+        when(s3AsyncClient.abortMultipartUpload(any(AbortMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(AbortMultipartUploadResponse.builder().build()));
+    }
+
+    private static Flux<ByteBuffer> bytes(int size) {
+        return Flux.just(ByteBuffer.allocate(size));
+    }
+
+    @Test
+    @DisplayName("a session should resume from the confirmed offset and complete once all bytes are uploaded")
+    void resumeAndComplete() {
+        // --- Arrange ---
+        UploadSessionStatus created = resumableUploadService
+                .createSession(new CreateUploadSessionRequest("big.bin", "application/octet-stream", 12 * MB))
+                .block();
+        assertThat(created).isNotNull();
+        assertThat(created.offset()).isZero();
+        assertThat(created.partSize()).isEqualTo(5 * MB);
+        Long sessionId = created.sessionId();
+
+        // --- Act & Assert ---
+        // 7 MB arrive, only the first whole part (5 MB) is confirmed
+        StepVerifier.create(resumableUploadService.uploadChunk(sessionId, 0, bytes(7 * MB)))
+                .assertNext(status -> assertThat(status.offset()).isEqualTo(5 * MB))
+                .verifyComplete();
+
+        // A chunk that does not start at the confirmed offset is rejected
+        StepVerifier.create(resumableUploadService.uploadChunk(sessionId, 7 * MB, bytes(MB)))
+                .expectErrorMatches(ex -> ex instanceof ResponseStatusException rse && rse.getStatusCode() == HttpStatus.CONFLICT)
+                .verify();
+
+        // The session can't be completed before all bytes are there
+        StepVerifier.create(resumableUploadService.completeSession(sessionId))
+                .expectError(ResponseStatusException.class)
+                .verify();
+
+        // Resume from the confirmed offset until the end of the file
+        StepVerifier.create(resumableUploadService.uploadChunk(sessionId, 5 * MB, bytes(7 * MB)))
+                .assertNext(status -> assertThat(status.offset()).isEqualTo(12 * MB))
+                .verifyComplete();
+
+        StepVerifier.create(resumableUploadService.completeSession(sessionId))
+                .assertNext(file -> {
+                    assertThat(file.getId()).isEqualTo(created.fileId());
+                    assertThat(file.getSize()).isEqualTo(12 * MB);
+                })
+                .verifyComplete();
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> completeRequest = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3AsyncClient).completeMultipartUpload(completeRequest.capture());
+        assertThat(completeRequest.getValue().multipartUpload().parts())
+                .extracting(CompletedPart::partNumber, CompletedPart::eTag)
+                .containsExactly(
+                        Tuple.tuple(1, "etag-1"),
+                        Tuple.tuple(2, "etag-2"),
+                        Tuple.tuple(3, "etag-3"));
+
+        // The session is gone once the upload is complete
+        StepVerifier.create(resumableUploadService.getStatus(sessionId))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("abortSessionsCreatedBefore should abort the sessions created before the given time and keep the others")
+    void abortSessionsCreatedBefore_abortsExpiredSessions() {
+        UploadSessionStatus expired = resumableUploadService
+                .createSession(new CreateUploadSessionRequest("expired.bin", "application/octet-stream", MB))
+                .block();
+        assertThat(expired).isNotNull();
+        Instant createdBefore = Instant.now();
+        UploadSessionStatus current = resumableUploadService
+                .createSession(new CreateUploadSessionRequest("current.bin", "application/octet-stream", MB))
+                .block();
+        assertThat(current).isNotNull();
+
+        StepVerifier.create(resumableUploadService.abortSessionsCreatedBefore(createdBefore))
+                .expectNext(1)
+                .verifyComplete();
+
+        verify(s3AsyncClient).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        StepVerifier.create(resumableUploadService.getStatus(expired.sessionId())).verifyComplete();
+        StepVerifier.create(metadataRepository.findById(expired.fileId())).verifyComplete();
+        StepVerifier.create(resumableUploadService.getStatus(current.sessionId()))
+                .assertNext(status -> assertThat(status.offset()).isZero())
+                .verifyComplete();
+    }
+}
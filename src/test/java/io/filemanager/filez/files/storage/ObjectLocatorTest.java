@@ -0,0 +1,97 @@
+package io.filemanager.filez.files.storage;
+
+import io.filemanager.filez.files.File;
+import io.filemanager.filez.shared.config.StorageProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ObjectLocatorTest {
+
+    private static File savedFile(long id, String fileName) {
+        return new File(id, fileName, "text/plain", 1L);
+    }
+
+    @Test
+    @DisplayName("files without a recorded layout and bucket are found where they were always stored")
+    void locate_legacyFile() {
+        ObjectLocator locator = new ObjectLocator(StorageProperties.builder().defaultBucket("files").build());
+
+        assertThat(locator.locate(savedFile(42, "report.pdf")))
+                .isEqualTo(new ObjectLocation("files", "42-report.pdf"));
+    }
+
+    @Test
+    @DisplayName("new files get the configured layout, their key keeps the ID and name after the hash prefix")
+    void assign_hashedLayout() {
+        ObjectLocator locator = new ObjectLocator(StorageProperties.builder().defaultBucket("files").build());
+        File file = new File(null, "report.pdf", "application/pdf", 0L);
+
+        locator.assign(file);
+        file.setId(42L);
+
+        assertThat(file.getKeyLayout()).isEqualTo(KeyLayout.HASHED);
+        assertThat(file.getBucket()).isEqualTo("files");
+        assertThat(locator.locate(file).key()).matches("[0-9a-f]{4}/42-report\\.pdf");
+    }
+
+    @Test
+    @DisplayName("consecutive IDs are spread over many prefixes")
+    void hashedLayout_spreadsConsecutiveIds() {
+        Set<String> prefixes = new HashSet<>();
+        LongStream.rangeClosed(1, 1000)
+                .mapToObj(id -> KeyLayout.HASHED.key(id, "f"))
+                .forEach(key -> prefixes.add(key.substring(0, 4)));
+
+        assertThat(prefixes).hasSizeGreaterThan(950);
+    }
+
+    @Test
+    @DisplayName("new files go to the configured buckets in turn")
+    void assign_roundRobinOverBuckets() {
+        ObjectLocator locator = new ObjectLocator(StorageProperties.builder()
+                .defaultBucket("files")
+                .keyLayout(KeyLayout.PLAIN)
+                .buckets(List.of("files-a", "files-b", "files-c"))
+                .build());
+
+        List<String> buckets = LongStream.range(0, 4)
+                .mapToObj(i -> {
+                    File file = new File(null, "f", "text/plain", 0L);
+                    locator.assign(file);
+                    return file.getBucket();
+                })
+                .toList();
+
+        assertThat(buckets).containsExactly("files-a", "files-b", "files-c", "files-a");
+    }
+
+    @Test
+    @DisplayName("a recorded bucket wins over the default one")
+    void locate_recordedBucket() {
+        ObjectLocator locator = new ObjectLocator(StorageProperties.builder().defaultBucket("files").build());
+
+        assertThat(locator.locate("files-b", "key")).isEqualTo(new ObjectLocation("files-b", "key"));
+        assertThat(locator.locate(null, "key")).isEqualTo(new ObjectLocation("files", "key"));
+    }
+
+    @Test
+    @DisplayName("a packed file is found in its pack, in its own bucket, next to the object it was moved out of")
+    void locatePack_packedFile() {
+        ObjectLocator locator = new ObjectLocator(StorageProperties.builder().defaultBucket("files").build());
+        File file = savedFile(42, "report.pdf");
+        file.setBucket("files-b");
+        file.setPackId(7L);
+        file.setPackOffset(1024L);
+
+        assertThat(locator.locatePack(file).bucket()).isEqualTo("files-b");
+        assertThat(locator.locatePack(file).key()).matches("packs/[0-9a-f]{4}/7-pack");
+        assertThat(locator.locate(file)).isEqualTo(new ObjectLocation("files-b", "42-report.pdf"));
+    }
+}
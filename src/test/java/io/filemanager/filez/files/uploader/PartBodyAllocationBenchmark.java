@@ -0,0 +1,73 @@
+package io.filemanager.filez.files.uploader;
+
+import io.filemanager.filez.shared.config.UploadProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the heap allocated (and the time spent) to turn the chunks of a part into a request body and
+ * drain it the way the SDK does, for both part-body modes. Run with {@code ./gradlew benchmark}.
+ */
+@Slf4j
+@Tag("benchmark")
+class PartBodyAllocationBenchmark {
+
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int PARTS = 200;
+
+    private final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    @DisplayName("composite part bodies vs. copied part bodies")
+    void copyVsComposite() {
+        List<ByteBuffer> chunks = new ArrayList<>();
+        for (int i = 0; i < PART_SIZE / CHUNK_SIZE; i++) {
+            chunks.add(ByteBuffer.allocate(CHUNK_SIZE));
+        }
+
+        // warm up
+        run(UploadProperties.PartBody.COPY, chunks, 20);
+        run(UploadProperties.PartBody.COMPOSITE, chunks, 20);
+
+        report(UploadProperties.PartBody.COPY, chunks);
+        report(UploadProperties.PartBody.COMPOSITE, chunks);
+    }
+
+    private void report(UploadProperties.PartBody mode, List<ByteBuffer> chunks) {
+        long allocatedBefore = threadMXBean.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        run(mode, chunks, PARTS);
+        long nanos = System.nanoTime() - start;
+        long allocated = threadMXBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        log.info("{}: {} bytes allocated per MB uploaded, {} ms for {} parts",
+                mode,
+                allocated / ((long) PARTS * PART_SIZE / (1024 * 1024)),
+                nanos / 1_000_000,
+                PARTS);
+    }
+
+    private void run(UploadProperties.PartBody mode, List<ByteBuffer> chunks, int parts) {
+        for (int i = 0; i < parts; i++) {
+            AsyncRequestBody body = StreamingMultipartS3Uploader.partBody(mode, chunks);
+            AtomicLong drained = new AtomicLong();
+            // Draining synchronously keeps all allocations on the current thread.
+            Flux.from(body).doOnNext(buffer -> drained.addAndGet(buffer.remaining())).blockLast();
+            assertThat(drained.get()).isEqualTo(PART_SIZE);
+        }
+    }
+}
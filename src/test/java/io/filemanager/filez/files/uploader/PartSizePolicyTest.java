@@ -0,0 +1,60 @@
+package io.filemanager.filez.files.uploader;
+
+import io.filemanager.filez.shared.config.UploadProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PartSizePolicyTest {
+
+    private final UploadProperties uploadProperties = UploadProperties.builder()
+            .maxConcurrency(4)
+            .maxMemoryPerUpload(DataSize.ofMegabytes(64))
+            .build();
+
+    @Test
+    @DisplayName("forUpload should use the minimum part size for small files of known length")
+    void forUpload_smallKnownLength() {
+        PartSizePolicy policy = PartSizePolicy.forUpload(20 * 1024, uploadProperties);
+
+        assertThat(policy.initialPartSize()).isEqualTo(PartSizePolicy.MIN_PART_SIZE);
+        assertThat(policy.partSize(1)).isEqualTo(PartSizePolicy.MIN_PART_SIZE);
+        assertThat(policy.partsInFlight()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("forUpload should fit files of known length into the S3 part limit")
+    void forUpload_largeKnownLength() {
+        long contentLength = 200L * 1024 * 1024 * 1024; // 200 GB
+        PartSizePolicy policy = PartSizePolicy.forUpload(contentLength, uploadProperties);
+
+        assertThat(policy.partSize(1) * PartSizePolicy.MAX_PARTS).isGreaterThanOrEqualTo(contentLength);
+        assertThat(policy.partSize(PartSizePolicy.MAX_PARTS)).isEqualTo(policy.partSize(1));
+        // in-flight parts plus the part being filled stay within the memory ceiling
+        assertThat(policy.partSize(1) * (policy.partsInFlight() + 1)).isLessThanOrEqualTo(DataSize.ofMegabytes(64).toBytes());
+    }
+
+    @Test
+    @DisplayName("forUpload should reject files that cannot be uploaded within the memory ceiling")
+    void forUpload_exceedsMemoryCeiling() {
+        long contentLength = 1024L * 1024 * 1024 * 1024; // 1 TB needs parts of ~105 MB
+
+        assertThatThrownBy(() -> PartSizePolicy.forUpload(contentLength, uploadProperties))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("partSize should grow with the part count when the content length is unknown")
+    void partSize_growsForUnknownLength() {
+        PartSizePolicy policy = PartSizePolicy.forUpload(-1, uploadProperties);
+
+        assertThat(policy.partSize(1)).isEqualTo(PartSizePolicy.MIN_PART_SIZE);
+        assertThat(policy.partSize(PartSizePolicy.GROWTH_INTERVAL + 1)).isEqualTo(2 * PartSizePolicy.MIN_PART_SIZE);
+        assertThat(policy.partSize(PartSizePolicy.MAX_PARTS)).isLessThanOrEqualTo(DataSize.ofMegabytes(64).toBytes() / 5);
+        assertThatThrownBy(() -> policy.partSize(PartSizePolicy.MAX_PARTS + 1))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
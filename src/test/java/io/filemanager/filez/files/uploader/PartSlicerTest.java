@@ -0,0 +1,85 @@
+package io.filemanager.filez.files.uploader;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartSlicerTest {
+
+    private static byte[] concat(List<PartSlicer.Part> parts) {
+        int total = (int) parts.stream().mapToLong(PartSlicer.Part::size).sum();
+        ByteBuffer result = ByteBuffer.allocate(total);
+        parts.forEach(part -> part.chunks().forEach(buffer -> result.put(buffer.duplicate())));
+        return result.array();
+    }
+
+    @Test
+    @DisplayName("slice should cut parts at exact byte boundaries, regardless of the incoming buffer sizes")
+    void slice_exactPartSizes() {
+        byte[] bytes = new byte[10_000];
+        new Random().nextBytes(bytes);
+        // Uneven buffer sizes that never line up with the part size
+        Flux<ByteBuffer> content = Flux.range(0, 10_000 / 400)
+                .map(i -> ByteBuffer.wrap(bytes, i * 400, 400));
+
+        StepVerifier.create(PartSlicer.slice(content, 1024).collectList())
+                .assertNext(parts -> {
+                    assertThat(parts).hasSize(10);
+                    for (int i = 0; i < 9; i++) {
+                        assertThat(parts.get(i).number()).isEqualTo(i + 1);
+                        assertThat(parts.get(i).size()).isEqualTo(1024);
+                        assertThat(parts.get(i).last()).isFalse();
+                    }
+                    assertThat(parts.get(9).size()).isEqualTo(10_000 - 9 * 1024);
+                    assertThat(parts.get(9).last()).isTrue();
+                    assertThat(concat(parts)).isEqualTo(bytes);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("slice should split a single large buffer into several parts")
+    void slice_largeBuffer() {
+        byte[] bytes = new byte[3 * 1024];
+        new Random().nextBytes(bytes);
+
+        StepVerifier.create(PartSlicer.slice(Flux.just(ByteBuffer.wrap(bytes)), 1024).collectList())
+                .assertNext(parts -> {
+                    assertThat(parts).hasSize(3);
+                    parts.forEach(part -> assertThat(part.size()).isEqualTo(1024));
+                    assertThat(parts).extracting(PartSlicer.Part::last).containsExactly(false, false, true);
+                    assertThat(concat(parts)).isEqualTo(bytes);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("slice should emit a single last part when the content fits into one part")
+    void slice_smallContent() {
+        StepVerifier.create(PartSlicer.slice(Flux.just(ByteBuffer.allocate(100), ByteBuffer.allocate(24)), 1024))
+                .assertNext(part -> {
+                    assertThat(part.number()).isEqualTo(1);
+                    assertThat(part.size()).isEqualTo(124);
+                    assertThat(part.last()).isTrue();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("slice should emit a single empty last part for an empty stream")
+    void slice_empty() {
+        StepVerifier.create(PartSlicer.slice(Flux.empty(), 1024))
+                .assertNext(part -> {
+                    assertThat(part.size()).isZero();
+                    assertThat(part.last()).isTrue();
+                })
+                .verifyComplete();
+    }
+}
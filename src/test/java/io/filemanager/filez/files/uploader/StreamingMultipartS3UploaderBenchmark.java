@@ -0,0 +1,107 @@
+package io.filemanager.filez.files.uploader;
+
+import io.filemanager.filez.TestcontainersConfiguration;
+import io.filemanager.filez.files.storage.ObjectLocation;
+import io.filemanager.filez.shared.config.UploadProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the sequential and the parallel multipart upload against the local S3 mock.
+ * Run with {@code ./gradlew benchmark}, the numbers are written to the test log.
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class StreamingMultipartS3UploaderBenchmark {
+
+    private static final int FILE_SIZE = 200 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    private S3AsyncClient s3AsyncClient;
+
+    @Value("${s3.bucket}")
+    private String bucketName;
+
+    private final byte[] payload = new byte[FILE_SIZE];
+
+    @BeforeEach
+    void setup() {
+        new Random(42).nextBytes(payload);
+        s3AsyncClient.createBucket(b -> b.bucket(bucketName))
+                .exceptionally(err -> {
+                    if (err.getCause() instanceof BucketAlreadyOwnedByYouException) {
+                        return null;
+                    }
+                    throw new RuntimeException(err);
+                })
+                .join();
+    }
+
+    @Test
+    @DisplayName("parallel part uploads vs. sequential part uploads")
+    void sequentialVsParallel() {
+        S3Uploader sequential = new StreamingMultipartS3Uploader(s3AsyncClient, UploadProperties.builder()
+                .maxConcurrency(1)
+                .build());
+        S3Uploader parallel = new StreamingMultipartS3Uploader(s3AsyncClient, UploadProperties.builder()
+                .maxConcurrency(8)
+                .maxMemoryPerUpload(DataSize.ofMegabytes(64))
+                .build());
+
+        // warm up connections and JIT
+        upload(sequential, "warmup-sequential");
+        upload(parallel, "warmup-parallel");
+
+        double sequentialMbPerSecond = measure(sequential, "sequential");
+        double parallelMbPerSecond = measure(parallel, "parallel");
+
+        log.info("Multipart upload of {} MB: sequential {} MB/s, parallel {} MB/s (x{})",
+                FILE_SIZE / (1024 * 1024),
+                String.format("%.1f", sequentialMbPerSecond),
+                String.format("%.1f", parallelMbPerSecond),
+                String.format("%.2f", parallelMbPerSecond / sequentialMbPerSecond));
+    }
+
+    private double measure(S3Uploader uploader, String name) {
+        long totalNanos = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            upload(uploader, name + "-" + round);
+            totalNanos += System.nanoTime() - start;
+        }
+        double seconds = totalNanos / 1_000_000_000.0;
+        return (double) FILE_SIZE * ROUNDS / (1024 * 1024) / seconds;
+    }
+
+    private void upload(S3Uploader uploader, String key) {
+        Flux<ByteBuffer> content = Flux.range(0, FILE_SIZE / CHUNK_SIZE)
+                .map(i -> ByteBuffer.wrap(payload, i * CHUNK_SIZE, CHUNK_SIZE));
+
+        UploadResult result = uploader.uploadFile(new ObjectLocation(bucketName, key), content, "application/octet-stream").block();
+
+        assertThat(result).isNotNull();
+        assertThat(result.size()).isEqualTo(FILE_SIZE);
+    }
+}
@@ -2,6 +2,7 @@ package io.filemanager.filez.files.uploader;
 
 import io.filemanager.filez.shared.config.S3Properties;
 import io.filemanager.filez.TestcontainersConfiguration;
+import io.filemanager.filez.files.storage.ObjectLocation;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -78,7 +79,7 @@ class StreamingMultipartS3UploaderIntegrationTest {
         Flux<ByteBuffer> fileContent = Flux.just(ByteBuffer.wrap(randomBytes));
 
         // --- Act ---
-        var resultMono = s3Uploader.uploadFile(s3Key, fileContent, "application/octet-stream");
+        var resultMono = s3Uploader.uploadFile(new ObjectLocation(bucketName, s3Key), fileContent, "application/octet-stream");
 
         // --- Assert ---
         // 1. Verify the UploadResult
@@ -103,4 +104,33 @@ class StreamingMultipartS3UploaderIntegrationTest {
                 })
                 .verifyComplete();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("uploadFile should upload a file smaller than one part with a single PUT")
+    void uploadFile_smallFile() {
+        // --- Arrange ---
+        int fileSize = 20 * 1024; // 20 KB
+        byte[] randomBytes = new byte[fileSize];
+        new Random().nextBytes(randomBytes);
+        String s3Key = "small-test-file.bin";
+
+        Flux<ByteBuffer> fileContent = Flux.just(ByteBuffer.wrap(randomBytes, 0, 8 * 1024), ByteBuffer.wrap(randomBytes, 8 * 1024, 12 * 1024));
+
+        // --- Act & Assert ---
+        StepVerifier.create(s3Uploader.uploadFile(new ObjectLocation(bucketName, s3Key), fileContent, "application/octet-stream"))
+                .assertNext(uploadResult -> {
+                    assertThat(uploadResult.response().eTag()).isNotNull();
+                    assertThat(uploadResult.size()).isEqualTo(fileSize);
+                })
+                .verifyComplete();
+
+        HeadObjectRequest headRequest = HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(s3Key)
+                .build();
+
+        StepVerifier.create(Mono.fromFuture(s3AsyncClient.headObject(headRequest)))
+                .assertNext(headResponse -> assertThat(headResponse.contentLength()).isEqualTo(fileSize))
+                .verifyComplete();
+    }
+}
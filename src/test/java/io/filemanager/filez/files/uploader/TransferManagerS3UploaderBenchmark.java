@@ -0,0 +1,130 @@
+package io.filemanager.filez.files.uploader;
+
+import io.filemanager.filez.TestcontainersConfiguration;
+import io.filemanager.filez.files.storage.ObjectLocation;
+import io.filemanager.filez.shared.config.S3Config;
+import io.filemanager.filez.shared.config.S3Properties;
+import io.filemanager.filez.shared.config.UploadProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the streaming multipart uploader with the transfer manager uploader (on the Netty and on the CRT
+ * transport) against the local S3 mock: one large upload at a time, then several at once. Both uploaders may hold
+ * the same memory per upload. Run with {@code ./gradlew benchmark}, the numbers are written to the test log.
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class TransferManagerS3UploaderBenchmark {
+
+    private static final int FILE_SIZE = 200 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int CONCURRENT_UPLOADS = 4;
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    private S3AsyncClient s3AsyncClient;
+
+    @Autowired
+    private S3Properties s3Properties;
+
+    @Value("${s3.bucket}")
+    private String bucketName;
+
+    private final byte[] payload = new byte[FILE_SIZE];
+
+    private final UploadProperties uploadProperties = UploadProperties.builder()
+            .maxConcurrency(8)
+            .maxMemoryPerUpload(DataSize.ofMegabytes(64))
+            .build();
+
+    @BeforeEach
+    void setup() {
+        new Random(42).nextBytes(payload);
+        s3AsyncClient.createBucket(b -> b.bucket(bucketName))
+                .exceptionally(err -> {
+                    if (err.getCause() instanceof BucketAlreadyOwnedByYouException) {
+                        return null;
+                    }
+                    throw new RuntimeException(err);
+                })
+                .join();
+    }
+
+    @Test
+    @DisplayName("streaming multipart uploader vs. transfer manager")
+    void streamingVsTransferManager() {
+        S3Properties crtProperties = s3Properties.toBuilder().transport(S3Properties.Transport.CRT).build();
+        try (S3AsyncClient crtClient = new S3Config().s3AsyncClient(crtProperties)) {
+            TransferManagerS3Uploader nettyTransferManager = new TransferManagerS3Uploader(s3AsyncClient, s3Properties, uploadProperties);
+            TransferManagerS3Uploader crtTransferManager = new TransferManagerS3Uploader(crtClient, crtProperties, uploadProperties);
+            try {
+                compare("streaming", new StreamingMultipartS3Uploader(s3AsyncClient, uploadProperties));
+                compare("transfer manager (Netty)", nettyTransferManager);
+                compare("transfer manager (CRT)", crtTransferManager);
+            } finally {
+                nettyTransferManager.shutdown();
+                crtTransferManager.shutdown();
+            }
+        }
+    }
+
+    private void compare(String name, S3Uploader uploader) {
+        // warm up connections and JIT
+        upload(uploader, name + "-warmup", 1);
+
+        double singleMbPerSecond = measure(uploader, name, 1);
+        double concurrentMbPerSecond = measure(uploader, name, CONCURRENT_UPLOADS);
+
+        log.info("{}: one upload of {} MB at a time {} MB/s, {} at once {} MB/s",
+                name,
+                FILE_SIZE / (1024 * 1024),
+                String.format("%.1f", singleMbPerSecond),
+                CONCURRENT_UPLOADS,
+                String.format("%.1f", concurrentMbPerSecond));
+    }
+
+    private double measure(S3Uploader uploader, String name, int uploads) {
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            upload(uploader, name + "-" + round, uploads);
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        return (double) FILE_SIZE * uploads * ROUNDS / (1024 * 1024) / seconds;
+    }
+
+    private void upload(S3Uploader uploader, String key, int uploads) {
+        Long total = Flux.range(0, uploads)
+                .flatMap(i -> uploader.uploadFile(new ObjectLocation(bucketName, key + "-" + i), content(), "application/octet-stream", FILE_SIZE), uploads)
+                .map(UploadResult::size)
+                .reduce(0L, Long::sum)
+                .block();
+
+        assertThat(total).isEqualTo((long) FILE_SIZE * uploads);
+    }
+
+    private Flux<ByteBuffer> content() {
+        return Flux.range(0, FILE_SIZE / CHUNK_SIZE)
+                .map(i -> ByteBuffer.wrap(payload, i * CHUNK_SIZE, CHUNK_SIZE));
+    }
+}
@@ -0,0 +1,158 @@
+package io.filemanager.filez.files.uploader;
+
+import io.filemanager.filez.TestcontainersConfiguration;
+import io.filemanager.filez.files.storage.ObjectLocation;
+import io.filemanager.filez.shared.config.UploadProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@SpringBootTest(properties = "s3.upload.engine=transfer-manager")
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class TransferManagerS3UploaderIntegrationTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Autowired
+    private S3Uploader s3Uploader;
+
+    @Autowired
+    private S3AsyncClient s3AsyncClient;
+
+    @Autowired
+    private UploadProperties uploadProperties;
+
+    @Value("${s3.bucket}")
+    private String bucketName;
+
+    @BeforeEach
+    void setupBucket() {
+        s3AsyncClient.createBucket(b -> b.bucket(bucketName))
+                .exceptionally(err -> {
+                    if (err.getCause() instanceof BucketAlreadyOwnedByYouException) {
+                        return null;
+                    }
+                    throw new RuntimeException(err);
+                })
+                .join();
+    }
+
+    private ObjectLocation location(String key) {
+        return new ObjectLocation(bucketName, key);
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static Flux<ByteBuffer> chunks(byte[] bytes) {
+        return Flux.range(0, (bytes.length + CHUNK_SIZE - 1) / CHUNK_SIZE)
+                .map(i -> ByteBuffer.wrap(bytes, i * CHUNK_SIZE, Math.min(CHUNK_SIZE, bytes.length - i * CHUNK_SIZE)));
+    }
+
+    private static long crc32(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    private void assertStored(String key, long size) {
+        StepVerifier.create(Mono.fromFuture(s3AsyncClient.headObject(b -> b.bucket(bucketName).key(key))))
+                .assertNext(headResponse -> assertThat(headResponse.contentLength()).isEqualTo(size))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("the transfer manager uploader is selected by s3.upload.engine")
+    void selectedByConfiguration() {
+        assertThat(s3Uploader).isInstanceOf(TransferManagerS3Uploader.class);
+        assertThat(uploadProperties.getEngine()).isEqualTo(UploadProperties.Engine.TRANSFER_MANAGER);
+    }
+
+    @Test
+    @DisplayName("uploadFile should upload a file of several parts with its declared length")
+    void uploadFile_multipart() {
+        byte[] bytes = randomBytes(20 * 1024 * 1024);
+        String s3Key = "tm-multipart-file.bin";
+
+        StepVerifier.create(s3Uploader.uploadFile(location(s3Key), chunks(bytes), "application/octet-stream", bytes.length))
+                .assertNext(uploadResult -> {
+                    assertThat(uploadResult.response().eTag()).isNotNull();
+                    assertThat(uploadResult.size()).isEqualTo(bytes.length);
+                    assertThat(uploadResult.partCount()).isEqualTo(3);
+                    assertThat(uploadResult.crc32()).isEqualTo(crc32(bytes));
+                })
+                .verifyComplete();
+
+        assertStored(s3Key, bytes.length);
+    }
+
+    @Test
+    @DisplayName("uploadFile should upload a file of unknown length")
+    void uploadFile_unknownLength() {
+        byte[] bytes = randomBytes(12 * 1024 * 1024);
+        String s3Key = "tm-unknown-length-file.bin";
+
+        StepVerifier.create(s3Uploader.uploadFile(location(s3Key), chunks(bytes), "application/octet-stream"))
+                .assertNext(uploadResult -> {
+                    assertThat(uploadResult.size()).isEqualTo(bytes.length);
+                    assertThat(uploadResult.crc32()).isEqualTo(crc32(bytes));
+                })
+                .verifyComplete();
+
+        assertStored(s3Key, bytes.length);
+    }
+
+    @Test
+    @DisplayName("uploadFile should upload a file smaller than one part with a single PUT")
+    void uploadFile_smallFile() {
+        byte[] bytes = randomBytes(20 * 1024);
+        String s3Key = "tm-small-file.bin";
+
+        StepVerifier.create(s3Uploader.uploadFile(location(s3Key), chunks(bytes), "application/octet-stream", bytes.length))
+                .assertNext(uploadResult -> {
+                    assertThat(uploadResult.partCount()).isEqualTo(1);
+                    assertThat(uploadResult.initialPartSize()).isEqualTo(bytes.length);
+                    assertThat(uploadResult.size()).isEqualTo(bytes.length);
+                })
+                .verifyComplete();
+
+        assertStored(s3Key, bytes.length);
+    }
+
+    @Test
+    @DisplayName("both uploaders report the same size and CRC-32 for the same content")
+    void sameResultAsStreamingUploader() {
+        byte[] bytes = randomBytes(6 * 1024 * 1024);
+        S3Uploader streaming = new StreamingMultipartS3Uploader(s3AsyncClient, uploadProperties);
+
+        UploadResult fromTransferManager = s3Uploader.uploadFile(location("tm-same.bin"), chunks(bytes), "application/octet-stream", bytes.length).block();
+        UploadResult fromStreaming = streaming.uploadFile(location("streaming-same.bin"), chunks(bytes), "application/octet-stream", bytes.length).block();
+
+        assertThat(fromTransferManager).isNotNull();
+        assertThat(fromStreaming).isNotNull();
+        assertThat(fromTransferManager.size()).isEqualTo(fromStreaming.size());
+        assertThat(fromTransferManager.crc32()).isEqualTo(fromStreaming.crc32());
+    }
+}
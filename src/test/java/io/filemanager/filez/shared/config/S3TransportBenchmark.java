@@ -0,0 +1,141 @@
+package io.filemanager.filez.shared.config;
+
+import io.filemanager.filez.TestcontainersConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the Netty and the CRT transport against the local S3 mock: one large GET stream, many concurrent small
+ * GETs and a large PUT. Run with {@code ./gradlew benchmark}, the numbers are written to the test log.
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class S3TransportBenchmark {
+
+    private static final int LARGE_OBJECT_SIZE = 256 * 1024 * 1024;
+    private static final int SMALL_OBJECT_SIZE = 64 * 1024;
+    private static final int SMALL_OBJECTS = 200;
+    private static final int CONCURRENCY = 32;
+    private static final int ROUNDS = 3;
+    private static final String LARGE_KEY = "transport-benchmark.bin";
+
+    @Autowired
+    private S3Properties s3Properties;
+
+    @Autowired
+    private S3AsyncClient s3AsyncClient;
+
+    @Value("${s3.bucket}")
+    private String bucketName;
+
+    private byte[] largePayload;
+
+    @BeforeEach
+    void setup() {
+        s3AsyncClient.createBucket(b -> b.bucket(bucketName))
+                .exceptionally(err -> {
+                    if (err.getCause() instanceof BucketAlreadyOwnedByYouException) {
+                        return null;
+                    }
+                    throw new RuntimeException(err);
+                })
+                .join();
+
+        largePayload = new byte[LARGE_OBJECT_SIZE];
+        new Random(42).nextBytes(largePayload);
+        s3AsyncClient.putObject(b -> b.bucket(bucketName).key(LARGE_KEY), AsyncRequestBody.fromBytes(largePayload)).join();
+
+        byte[] smallPayload = new byte[SMALL_OBJECT_SIZE];
+        new Random(7).nextBytes(smallPayload);
+        Flux.range(0, SMALL_OBJECTS)
+                .flatMap(i -> Mono.fromFuture(() -> s3AsyncClient.putObject(b -> b.bucket(bucketName).key(smallKey(i)),
+                        AsyncRequestBody.fromBytes(smallPayload))), CONCURRENCY)
+                .blockLast();
+    }
+
+    private static String smallKey(int i) {
+        return "transport-benchmark-" + i + ".bin";
+    }
+
+    @Test
+    @DisplayName("Netty vs. CRT transport")
+    void nettyVsCrt() {
+        S3Config s3Config = new S3Config();
+        for (S3Properties.Transport transport : S3Properties.Transport.values()) {
+            try (S3AsyncClient client = s3Config.s3AsyncClient(s3Properties.toBuilder().transport(transport).build())) {
+                // warm up connections and JIT
+                largeGet(client);
+                smallGets(client);
+
+                double getMbPerSecond = megabytesPerSecond(LARGE_OBJECT_SIZE, () -> largeGet(client));
+                double requestsPerSecond = perSecond(SMALL_OBJECTS, () -> smallGets(client));
+                double putMbPerSecond = megabytesPerSecond(LARGE_OBJECT_SIZE, () -> largePut(client));
+
+                log.info("{}: large GET {} MB/s, small GETs {} requests/s ({} concurrent), large PUT {} MB/s",
+                        transport,
+                        String.format("%.1f", getMbPerSecond),
+                        String.format("%.0f", requestsPerSecond),
+                        CONCURRENCY,
+                        String.format("%.1f", putMbPerSecond));
+            }
+        }
+    }
+
+    private static double megabytesPerSecond(long bytesPerRound, Runnable round) {
+        return perSecond(bytesPerRound, round) / (1024 * 1024);
+    }
+
+    private static double perSecond(long unitsPerRound, Runnable round) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            round.run();
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        return (double) unitsPerRound * ROUNDS / seconds;
+    }
+
+    private void largeGet(S3AsyncClient client) {
+        assertThat(get(client, LARGE_KEY).block()).isEqualTo(LARGE_OBJECT_SIZE);
+    }
+
+    private void smallGets(S3AsyncClient client) {
+        Long total = Flux.range(0, SMALL_OBJECTS)
+                .flatMap(i -> get(client, smallKey(i)), CONCURRENCY)
+                .reduce(0L, Long::sum)
+                .block();
+        assertThat(total).isEqualTo((long) SMALL_OBJECTS * SMALL_OBJECT_SIZE);
+    }
+
+    private void largePut(S3AsyncClient client) {
+        client.putObject(b -> b.bucket(bucketName).key(LARGE_KEY), AsyncRequestBody.fromBytes(largePayload)).join();
+    }
+
+    private Mono<Long> get(S3AsyncClient client, String key) {
+        return Mono.fromFuture(() -> client.getObject(b -> b.bucket(bucketName).key(key), AsyncResponseTransformer.toPublisher()))
+                .flatMapMany(Flux::from)
+                .map(ByteBuffer::remaining)
+                .reduce(0L, (total, remaining) -> total + remaining);
+    }
+}
@@ -0,0 +1,31 @@
+package io.filemanager.filez.shared.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Crc32CombineTest {
+
+    private static long crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return crc.getValue();
+    }
+
+    @Test
+    @DisplayName("combine should return the CRC of the concatenated sequences")
+    void combine_matchesCrcOfConcatenation() {
+        Random random = new Random(7);
+        byte[] bytes = new byte[200_000];
+        random.nextBytes(bytes);
+
+        for (int split : new int[]{0, 1, 1000, 65_536, 199_999, 200_000}) {
+            long combined = Crc32Combine.combine(crc(bytes, 0, split), crc(bytes, split, bytes.length - split), bytes.length - split);
+            assertThat(combined).as("split at %d", split).isEqualTo(crc(bytes, 0, bytes.length));
+        }
+    }
+}
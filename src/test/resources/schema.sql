@@ -1,8 +1,48 @@
+CREATE TABLE IF NOT EXISTS file_pack (
+    id BIGSERIAL PRIMARY KEY,
+    bucket VARCHAR(63) NOT NULL,
+    size BIGINT NOT NULL DEFAULT 0,
+    originals_deleted BOOLEAN NOT NULL DEFAULT FALSE,
+    retired_at TIMESTAMPTZ,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
 CREATE TABLE IF NOT EXISTS file_metadata (
     id BIGSERIAL PRIMARY KEY,
     file_name VARCHAR(255) NOT NULL,
     file_type VARCHAR(100),
     size BIGINT NOT NULL DEFAULT 0,
+    crc32 BIGINT,
+    key_layout VARCHAR(16),
+    bucket VARCHAR(63),
+    content BYTEA,
+    pack_id BIGINT REFERENCES file_pack (id),
+    pack_offset BIGINT,
     created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
     updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
-);
\ No newline at end of file
+);
+
+CREATE TABLE IF NOT EXISTS upload_session (
+    id BIGSERIAL PRIMARY KEY,
+    file_id BIGINT NOT NULL REFERENCES file_metadata (id) ON DELETE CASCADE,
+    bucket VARCHAR(63),
+    s3_key VARCHAR(1024) NOT NULL,
+    upload_id VARCHAR(1024) NOT NULL,
+    part_size BIGINT NOT NULL,
+    total_size BIGINT NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+CREATE TABLE IF NOT EXISTS upload_session_part (
+    id BIGSERIAL PRIMARY KEY,
+    session_id BIGINT NOT NULL REFERENCES upload_session (id) ON DELETE CASCADE,
+    part_number INT NOT NULL,
+    etag VARCHAR(255) NOT NULL,
+    size BIGINT NOT NULL,
+    crc32 BIGINT NOT NULL,
+    UNIQUE (session_id, part_number)
+);
+
+CREATE INDEX IF NOT EXISTS file_metadata_pack_id ON file_metadata (pack_id);